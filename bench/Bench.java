@@ -0,0 +1,135 @@
+/*
+ * A minimal benchmark harness shared by the heap benchmarks.
+ * Author: Spencer Little
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs a workload through warmup and measured iterations and reports the mean
+ * time per operation together with the bytes allocated per operation (the
+ * equivalent of JMH's gc.alloc.rate.norm) and the collections that happened
+ * while measuring. Each iteration gets a fresh state from an untimed setup.
+ *
+ * JMH refuses benchmark classes in the default package, which is where the
+ * heaps live, so the benchmarks use this harness instead. Run one benchmark
+ * per JVM (see the -b filter of each benchmark) for the least JIT pollution.
+ * @author Spencer Little
+ */
+public final class Bench {
+
+    /** Thread allocation counters, available on HotSpot JVMs. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Bench() {}
+
+    /** The measurements of one workload. */
+    public static final class Result {
+        /** The name of the workload. */
+        public final String name;
+        /** Mean nanoseconds per operation over the measured iterations. */
+        public final double nsPerOp;
+        /** Bytes allocated per operation by the measuring thread. */
+        public final double bytesPerOp;
+        /** Collections during the measured iterations. */
+        public final long gcCount;
+        /** Milliseconds spent collecting during the measured iterations. */
+        public final long gcMillis;
+
+        Result(String name, double nsPerOp, double bytesPerOp, long gcCount, long gcMillis) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        /** Returns operations per second. */
+        public double opsPerSecond() {return 1e9 / nsPerOp;}
+
+        @Override
+        public String toString() {
+            return String.format("%-56s %12.1f ns/op %12.1f B/op %6d gc %7d ms",
+                    name, nsPerOp, bytesPerOp, gcCount, gcMillis);
+        }
+    }
+
+    /**
+     * Measures a workload.
+     * @param name the name reported for the workload
+     * @param setup creates the state for one iteration, not timed
+     * @param run runs one iteration on the state and returns the number of operations performed
+     * @param warmups the number of unreported iterations
+     * @param iterations the number of measured iterations
+     * @return the measurements
+     */
+    public static <S> Result measure(String name, Supplier<S> setup, ToLongFunction<S> run,
+                                     int warmups, int iterations) {
+        for (int i = 0; i < warmups; i++) {
+            run.applyAsLong(setup.get());
+        }
+
+        long nanos = 0, ops = 0, bytes = 0;
+        long gcCount = -gcCount(), gcMillis = -gcMillis();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < iterations; i++) {
+            S state = setup.get();
+            long allocated = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            ops += run.applyAsLong(state);
+            nanos += System.nanoTime() - start;
+            bytes += THREADS.getThreadAllocatedBytes(thread) - allocated;
+        }
+        gcCount += gcCount();
+        gcMillis += gcMillis();
+        return new Result(name, (double) nanos / ops, (double) bytes / ops, gcCount, gcMillis);
+    }
+
+    /** Returns the total number of collections so far. */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /** Returns the total milliseconds spent collecting so far. */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     * Returns the value following flag in args, or def if the flag is absent.
+     * @param args the command line
+     * @param flag the flag, for example "-n"
+     * @param def the default value
+     */
+    public static String option(String[] args, String flag, String def) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(flag)) return args[i + 1];
+        }
+        return def;
+    }
+
+    /**
+     * Returns the comma separated integers following flag in args, accepting
+     * scientific notation such as 1e6.
+     */
+    public static int[] intsOption(String[] args, String flag, String def) {
+        String[] parts = option(args, flag, def).split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = (int) Double.parseDouble(parts[i]);
+        }
+        return values;
+    }
+}
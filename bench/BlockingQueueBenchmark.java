@@ -0,0 +1,182 @@
+/*
+ * Producer/consumer benchmark of the heap blocking queue against PriorityBlockingQueue.
+ * Author: Spencer Little
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Producers put n items with random priorities into a queue as fast as they
+ * can, consumers take them until all n have been taken. Reports the
+ * throughput from the first put to the last take and the percentiles of the
+ * latency from put to take of each item.
+ *
+ * The queues:
+ *   heap         HeapBlockingQueue, unbounded
+ *   heap-bounded HeapBlockingQueue holding at most -b items, producers wait when it is full
+ *   heap-drain   HeapBlockingQueue, consumers take batches of up to -d items with drainTo
+ *   pbq          PriorityBlockingQueue, the JDK baseline
+ *   pbq-drain    PriorityBlockingQueue, consumers take batches with drainTo
+ * Consumers wait with poll(1 ms) when a drainTo comes back empty.
+ *
+ * Usage: BlockingQueueBenchmark [-n items] [-p producers] [-c consumers] [-q queues]
+ *                               [-t threads] [-b bound] [-d batch] [-r rounds]
+ *   -n  items per run, default 1e6
+ *   -p  comma separated producer counts, default 1,4
+ *   -c  comma separated consumer counts, default 1,4,64
+ *   -q  comma separated subset of heap,heap-bounded,heap-drain,pbq,pbq-drain
+ *   -t  comma separated subset of platform,virtual, virtual is skipped before Java 21
+ * @author Spencer Little
+ */
+public class BlockingQueueBenchmark {
+
+    /** A queued item, ordered by priority. */
+    private static final class Item {
+        final long priority;
+        final int id;
+        /** The System.nanoTime at which the item was put. */
+        long putAt;
+
+        Item(long priority, int id) {
+            this.priority = priority;
+            this.id = id;
+        }
+    }
+
+    private static final Comparator<Item> BY_PRIORITY = Comparator.comparingLong(item -> item.priority);
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = Bench.intsOption(args, "-n", "1e6")[0];
+        int[] producerCounts = Bench.intsOption(args, "-p", "1,4");
+        int[] consumerCounts = Bench.intsOption(args, "-c", "1,4,64");
+        String[] queues = Bench.option(args, "-q", "heap,heap-bounded,heap-drain,pbq,pbq-drain").split(",");
+        String[] threads = Bench.option(args, "-t", "platform,virtual").split(",");
+        int bound = Bench.intsOption(args, "-b", "1024")[0];
+        int batch = Bench.intsOption(args, "-d", "64")[0];
+        int rounds = Integer.parseInt(Bench.option(args, "-r", "3"));
+
+        Item[] items = new Item[n];
+        Random gen = new Random(n);
+        for (int i = 0; i < n; i++) {
+            items[i] = new Item(gen.nextLong(), i);
+        }
+        for (String kind : threads) {
+            for (int producers : producerCounts) {
+                for (int consumers : consumerCounts) {
+                    for (String queue : queues) {
+                        for (int round = 0; round < rounds; round++) {
+                            String name = String.format("%-12s %-8s p=%d c=%d", queue, kind, producers, consumers);
+                            ExecutorService executor;
+                            if (kind.equals("virtual")) {
+                                try {
+                                    executor = TimerScheduler.virtualThreadExecutor();
+                                } catch (UnsupportedOperationException e) {
+                                    System.out.println(name + " skipped: " + e.getMessage());
+                                    break;
+                                }
+                            } else {
+                                executor = Executors.newCachedThreadPool();
+                            }
+                            boolean drain = queue.endsWith("-drain");
+                            System.out.println(run(name, items, makeQueue(queue, bound), producers, consumers,
+                                    drain ? batch : 0, executor));
+                            executor.shutdown();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns a new queue of the given kind. */
+    private static BlockingQueue<Item> makeQueue(String queue, int bound) {
+        switch (queue) {
+            case "heap":
+            case "heap-drain":
+                return new HeapBlockingQueue<>(Item.class, BY_PRIORITY, Integer.MAX_VALUE);
+            case "heap-bounded":
+                return new HeapBlockingQueue<>(Item.class, BY_PRIORITY, bound);
+            case "pbq":
+            case "pbq-drain":
+                return new PriorityBlockingQueue<>(11, BY_PRIORITY);
+            default:
+                throw new IllegalArgumentException("Unknown queue " + queue);
+        }
+    }
+
+    /**
+     * Runs producers and consumers on executor until every item has been
+     * taken and returns the report line.
+     * @param batch the drainTo batch size of the consumers, 0 to take one item at a time
+     */
+    private static String run(String name, Item[] items, BlockingQueue<Item> queue, int producers,
+                              int consumers, int batch, ExecutorService executor) throws InterruptedException {
+        int n = items.length;
+        long[] latency = new long[n];
+        AtomicLong taken = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(producers + consumers);
+        long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            int first = (int) ((long) n * p / producers), last = (int) ((long) n * (p + 1) / producers);
+            executor.execute(() -> {
+                try {
+                    for (int i = first; i < last; i++) {
+                        items[i].putAt = System.nanoTime();
+                        queue.put(items[i]);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        for (int c = 0; c < consumers; c++) {
+            executor.execute(() -> {
+                List<Item> drained = new ArrayList<>(Math.max(batch, 1));
+                try {
+                    while (taken.get() < n) {
+                        drained.clear();
+                        if (batch > 0) queue.drainTo(drained, batch);
+                        if (drained.isEmpty()) {
+                            Item item = queue.poll(1, TimeUnit.MILLISECONDS);
+                            if (item == null) continue;
+                            drained.add(item);
+                        }
+                        long now = System.nanoTime();
+                        for (Item item : drained) {
+                            latency[item.id] = now - item.putAt;
+                        }
+                        taken.addAndGet(drained.size());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long end = System.nanoTime();
+        Arrays.sort(latency);
+        return String.format("%-36s %10.0f items/s  latency us p50 %9.1f p99 %9.1f p99.9 %9.1f max %9.1f",
+                name, n * 1e9 / (end - start), percentile(latency, 0.5), percentile(latency, 0.99),
+                percentile(latency, 0.999), latency[n - 1] / 1e3);
+    }
+
+    /** Returns the given percentile of sorted nanosecond values in microseconds. */
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))] / 1e3;
+    }
+}
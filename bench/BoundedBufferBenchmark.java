@@ -0,0 +1,64 @@
+/*
+ * Bounded priority buffer benchmark of the min-max heap against a pair of heaps.
+ * Author: Spencer Little
+ */
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs a bounded priority buffer: n random priorities arrive, the buffer
+ * holds at most capacity of them and evicts the lowest when full, and every
+ * third arrival the highest is served. Reports the time per arrival of
+ *   MinMaxHeap  one heap, evicting with extractMin and serving with extractMax
+ *   two Heaps   a MIN and a MAX Heap holding every element, each extraction
+ *               deleting the element from the other heap
+ *
+ * Usage: BoundedBufferBenchmark [-n arrivals] [-c capacities] [-w warmups] [-i iterations]
+ *   -n  comma separated numbers of arrivals, default 1e6
+ *   -c  comma separated buffer capacities, default 1e3,1e5
+ * @author Spencer Little
+ */
+public class BoundedBufferBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.intsOption(args, "-n", "1e6");
+        int[] capacities = Bench.intsOption(args, "-c", "1e3,1e5");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "3"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+
+        for (int n : sizes) {
+            Integer[] arrivals = new Integer[n];
+            Random gen = new Random(n);
+            for (int i = 0; i < n; i++) {
+                arrivals[i] = gen.nextInt();
+            }
+            for (int capacity : capacities) {
+                String name = "buffer n=" + n + " capacity=" + capacity;
+                System.out.println(Bench.measure(name + " MinMaxHeap",
+                        () -> new MinMaxHeap<>(Integer.class, Heap.Option.NO_POSITION_TRACKING),
+                        buffer -> {
+                            for (int i = 0; i < n; i++) {
+                                if (buffer.size() == capacity) buffer.extractMin();
+                                buffer.insert(arrivals[i]);
+                                if (i % 3 == 2) buffer.extractMax();
+                            }
+                            return n;
+                        }, warmups, iterations));
+                System.out.println(Bench.measure(name + " two Heaps",
+                        () -> List.of(new Heap<>(Integer.class, Heap.Type.MIN), new Heap<>(Integer.class, Heap.Type.MAX)),
+                        heaps -> {
+                            Heap<Integer> low = heaps.get(0);
+                            Heap<Integer> high = heaps.get(1);
+                            for (int i = 0; i < n; i++) {
+                                if (low.size() == capacity) high.delete(low.extractRoot());
+                                low.insert(arrivals[i]);
+                                high.insert(arrivals[i]);
+                                if (i % 3 == 2) low.delete(high.extractRoot());
+                            }
+                            return n;
+                        }, warmups, iterations));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Benchmark of eager and lazy deletion on a cancellation heavy workload.
+ * Author: Spencer Little
+ */
+
+import java.util.Random;
+
+/**
+ * Schedules n distinct deadlines, cancels a fraction of them in random order
+ * and drains the rest, once with eager deletion and once with
+ * Option.LAZY_DELETE, and reports the time per scheduled deadline. Cancelling
+ * most deadlines before they reach the root is where lazy deletion pays off.
+ *
+ * Usage: CancellationBenchmark [-n sizes] [-c fractions] [-w warmups] [-i iterations]
+ *   -n  comma separated heap sizes, default 1e5,1e6
+ *   -c  comma separated cancelled fractions in percent, default 50,90
+ * @author Spencer Little
+ */
+public class CancellationBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.intsOption(args, "-n", "1e5,1e6");
+        int[] fractions = Bench.intsOption(args, "-c", "50,90");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "3"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+
+        for (int n : sizes) {
+            Integer[] deadlines = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                deadlines[i] = i;
+            }
+            Random gen = new Random(n);
+            for (int i = n - 1; i > 0; i--) {
+                int j = gen.nextInt(i + 1);
+                Integer tmp = deadlines[i];
+                deadlines[i] = deadlines[j];
+                deadlines[j] = tmp;
+            }
+            for (int percent : fractions) {
+                int cancelled = (int) ((long) n * percent / 100);
+                String name = "cancel n=" + n + " cancelled=" + percent + "%";
+                System.out.println(Bench.measure(name + " eager",
+                        () -> new Heap<>(Integer.class, Heap.Type.MIN),
+                        heap -> run(heap, deadlines, cancelled), warmups, iterations));
+                System.out.println(Bench.measure(name + " lazy",
+                        () -> new Heap<>(Integer.class, Heap.Type.MIN, Heap.Option.LAZY_DELETE),
+                        heap -> run(heap, deadlines, cancelled), warmups, iterations));
+            }
+        }
+    }
+
+    /** Schedules every deadline, cancels the first cancelled of them and drains the heap. */
+    private static long run(Heap<Integer> heap, Integer[] deadlines, int cancelled) {
+        for (Integer deadline : deadlines) {
+            heap.insert(deadline);
+        }
+        for (int i = 0; i < cancelled; i++) {
+            heap.delete(deadlines[i]);
+        }
+        while (heap.size() > 0) {
+            heap.extractRoot();
+        }
+        return deadlines.length;
+    }
+}
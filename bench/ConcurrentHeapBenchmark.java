@@ -0,0 +1,122 @@
+/*
+ * Multi-threaded throughput benchmark of the concurrent heap.
+ * Author: Spencer Little
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures insert/poll throughput of ConcurrentHeap, a Heap behind one global
+ * lock and PriorityBlockingQueue as the number of threads grows. Every thread
+ * runs the same mix of inserts and polls against a prefilled queue; the
+ * result is total operations per second across all threads (best of the
+ * measured rounds).
+ *
+ * Usage: ConcurrentHeapBenchmark [-p threadCounts] [-o opsPerThread] [-n prefill]
+ *                                [-r rounds] [-q queues]
+ *   -p  comma separated thread counts, default 1,2,4,8,16,32
+ *   -q  comma separated subset of multiqueue,synchronized,pbq
+ * @author Spencer Little
+ */
+public class ConcurrentHeapBenchmark {
+
+    /** The operations a benchmarked queue has to support. */
+    private interface Target {
+        void insert(Integer elem);
+        Integer poll();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = Bench.intsOption(args, "-p", "1,2,4,8,16,32");
+        int opsPerThread = (int) Double.parseDouble(Bench.option(args, "-o", "1e6"));
+        int prefill = (int) Double.parseDouble(Bench.option(args, "-n", "1e5"));
+        int rounds = Integer.parseInt(Bench.option(args, "-r", "5"));
+        String[] queues = Bench.option(args, "-q", "multiqueue,synchronized,pbq").split(",");
+
+        Integer[] keys = new Integer[1 << 16];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ThreadLocalRandom.current().nextInt();
+        }
+
+        for (int threads : threadCounts) {
+            for (String queue : queues) {
+                double best = 0;
+                for (int round = 0; round < rounds; round++) {
+                    Target target = makeTarget(queue);
+                    for (int i = 0; i < prefill; i++) {
+                        target.insert(keys[i & (keys.length - 1)]);
+                    }
+                    best = Math.max(best, run(target, threads, opsPerThread, keys));
+                }
+                System.out.printf("%-14s threads=%-3d %14.0f ops/s%n", queue, threads, best);
+            }
+        }
+    }
+
+    /** Returns a fresh, empty queue of the given kind. */
+    private static Target makeTarget(String queue) {
+        switch (queue) {
+            case "multiqueue": {
+                ConcurrentHeap<Integer> heap = new ConcurrentHeap<>(Integer.class, Heap.Type.MIN);
+                return new Target() {
+                    public void insert(Integer elem) {heap.insert(elem);}
+                    public Integer poll() {return heap.poll();}
+                };
+            }
+            case "synchronized": {
+                Heap<Integer> heap = new Heap<>(Integer.class, Heap.Type.MIN, Heap.Option.NO_POSITION_TRACKING);
+                return new Target() {
+                    public synchronized void insert(Integer elem) {heap.insert(elem);}
+                    public synchronized Integer poll() {return heap.size() > 0 ? heap.extractRoot() : null;}
+                };
+            }
+            case "pbq": {
+                PriorityBlockingQueue<Integer> pbq = new PriorityBlockingQueue<>();
+                return new Target() {
+                    public void insert(Integer elem) {pbq.offer(elem);}
+                    public Integer poll() {return pbq.poll();}
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown queue " + queue);
+        }
+    }
+
+    /**
+     * Runs opsPerThread alternating inserts and polls on each of threads
+     * threads and returns the combined operations per second.
+     */
+    private static double run(Target target, int threads, int opsPerThread, Integer[] keys) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            Thread worker = new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int i = 0; i < opsPerThread; i += 2) {
+                        target.insert(keys[(offset + i) & (keys.length - 1)]);
+                        target.poll();
+                    }
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        barrier.await();
+        long nanos = System.nanoTime() - start;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (double) threads * opsPerThread * 1e9 / nanos;
+    }
+}
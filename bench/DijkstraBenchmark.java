@@ -0,0 +1,224 @@
+/*
+ * Dijkstra shortest paths benchmark of the heap implementations.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Runs Dijkstra's algorithm from vertex 0 of a large random directed graph
+ * with each of the priority queues and reports the time per vertex settled.
+ * The graph has n vertices, a cycle through all of them so every vertex is
+ * reachable, and n*(degree-1) random extra edges, with weights uniform in
+ * [1, 1000]. Dense graphs decrease the distance of a queued vertex far more
+ * often than they extract one, which is where the queues differ.
+ *
+ * The variants:
+ *   delete+insert   written once against PriorityHeap and run with Heap and
+ *                   PairingHeap, a decrease-key deletes the queued entry by value
+ *                   and inserts the improved one
+ *   lazy            Heap without position tracking, improved entries are inserted
+ *                   next to the stale ones, which are skipped when extracted
+ *   decreaseKey     PairingHeap without position tracking, decrease-key on the
+ *                   node handle of the vertex
+ *   updateKey       IndexedHeap, decrease-key on the int handle of the vertex
+ *
+ * Usage: DijkstraBenchmark [-n vertices] [-g degree] [-w warmups] [-i iterations]
+ *   -n  comma separated vertex counts, default 1e5,1e6
+ *   -g  comma separated out degrees, default 4,16
+ * @author Spencer Little
+ */
+public class DijkstraBenchmark {
+
+    /** A queued vertex and its tentative distance. */
+    record Visit(int vertex, long distance) {}
+
+    /** Orders visits by distance. */
+    private static final Comparator<Visit> BY_DISTANCE = Comparator.comparingLong(Visit::distance);
+
+    /** A graph in compressed sparse row form. */
+    static final class Graph {
+        /** The edges of vertex v are edgeStart[v] until edgeStart[v + 1]. */
+        final int[] edgeStart;
+        /** The target of each edge. */
+        final int[] target;
+        /** The weight of each edge. */
+        final int[] weight;
+
+        Graph(int[] edgeStart, int[] target, int[] weight) {
+            this.edgeStart = edgeStart;
+            this.target = target;
+            this.weight = weight;
+        }
+
+        int vertexCount() {return edgeStart.length - 1;}
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.intsOption(args, "-n", "1e5,1e6");
+        int[] degrees = Bench.intsOption(args, "-g", "4,16");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "3"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+
+        for (int n : sizes) {
+            for (int degree : degrees) {
+                Graph graph = makeGraph(n, degree);
+                long expected = checksum(lazy(graph));
+                String name = "dijkstra n=" + n + " degree=" + degree;
+                Bench.Result[] results = {
+                    Bench.measure(name + " delete+insert Heap", () -> graph,
+                            g -> verify(expected, deleteInsert(g, new Heap<>(Visit.class, BY_DISTANCE))),
+                            warmups, iterations),
+                    Bench.measure(name + " delete+insert PairingHeap", () -> graph,
+                            g -> verify(expected, deleteInsert(g, new PairingHeap<>(BY_DISTANCE))),
+                            warmups, iterations),
+                    Bench.measure(name + " lazy Heap", () -> graph,
+                            g -> verify(expected, lazy(g)), warmups, iterations),
+                    Bench.measure(name + " decreaseKey PairingHeap", () -> graph,
+                            g -> verify(expected, decreaseKey(g)), warmups, iterations),
+                    Bench.measure(name + " updateKey IndexedHeap", () -> graph,
+                            g -> verify(expected, updateKey(g)), warmups, iterations)
+                };
+                for (Bench.Result result : results) {
+                    System.out.println(result);
+                }
+            }
+        }
+    }
+
+    /** Dijkstra against the common interface: a decrease-key is a delete by value and an insert. */
+    static long[] deleteInsert(Graph graph, PriorityHeap<Visit> queue) {
+        long[] distance = newDistances(graph);
+        Visit[] queued = new Visit[graph.vertexCount()];
+        queued[0] = new Visit(0, 0);
+        queue.insert(queued[0]);
+        while (queue.size() > 0) {
+            Visit visit = queue.extractRoot();
+            queued[visit.vertex()] = null;
+            for (int e = graph.edgeStart[visit.vertex()]; e < graph.edgeStart[visit.vertex() + 1]; e++) {
+                int to = graph.target[e];
+                long candidate = visit.distance() + graph.weight[e];
+                if (candidate >= distance[to]) continue;
+                distance[to] = candidate;
+                if (queued[to] != null) queue.delete(queued[to]);
+                queued[to] = new Visit(to, candidate);
+                queue.insert(queued[to]);
+            }
+        }
+        return distance;
+    }
+
+    /** Dijkstra with lazy deletion: stale visits stay in the heap and are skipped. */
+    static long[] lazy(Graph graph) {
+        long[] distance = newDistances(graph);
+        Heap<Visit> queue = new Heap<>(Visit.class, BY_DISTANCE, Heap.Option.NO_POSITION_TRACKING);
+        queue.insert(new Visit(0, 0));
+        while (queue.size() > 0) {
+            Visit visit = queue.extractRoot();
+            if (visit.distance() > distance[visit.vertex()]) continue; // stale
+            for (int e = graph.edgeStart[visit.vertex()]; e < graph.edgeStart[visit.vertex() + 1]; e++) {
+                int to = graph.target[e];
+                long candidate = visit.distance() + graph.weight[e];
+                if (candidate >= distance[to]) continue;
+                distance[to] = candidate;
+                queue.insert(new Visit(to, candidate));
+            }
+        }
+        return distance;
+    }
+
+    /** Dijkstra on a pairing heap with decrease-key on node handles. */
+    @SuppressWarnings("unchecked")
+    static long[] decreaseKey(Graph graph) {
+        long[] distance = newDistances(graph);
+        PairingHeap<Visit> queue = new PairingHeap<>(BY_DISTANCE, Heap.Option.NO_POSITION_TRACKING);
+        PairingHeap.Node<Visit>[] nodes = (PairingHeap.Node<Visit>[]) new PairingHeap.Node<?>[graph.vertexCount()];
+        nodes[0] = queue.insertNode(new Visit(0, 0));
+        while (queue.size() > 0) {
+            Visit visit = queue.extractRoot();
+            nodes[visit.vertex()] = null;
+            for (int e = graph.edgeStart[visit.vertex()]; e < graph.edgeStart[visit.vertex() + 1]; e++) {
+                int to = graph.target[e];
+                long candidate = visit.distance() + graph.weight[e];
+                if (candidate >= distance[to]) continue;
+                distance[to] = candidate;
+                if (nodes[to] != null) queue.decreaseKey(nodes[to], new Visit(to, candidate));
+                else nodes[to] = queue.insertNode(new Visit(to, candidate));
+            }
+        }
+        return distance;
+    }
+
+    /** Dijkstra on an indexed heap with decrease-key on int handles. */
+    static long[] updateKey(Graph graph) {
+        long[] distance = newDistances(graph);
+        IndexedHeap<Long> queue = new IndexedHeap<>(Heap.Type.MIN);
+        int[] handle = new int[graph.vertexCount()];
+        int[] vertexOf = new int[graph.vertexCount()];
+        Arrays.fill(handle, -1);
+        handle[0] = queue.insert(0L);
+        vertexOf[handle[0]] = 0;
+        while (queue.size() > 0) {
+            int from = vertexOf[queue.getRootHandle()];
+            long fromDistance = queue.extractRoot();
+            handle[from] = -1;
+            for (int e = graph.edgeStart[from]; e < graph.edgeStart[from + 1]; e++) {
+                int to = graph.target[e];
+                long candidate = fromDistance + graph.weight[e];
+                if (candidate >= distance[to]) continue;
+                distance[to] = candidate;
+                if (handle[to] >= 0) {
+                    queue.updateKey(handle[to], candidate);
+                } else {
+                    handle[to] = queue.insert(candidate);
+                    vertexOf[handle[to]] = to;
+                }
+            }
+        }
+        return distance;
+    }
+
+    /** Returns a random graph with n vertices and about n*degree edges. */
+    static Graph makeGraph(int n, int degree) {
+        Random gen = new Random(n ^ degree);
+        int[] edgeStart = new int[n + 1];
+        int[] target = new int[n * degree];
+        int[] weight = new int[n * degree];
+        for (int v = 0; v < n; v++) {
+            edgeStart[v] = v * degree;
+            target[v * degree] = (v + 1) % n;
+            weight[v * degree] = 1 + gen.nextInt(1000);
+            for (int e = v * degree + 1; e < (v + 1) * degree; e++) {
+                target[e] = gen.nextInt(n);
+                weight[e] = 1 + gen.nextInt(1000);
+            }
+        }
+        edgeStart[n] = n * degree;
+        return new Graph(edgeStart, target, weight);
+    }
+
+    /** Returns the initial distances, 0 for the source and infinite elsewhere. */
+    private static long[] newDistances(Graph graph) {
+        long[] distance = new long[graph.vertexCount()];
+        Arrays.fill(distance, Long.MAX_VALUE);
+        distance[0] = 0;
+        return distance;
+    }
+
+    /** Returns a checksum of the distances. */
+    private static long checksum(long[] distance) {
+        long sum = 0;
+        for (long d : distance) {
+            sum = 31 * sum + d;
+        }
+        return sum;
+    }
+
+    /** Checks the distances against the expected checksum and returns the number of vertices settled. */
+    private static long verify(long expected, long[] distance) {
+        if (checksum(distance) != expected) throw new IllegalStateException("Wrong shortest path distances");
+        return distance.length;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Benchmarks of the heap operations against java.util.PriorityQueue.
+ * Author: Spencer Little
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Benchmarks heapify, insert, insertAll, extractRoot, extractRoots, delete and deleteAll of Heap and
+ * the equivalent PriorityQueue operations, and restoring a Heap from a snapshot
+ * file against reading the same elements and heapifying them, crossed with heap size, duplicate
+ * key ratio and heap type. Every result reports ns/op, allocated bytes/op and
+ * the collections that ran, so a regression in the position index shows up as
+ * extra allocation even when the timing is noisy.
+ *
+ * Usage: HeapBenchmark [-b benchmarks] [-n sizes] [-d dupRatios] [-t types]
+ *                      [-w warmups] [-i iterations]
+ *   -b  comma separated subset of heapify,insert,insertAll,extractRoot,extractRoots,delete,deleteAll,restore
+ *   -n  comma separated heap sizes, default 1e3,1e4,1e5,1e6 (1e7 needs -Xmx8g)
+ *   -d  comma separated fractions of keys that are duplicates, default 0,0.5,0.99
+ *   -t  comma separated heap types, default MIN,MAX
+ * @author Spencer Little
+ */
+public class HeapBenchmark {
+
+    /** PriorityQueue.remove(Object) is O(n), so it gets at most this many deletes per iteration. */
+    private static final int QUEUE_DELETES = 1000;
+    /** The batch size used by the insertAll benchmark. */
+    private static final int BATCH = 10_000;
+    /** The number of elements extracted per call by the extractRoots benchmark. */
+    private static final int EXTRACT_BATCH = 64;
+    /** The extractRoots benchmark also extracts batches of 1/EXTRACT_BULK_FRACTION of the heap. */
+    private static final int EXTRACT_BULK_FRACTION = 4;
+
+    public static void main(String[] args) {
+        String[] benchmarks = Bench.option(args, "-b", "heapify,insert,insertAll,extractRoot,extractRoots,delete,deleteAll,restore").split(",");
+        int[] sizes = Bench.intsOption(args, "-n", "1e3,1e4,1e5,1e6");
+        String[] ratios = Bench.option(args, "-d", "0,0.5,0.99").split(",");
+        String[] types = Bench.option(args, "-t", "MIN,MAX").split(",");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "5"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+
+        for (String benchmark : benchmarks) {
+            for (int n : sizes) {
+                for (String ratio : ratios) {
+                    for (String type : types) {
+                        Integer[] keys = makeKeys(n, Double.parseDouble(ratio));
+                        Heap.Type heapType = Heap.Type.valueOf(type);
+                        String name = benchmark + " n=" + n + " dup=" + ratio + " " + type;
+                        for (Bench.Result result : run(benchmark, name, keys, heapType, warmups, iterations)) {
+                            System.out.println(result);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one benchmark against Heap, Heap without position tracking where
+     * the operation allows it, and PriorityQueue.
+     */
+    private static Bench.Result[] run(String benchmark, String name, Integer[] keys, Heap.Type type,
+                                      int warmups, int iterations) {
+        int n = keys.length;
+        Comparator<Integer> order = type == Heap.Type.MIN ? Comparator.naturalOrder() : Collections.reverseOrder();
+        switch (benchmark) {
+            case "heapify":
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap", () -> keys.clone(),
+                            arr -> {new Heap<>(arr, type); return n;}, warmups, iterations),
+                    Bench.measure(name + " Heap untracked", () -> keys.clone(),
+                            arr -> {new Heap<>(arr, type, Heap.Option.NO_POSITION_TRACKING); return n;},
+                            warmups, iterations),
+                    Bench.measure(name + " Heap parallel", () -> keys.clone(),
+                            arr -> {new Heap<>(arr, type, Heap.Option.PARALLEL_HEAPIFY); return n;},
+                            warmups, iterations),
+                    Bench.measure(name + " Heap parallel untracked", () -> keys.clone(),
+                            arr -> {new Heap<>(arr, type, Heap.Option.NO_POSITION_TRACKING,
+                                    Heap.Option.PARALLEL_HEAPIFY); return n;}, warmups, iterations),
+                    Bench.measure(name + " PriorityQueue", () -> Arrays.asList(keys.clone()),
+                            list -> {new PriorityQueue<>(list); return n;}, warmups, iterations)
+                };
+            case "insert":
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap", () -> new Heap<>(Integer.class, type),
+                            heap -> {for (Integer k : keys) heap.insert(k); return n;}, warmups, iterations),
+                    Bench.measure(name + " Heap untracked",
+                            () -> new Heap<>(Integer.class, type, Heap.Option.NO_POSITION_TRACKING),
+                            heap -> {for (Integer k : keys) heap.insert(k); return n;}, warmups, iterations),
+                    Bench.measure(name + " PriorityQueue", () -> new PriorityQueue<>(order),
+                            queue -> {for (Integer k : keys) queue.offer(k); return n;}, warmups, iterations)
+                };
+            case "insertAll":
+                Integer[][] batches = new Integer[(n + BATCH - 1) / BATCH][];
+                for (int i = 0; i < batches.length; i++) {
+                    batches[i] = Arrays.copyOfRange(keys, i * BATCH, Math.min(n, (i + 1) * BATCH));
+                }
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap", () -> new Heap<>(Integer.class, type),
+                            heap -> {for (Integer[] b : batches) heap.insertAll(b); return n;}, warmups, iterations),
+                    Bench.measure(name + " PriorityQueue", () -> new PriorityQueue<>(order),
+                            queue -> {for (Integer[] b : batches) queue.addAll(Arrays.asList(b)); return n;},
+                            warmups, iterations)
+                };
+            case "extractRoot":
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap", () -> new Heap<>(keys.clone(), type),
+                            heap -> {while (heap.size() > 0) heap.extractRoot(); return n;}, warmups, iterations),
+                    Bench.measure(name + " Heap untracked",
+                            () -> new Heap<>(keys.clone(), type, Heap.Option.NO_POSITION_TRACKING),
+                            heap -> {while (heap.size() > 0) heap.extractRoot(); return n;}, warmups, iterations),
+                    Bench.measure(name + " PriorityQueue", () -> makeQueue(keys, order),
+                            queue -> {while (!queue.isEmpty()) queue.poll(); return n;}, warmups, iterations)
+                };
+            case "extractRoots":
+                int bulk = Math.max(1, n / EXTRACT_BULK_FRACTION);
+                return new Bench.Result[] {
+                    measureExtractRoots(name + " k=" + EXTRACT_BATCH, keys, type, EXTRACT_BATCH, false, warmups, iterations),
+                    measureExtractRoots(name + " k=" + EXTRACT_BATCH, keys, type, EXTRACT_BATCH, true, warmups, iterations),
+                    measureExtractRoots(name + " k=n/" + EXTRACT_BULK_FRACTION, keys, type, bulk, false, warmups, iterations),
+                    measureExtractRoots(name + " k=n/" + EXTRACT_BULK_FRACTION, keys, type, bulk, true, warmups, iterations)
+                };
+            case "delete":
+                Integer[] victims = shuffled(keys);
+                int queueDeletes = Math.min(n, QUEUE_DELETES);
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap", () -> new Heap<>(keys.clone(), type),
+                            heap -> {for (Integer k : victims) heap.delete(k); return n;}, warmups, iterations),
+                    Bench.measure(name + " PriorityQueue", () -> makeQueue(keys, order),
+                            queue -> {
+                                for (int i = 0; i < queueDeletes; i++) queue.remove(victims[i]);
+                                return queueDeletes;
+                            }, warmups, iterations)
+                };
+            case "deleteAll":
+                Integer[] distinct = shuffled(Arrays.stream(keys).distinct().toArray(Integer[]::new));
+                int queueDeleteAlls = Math.min(distinct.length, QUEUE_DELETES);
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap", () -> new Heap<>(keys.clone(), type),
+                            heap -> {for (Integer k : distinct) heap.deleteAll(k); return n;}, warmups, iterations),
+                    Bench.measure(name + " PriorityQueue", () -> makeQueue(keys, order),
+                            queue -> {
+                                int before = queue.size();
+                                for (int i = 0; i < queueDeleteAlls; i++) {
+                                    Integer k = distinct[i];
+                                    queue.removeIf(k::equals);
+                                }
+                                return before - queue.size();
+                            }, warmups, iterations)
+                };
+            case "restore":
+                Path snapshot = writeFile(out -> new Heap<>(keys.clone(), type).snapshot(out, HeapCodec.integers()));
+                Path dump = writeFile(out -> {
+                    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out)));
+                    data.writeInt(n);
+                    for (Integer k : keys) data.writeInt(k);
+                    data.flush();
+                });
+                return new Bench.Result[] {
+                    Bench.measure(name + " Heap restore", () -> snapshot,
+                            file -> {readFile(file, in -> Heap.restore(in, Integer.class, HeapCodec.integers())); return n;},
+                            warmups, iterations),
+                    Bench.measure(name + " Heap read+heapify", () -> dump,
+                            file -> {
+                                readFile(file, in -> {
+                                    DataInputStream data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in)));
+                                    Integer[] arr = new Integer[data.readInt()];
+                                    for (int i = 0; i < arr.length; i++) arr[i] = data.readInt();
+                                    return new Heap<>(arr, type);
+                                });
+                                return n;
+                            }, warmups, iterations)
+                };
+            default:
+                throw new IllegalArgumentException("Unknown benchmark " + benchmark);
+        }
+    }
+
+    /**
+     * Returns n boxed keys of which roughly dupRatio are repeats of another key.
+     * The keys are boxed up front so boxing is not measured.
+     */
+    static Integer[] makeKeys(int n, double dupRatio) {
+        Random gen = new Random(n);
+        int distinct = Math.max(1, (int) (n * (1 - dupRatio)));
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i < distinct ? gen.nextInt() : keys[gen.nextInt(distinct)];
+        }
+        return shuffled(keys);
+    }
+
+    /** Returns a shuffled copy of arr. */
+    static Integer[] shuffled(Integer[] arr) {
+        Integer[] copy = arr.clone();
+        Collections.shuffle(Arrays.asList(copy), new Random(arr.length));
+        return copy;
+    }
+
+    /** Writes to a channel, may throw IOException. */
+    private interface ChannelWriter {
+        void write(FileChannel out) throws IOException;
+    }
+
+    /** Reads from a channel, may throw IOException. */
+    private interface ChannelReader {
+        Object read(FileChannel in) throws IOException;
+    }
+
+    /** Writes a temporary file, deleted when the JVM exits, and returns it. */
+    private static Path writeFile(ChannelWriter writer) {
+        try {
+            Path file = Files.createTempFile("heap", ".bin");
+            file.toFile().deleteOnExit();
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                writer.write(out);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Opens file and passes it to reader. */
+    private static Object readFile(Path file, ChannelReader reader) {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Measures draining a heap of keys in batches of k, with one extractRoots
+     * call per batch if batched and k extractRoot calls otherwise. The loop is
+     * measured first, the first case measured in a JVM runs slower.
+     */
+    private static Bench.Result measureExtractRoots(String name, Integer[] keys, Heap.Type type, int k,
+                                                    boolean batched, int warmups, int iterations) {
+        int n = keys.length;
+        Integer[] batch = new Integer[k];
+        return Bench.measure(name + (batched ? " Heap extractRoots" : " Heap extractRoot"),
+                () -> new Heap<>(keys.clone(), type),
+                heap -> {
+                    while (heap.size() > 0) {
+                        if (batched) {
+                            heap.extractRoots(k, batch);
+                        } else {
+                            for (int i = 0; i < k && heap.size() > 0; i++) batch[i] = heap.extractRoot();
+                        }
+                    }
+                    return n;
+                }, warmups, iterations);
+    }
+
+    /** Returns a PriorityQueue holding keys. */
+    private static PriorityQueue<Integer> makeQueue(Integer[] keys, Comparator<Integer> order) {
+        PriorityQueue<Integer> queue = new PriorityQueue<>(keys.length, order);
+        queue.addAll(Arrays.asList(keys));
+        return queue;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Benchmark of the memory-mapped heap against on-heap queues of the same records.
+ * Author: Spencer Little
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Inserts n random (long key, long payload) records and extracts them all,
+ * reporting the time, allocation and collections per record of
+ *   MappedHeap     records in a memory-mapped temporary file
+ *   LongHeap       the keys alone in a long[], the on-heap lower bound
+ *   PriorityQueue  each record a long[2], the object per record layout
+ * With -f the MappedHeap forces the file to disk once after the inserts.
+ *
+ * Usage: MappedHeapBenchmark [-n sizes] [-d directory] [-w warmups] [-i iterations] [-f]
+ *   -n  comma separated record counts, default 1e5,1e6,1e7
+ *   -d  the directory of the heap file, default the system temporary directory
+ * @author Spencer Little
+ */
+public class MappedHeapBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = Bench.intsOption(args, "-n", "1e5,1e6,1e7");
+        String dir = Bench.option(args, "-d", System.getProperty("java.io.tmpdir"));
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "3"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+        boolean force = Arrays.asList(args).contains("-f");
+        Path file = Files.createTempFile(Path.of(dir), "heap", ".bin");
+        file.toFile().deleteOnExit();
+
+        for (int n : sizes) {
+            long[] keys = new long[n];
+            Random gen = new Random(n);
+            for (int i = 0; i < n; i++) {
+                keys[i] = gen.nextLong();
+            }
+            String name = "insert+extract n=" + n;
+            System.out.println(Bench.measure(name + " MappedHeap" + (force ? " forced" : ""),
+                    () -> {
+                        try {
+                            return MappedHeap.create(file, Heap.Type.MIN);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    heap -> {
+                        for (int i = 0; i < n; i++) heap.insert(keys[i], i);
+                        if (force) heap.force();
+                        while (heap.size() > 0) heap.extractRoot();
+                        heap.close();
+                        return n;
+                    }, warmups, iterations));
+            System.out.println(Bench.measure(name + " LongHeap", () -> new LongHeap(Heap.Type.MIN),
+                    heap -> {
+                        for (int i = 0; i < n; i++) heap.insert(keys[i]);
+                        while (heap.size() > 0) heap.extractRoot();
+                        return n;
+                    }, warmups, iterations));
+            System.out.println(Bench.measure(name + " PriorityQueue",
+                    () -> new PriorityQueue<long[]>(Comparator.comparingLong(record -> record[0])),
+                    queue -> {
+                        for (int i = 0; i < n; i++) queue.add(new long[] {keys[i], i});
+                        while (!queue.isEmpty()) queue.poll();
+                        return n;
+                    }, warmups, iterations));
+        }
+    }
+}
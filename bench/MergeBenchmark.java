@@ -0,0 +1,108 @@
+/*
+ * K-way merge benchmark of replaceRoot against extract and insert.
+ * Author: Spencer Little
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Merges k sorted runs of Integers, n elements in total, and reports the time
+ * per merged element of
+ *   KWayMerge          a cursor per run advanced in place with replaceRoot
+ *   Heap extract+insert  a wrapper per element in a tracked Heap, extractRoot then insert
+ *   PriorityQueue      a wrapper per element, poll then add
+ *
+ * Usage: MergeBenchmark [-n elements] [-k runs] [-w warmups] [-i iterations]
+ *   -n  comma separated total element counts, default 1e6
+ *   -k  comma separated run counts, default 8,128,1024
+ * @author Spencer Little
+ */
+public class MergeBenchmark {
+
+    /** The current value of a run and the run it came from. */
+    private static final class Head {
+        final Integer value;
+        final int run;
+
+        Head(Integer value, int run) {
+            this.value = value;
+            this.run = run;
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.intsOption(args, "-n", "1e6");
+        int[] runCounts = Bench.intsOption(args, "-k", "8,128,1024");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "3"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+        Comparator<Head> byValue = Comparator.comparing((Head h) -> h.value);
+
+        for (int n : sizes) {
+            for (int k : runCounts) {
+                Integer[][] runs = makeRuns(n, k);
+                String name = "merge n=" + n + " k=" + k;
+                System.out.println(Bench.measure(name + " KWayMerge", () -> iterators(runs),
+                        sources -> {
+                            KWayMerge<Integer> merge = new KWayMerge<>(sources, Heap.Type.MIN);
+                            while (merge.hasNext()) merge.next();
+                            return n;
+                        }, warmups, iterations));
+                System.out.println(Bench.measure(name + " Heap extract+insert", () -> iterators(runs),
+                        sources -> {
+                            Heap<Head> heads = new Heap<>(Head.class, byValue);
+                            for (int i = 0; i < k; i++) {
+                                if (sources.get(i).hasNext()) heads.insert(new Head(sources.get(i).next(), i));
+                            }
+                            while (heads.size() > 0) {
+                                Head head = heads.extractRoot();
+                                Iterator<Integer> source = sources.get(head.run);
+                                if (source.hasNext()) heads.insert(new Head(source.next(), head.run));
+                            }
+                            return n;
+                        }, warmups, iterations));
+                System.out.println(Bench.measure(name + " PriorityQueue", () -> iterators(runs),
+                        sources -> {
+                            PriorityQueue<Head> heads = new PriorityQueue<>(byValue);
+                            for (int i = 0; i < k; i++) {
+                                if (sources.get(i).hasNext()) heads.add(new Head(sources.get(i).next(), i));
+                            }
+                            while (!heads.isEmpty()) {
+                                Head head = heads.poll();
+                                Iterator<Integer> source = sources.get(head.run);
+                                if (source.hasNext()) heads.add(new Head(source.next(), head.run));
+                            }
+                            return n;
+                        }, warmups, iterations));
+            }
+        }
+    }
+
+    /** Returns k sorted runs of random keys holding n keys in total. */
+    private static Integer[][] makeRuns(int n, int k) {
+        Random gen = new Random(n);
+        Integer[][] runs = new Integer[k][];
+        for (int i = 0; i < k; i++) {
+            runs[i] = new Integer[n / k + (i < n % k ? 1 : 0)];
+            for (int j = 0; j < runs[i].length; j++) {
+                runs[i][j] = gen.nextInt();
+            }
+            Arrays.sort(runs[i]);
+        }
+        return runs;
+    }
+
+    /** Returns an iterator over each run. */
+    private static List<Iterator<Integer>> iterators(Integer[][] runs) {
+        List<Iterator<Integer>> sources = new ArrayList<>();
+        for (Integer[] run : runs) {
+            sources.add(Arrays.asList(run).iterator());
+        }
+        return sources;
+    }
+}
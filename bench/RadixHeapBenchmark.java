@@ -0,0 +1,95 @@
+/*
+ * Benchmarks of the radix heap against the binary heap on monotone keys.
+ * Author: Spencer Little
+ */
+
+import java.util.Random;
+
+/**
+ * Compares RadixHeap with a MIN Heap<Long> without position tracking on two
+ * monotone workloads:
+ *   drain  insert n random keys, then extract them all
+ *   hold   start from n queued events and repeatedly extract the earliest and
+ *          schedule a new one a random delay after it, the steady state of an
+ *          event-time scheduler (n extractions and n inserts per iteration)
+ * Heap<Long> boxes every key it is given and uses replaceRoot for hold; the
+ * radix heap stores the keys as longs and carries a preallocated payload per event.
+ *
+ * Usage: RadixHeapBenchmark [-b benchmarks] [-n sizes] [-r range] [-w warmups] [-i iterations]
+ *   -b  comma separated subset of drain,hold
+ *   -n  comma separated heap sizes, default 1e6,1e7 (1e7 needs about -Xmx4g)
+ *   -r  keys and delays are uniform in [0, range), default 1e9
+ * @author Spencer Little
+ */
+public class RadixHeapBenchmark {
+
+    public static void main(String[] args) {
+        String[] benchmarks = Bench.option(args, "-b", "drain,hold").split(",");
+        int[] sizes = Bench.intsOption(args, "-n", "1e6,1e7");
+        long range = (long) Double.parseDouble(Bench.option(args, "-r", "1e9"));
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "2"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "3"));
+
+        for (String benchmark : benchmarks) {
+            for (int n : sizes) {
+                long[] keys = new long[n];
+                Random gen = new Random(n);
+                for (int i = 0; i < n; i++) {
+                    keys[i] = (long) (gen.nextDouble() * range);
+                }
+                Integer[] payloads = new Integer[1 << 16];
+                for (int i = 0; i < payloads.length; i++) {
+                    payloads[i] = i;
+                }
+                String name = benchmark + " n=" + n;
+                switch (benchmark) {
+                    case "drain":
+                        System.out.println(Bench.measure(name + " RadixHeap", RadixHeap<Integer>::new,
+                                heap -> {
+                                    for (int i = 0; i < n; i++) heap.insert(keys[i], payloads[i & 0xffff]);
+                                    while (heap.size() > 0) heap.extractRoot();
+                                    return n;
+                                }, warmups, iterations));
+                        System.out.println(Bench.measure(name + " Heap<Long>",
+                                () -> new Heap<>(Long.class, Heap.Type.MIN, Heap.Option.NO_POSITION_TRACKING),
+                                heap -> {
+                                    for (int i = 0; i < n; i++) heap.insert(keys[i]);
+                                    while (heap.size() > 0) heap.extractRoot();
+                                    return n;
+                                }, warmups, iterations));
+                        break;
+                    case "hold":
+                        System.out.println(Bench.measure(name + " RadixHeap",
+                                () -> {
+                                    RadixHeap<Integer> heap = new RadixHeap<>();
+                                    for (int i = 0; i < n; i++) heap.insert(keys[i], payloads[i & 0xffff]);
+                                    return heap;
+                                },
+                                heap -> {
+                                    for (int i = 0; i < n; i++) {
+                                        Integer event = heap.extractRoot();
+                                        heap.insert(heap.lastKey() + keys[i], event);
+                                    }
+                                    return n;
+                                }, warmups, iterations));
+                        System.out.println(Bench.measure(name + " Heap<Long>",
+                                () -> {
+                                    Heap<Long> heap = new Heap<>(Long.class, Heap.Type.MIN, 2, n,
+                                            Heap.Option.NO_POSITION_TRACKING);
+                                    for (int i = 0; i < n; i++) heap.insert(keys[i]);
+                                    return heap;
+                                },
+                                heap -> {
+                                    for (int i = 0; i < n; i++) {
+                                        heap.replaceRoot(heap.getRoot() + keys[i]);
+                                    }
+                                    return n;
+                                }, warmups, iterations));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown benchmark " + benchmark);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Benchmarks of heaps of records ordered by a comparator.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Measures a full insert-then-extract cycle over heaps of records ordered by
+ * one of their fields. Compares the Comparator constructors of Heap against
+ * the Comparable wrapper records needed before Heap accepted a Comparator,
+ * and against PriorityQueue with the same comparator.
+ *
+ * With -p the JIT is first shown heaps of Integer, String and Long keys so
+ * the comparison call site inside Heap sees several receiver types, as it
+ * would in an application that uses heaps of several element types.
+ *
+ * Usage: RecordHeapBenchmark [-n sizes] [-t types] [-w warmups] [-i iterations] [-p]
+ *   -n  comma separated heap sizes, default 1e4,1e5,1e6
+ *   -t  comma separated heap types, default MIN,MAX
+ * @author Spencer Little
+ */
+public class RecordHeapBenchmark {
+
+    /** A record ordered by price. */
+    record Order(long id, int price, String symbol) {}
+
+    /** The wrapper a record needs to be stored in a heap that only knows Comparable. */
+    record ByPrice(Order order) implements Comparable<ByPrice> {
+        @Override
+        public int compareTo(ByPrice other) {return Integer.compare(order.price(), other.order.price());}
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.intsOption(args, "-n", "1e4,1e5,1e6");
+        String[] types = Bench.option(args, "-t", "MIN,MAX").split(",");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "5"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+        if (Arrays.asList(args).contains("-p")) pollute();
+
+        for (int n : sizes) {
+            Order[] orders = makeOrders(n);
+            for (String type : types) {
+                Heap.Type heapType = Heap.Type.valueOf(type);
+                Comparator<Order> byPrice = Comparator.comparingInt(Order::price);
+                Comparator<Order> order = heapType == Heap.Type.MIN ? byPrice : byPrice.reversed();
+                String name = "insert+extract n=" + n + " " + type;
+                System.out.println(Bench.measure(name + " Heap Comparable wrapper",
+                        () -> new Heap<>(ByPrice.class, heapType, Heap.Option.NO_POSITION_TRACKING),
+                        heap -> {
+                            for (Order o : orders) heap.insert(new ByPrice(o));
+                            while (heap.size() > 0) heap.extractRoot().order();
+                            return n;
+                        }, warmups, iterations));
+                System.out.println(Bench.measure(name + " Heap comparator",
+                        () -> new Heap<>(Order.class, order, Heap.Option.NO_POSITION_TRACKING),
+                        heap -> {
+                            for (Order o : orders) heap.insert(o);
+                            while (heap.size() > 0) heap.extractRoot();
+                            return n;
+                        }, warmups, iterations));
+                System.out.println(Bench.measure(name + " PriorityQueue comparator",
+                        () -> new PriorityQueue<>(order),
+                        queue -> {
+                            for (Order o : orders) queue.offer(o);
+                            while (!queue.isEmpty()) queue.poll();
+                            return n;
+                        }, warmups, iterations));
+            }
+        }
+    }
+
+    /** Returns n orders with random prices. */
+    private static Order[] makeOrders(int n) {
+        Random gen = new Random(n);
+        Order[] orders = new Order[n];
+        for (int i = 0; i < n; i++) {
+            orders[i] = new Order(i, gen.nextInt(1_000_000), "S" + (i & 1023));
+        }
+        return orders;
+    }
+
+    /** Runs heaps of several Comparable element types so the JIT sees more than one. */
+    private static void pollute() {
+        Random gen = new Random(0);
+        for (int round = 0; round < 20; round++) {
+            Heap<Integer> ints = new Heap<>(Integer.class, Heap.Type.MIN, Heap.Option.NO_POSITION_TRACKING);
+            Heap<String> strings = new Heap<>(String.class, Heap.Type.MAX, Heap.Option.NO_POSITION_TRACKING);
+            Heap<Long> longs = new Heap<>(Long.class, Heap.Type.MIN, Heap.Option.NO_POSITION_TRACKING);
+            for (int i = 0; i < 20_000; i++) {
+                int x = gen.nextInt();
+                ints.insert(x);
+                strings.insert(Integer.toString(x));
+                longs.insert((long) x);
+            }
+            while (ints.size() > 0) ints.extractRoot();
+            while (strings.size() > 0) strings.extractRoot();
+            while (longs.size() > 0) longs.extractRoot();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Benchmark of the sift loops on keys with an expensive compareTo.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+
+/**
+ * Measures extractRoot and insert on heaps of string keys that share a long
+ * prefix, so every comparison walks most of both strings and the number of
+ * comparisons dominates the cost. Next to the timing each case reports the
+ * comparisons and element moves per operation, counted in a separate run
+ * with Heap.Option.METRICS.
+ *
+ * Usage: SiftBenchmark [-n sizes] [-a arities] [-w warmups] [-i iterations]
+ *   -n  comma separated heap sizes, default 1e4,1e5,1e6
+ *   -a  comma separated arities, default 2,4
+ * @author Spencer Little
+ */
+public class SiftBenchmark {
+
+    /** The prefix shared by every key. */
+    private static final String PREFIX = "customer/region-eu-west/account/";
+
+    public static void main(String[] args) {
+        int[] sizes = Bench.intsOption(args, "-n", "1e4,1e5,1e6");
+        int[] arities = Bench.intsOption(args, "-a", "2,4");
+        int warmups = Integer.parseInt(Bench.option(args, "-w", "5"));
+        int iterations = Integer.parseInt(Bench.option(args, "-i", "5"));
+
+        for (int n : sizes) {
+            String[] keys = makeKeys(n);
+            for (int arity : arities) {
+                String name = "n=" + n + " d=" + arity;
+                Bench.Result extract = Bench.measure("extractRoot " + name,
+                        () -> new Heap<>(keys.clone(), Heap.Type.MIN, arity),
+                        heap -> {while (heap.size() > 0) heap.extractRoot(); return n;}, warmups, iterations);
+                Bench.Result insert = Bench.measure("insert " + name,
+                        () -> new Heap<>(String.class, Heap.Type.MIN, arity),
+                        heap -> {for (String k : keys) heap.insert(k); return n;}, warmups, iterations);
+
+                Heap<String> counted = new Heap<>(keys.clone(), Heap.Type.MIN, arity, Heap.Option.METRICS);
+                counted.resetMetrics();
+                while (counted.size() > 0) counted.extractRoot();
+                HeapMetrics extractMetrics = counted.getMetrics();
+                counted.resetMetrics();
+                for (String k : keys) counted.insert(k);
+                HeapMetrics insertMetrics = counted.getMetrics();
+
+                System.out.printf("%s %8.1f cmp/op%n", extract, (double) extractMetrics.comparisons / n);
+                System.out.printf("%s %8.1f cmp/op%n", insert, (double) insertMetrics.comparisons / n);
+            }
+        }
+    }
+
+    /** Returns n distinct shuffled keys that differ only after PREFIX. */
+    private static String[] makeKeys(int n) {
+        Integer[] ids = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        return Arrays.stream(HeapBenchmark.shuffled(ids))
+                .map(id -> PREFIX + String.format("%09d", id))
+                .toArray(String[]::new);
+    }
+}
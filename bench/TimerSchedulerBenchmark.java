@@ -0,0 +1,146 @@
+/*
+ * Throughput and timer skew benchmark of the timer scheduler.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules n tasks from one thread with delays uniform in [0, spread) and
+ * waits until all of them have run. Each task records its skew, the time
+ * between its deadline and the moment it starts running. Reports the
+ * scheduling cost per task, the task throughput from the first schedule
+ * call to the last task, the skew percentiles and, for TimerScheduler, the
+ * average number of tasks drained per wakeup.
+ *
+ * The schedulers:
+ *   direct   TimerScheduler running the tasks on the scheduler thread
+ *   pool     TimerScheduler on a fixed pool of one thread per processor
+ *   virtual  TimerScheduler on virtual threads, skipped before Java 21
+ *   stpe     ScheduledThreadPoolExecutor with one thread per processor, the JDK baseline
+ *
+ * Usage: TimerSchedulerBenchmark [-n tasks] [-s spreadMillis] [-e schedulers] [-r rounds]
+ *   -n  comma separated task counts, default 1e6
+ *   -s  comma separated delay spreads in milliseconds, default 100,2000
+ *   -e  comma separated subset of direct,pool,virtual,stpe
+ * @author Spencer Little
+ */
+public class TimerSchedulerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Bench.intsOption(args, "-n", "1e6");
+        int[] spreads = Bench.intsOption(args, "-s", "100,2000");
+        String[] schedulers = Bench.option(args, "-e", "direct,pool,virtual,stpe").split(",");
+        int rounds = Integer.parseInt(Bench.option(args, "-r", "3"));
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int n : sizes) {
+            for (int spread : spreads) {
+                long[] delays = new long[n];
+                Random gen = new Random(n);
+                for (int i = 0; i < n; i++) {
+                    delays[i] = (long) (gen.nextDouble() * TimeUnit.MILLISECONDS.toNanos(spread));
+                }
+                for (String scheduler : schedulers) {
+                    for (int round = 0; round < rounds; round++) {
+                        String name = String.format("%-8s n=%d spread=%dms", scheduler, n, spread);
+                        switch (scheduler) {
+                            case "direct":
+                                System.out.println(run(name, delays, Runnable::run));
+                                break;
+                            case "pool": {
+                                ExecutorService pool = Executors.newFixedThreadPool(processors);
+                                System.out.println(run(name, delays, pool));
+                                pool.shutdown();
+                                break;
+                            }
+                            case "virtual": {
+                                ExecutorService virtual;
+                                try {
+                                    virtual = TimerScheduler.virtualThreadExecutor();
+                                } catch (UnsupportedOperationException e) {
+                                    System.out.println(name + " skipped: " + e.getMessage());
+                                    round = rounds;
+                                    break;
+                                }
+                                System.out.println(run(name, delays, virtual));
+                                virtual.shutdown();
+                                break;
+                            }
+                            case "stpe":
+                                System.out.println(runExecutor(name, delays, processors));
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Unknown scheduler " + scheduler);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Runs the workload on a TimerScheduler using executor and returns the report line. */
+    private static String run(String name, long[] delays, Executor executor) throws InterruptedException {
+        int n = delays.length;
+        long[] skew = new long[n];
+        CountDownLatch done = new CountDownLatch(n);
+        try (TimerScheduler scheduler = new TimerScheduler(executor)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                int id = i;
+                long deadline = System.nanoTime() + delays[i];
+                scheduler.schedule(() -> {
+                    skew[id] = System.nanoTime() - deadline;
+                    done.countDown();
+                }, delays[i], TimeUnit.NANOSECONDS);
+            }
+            long scheduled = System.nanoTime();
+            done.await();
+            long end = System.nanoTime();
+            return report(name, n, start, scheduled, end, skew)
+                    + String.format(" %8.1f tasks/wakeup", (double) n / scheduler.batches());
+        }
+    }
+
+    /** Runs the workload on a ScheduledThreadPoolExecutor and returns the report line. */
+    private static String runExecutor(String name, long[] delays, int threads) throws InterruptedException {
+        int n = delays.length;
+        long[] skew = new long[n];
+        CountDownLatch done = new CountDownLatch(n);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads);
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            int id = i;
+            long deadline = System.nanoTime() + delays[i];
+            executor.schedule(() -> {
+                skew[id] = System.nanoTime() - deadline;
+                done.countDown();
+            }, delays[i], TimeUnit.NANOSECONDS);
+        }
+        long scheduled = System.nanoTime();
+        done.await();
+        long end = System.nanoTime();
+        executor.shutdown();
+        return report(name, n, start, scheduled, end, skew);
+    }
+
+    /** Formats the scheduling cost, throughput and skew percentiles of one run. */
+    private static String report(String name, int n, long start, long scheduled, long end, long[] skew) {
+        Arrays.sort(skew);
+        return String.format("%-32s schedule %7.1f ns/task %10.0f tasks/s  skew us p50 %8.1f p99 %8.1f p99.9 %8.1f max %8.1f",
+                name, (double) (scheduled - start) / n, n * 1e9 / (end - start),
+                percentile(skew, 0.5), percentile(skew, 0.99), percentile(skew, 0.999), skew[n - 1] / 1e3);
+    }
+
+    /** Returns the given percentile of sorted nanosecond values in microseconds. */
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))] / 1e3;
+    }
+}
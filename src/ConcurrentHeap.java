@@ -0,0 +1,174 @@
+/*
+ * A concurrent, relaxed priority queue built from heap shards.
+ * Author: Spencer Little
+ */
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe priority queue with MultiQueue semantics: the elements are
+ * spread over several independently locked Heap shards. insert adds to a
+ * random shard whose lock is free, or waits for the lock of a random shard
+ * once as many tries found every lock taken; poll samples two random shards, compares
+ * their cached roots without locking and extracts from the better one.
+ * Threads rarely contend for the same lock, so throughput scales with the
+ * number of cores.
+ *
+ * Ordering is relaxed, not strict. poll returns the root of one shard, which
+ * is the best element of that shard but, with many threads, usually only one
+ * of the best O(shards) elements of the whole queue. With one shard the queue
+ * is strictly ordered (and no faster than a locked Heap). Every inserted
+ * element is returned by exactly one poll. poll only returns null after it
+ * has found every shard empty, and size is exact only when the queue is quiescent.
+ * @author Spencer Little
+ */
+public class ConcurrentHeap<T> {
+
+    /** The ordering of the queue, the sampled shard whose root compares least wins. */
+    private Comparator<? super T> comparator;
+    /** The shards holding the elements. */
+    private Shard<T>[] shards;
+    /** The number of elements in the queue. */
+    private LongAdder size = new LongAdder();
+
+    /** One locked heap and its root, cached so it can be read without the lock. */
+    private static final class Shard<T> {
+        final ReentrantLock lock = new ReentrantLock();
+        final Heap<T> heap;
+        /** The root of heap, or null if it is empty. Written under lock. */
+        volatile T top;
+
+        Shard(Class<T> t, Comparator<? super T> comparator) {
+            heap = new Heap<>(t, comparator, Heap.Option.NO_POSITION_TRACKING);
+        }
+
+        /** Refreshes the cached root after heap has changed. Call under lock. */
+        void updateTop() {
+            top = heap.size() > 0 ? heap.getRoot() : null;
+        }
+    }
+
+    /**
+     * Creates an empty queue with two shards per available processor.
+     */
+    public ConcurrentHeap(Class<T> t, Heap.Type type) {
+        this(t, type, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an empty queue.
+     * @param shardCount the number of shards, more shards mean less contention
+     *                   but a more relaxed ordering
+     * @throws IllegalArgumentException if shardCount is less than 1
+     */
+    public ConcurrentHeap(Class<T> t, Heap.Type type, int shardCount) {
+        this(t, Heap.naturalOrder(type), shardCount);
+    }
+
+    /**
+     * Creates an empty queue ordered by comparator, polling elements that
+     * compare least first.
+     * @param shardCount the number of shards, more shards mean less contention
+     *                   but a more relaxed ordering
+     * @throws IllegalArgumentException if shardCount is less than 1
+     */
+    public ConcurrentHeap(Class<T> t, Comparator<? super T> comparator, int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("shardCount must be at least 1, got " + shardCount);
+        this.comparator = comparator;
+        @SuppressWarnings("unchecked")
+        Shard<T>[] s = (Shard<T>[]) new Shard<?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            s[i] = new Shard<>(t, comparator);
+        }
+        shards = s;
+    }
+
+    /** Returns the number of elements in the queue, exact only while no other thread modifies it. */
+    public int size() {return (int) size.sum();}
+    /** Returns true if the queue holds no elements, exact only while no other thread modifies it. */
+    public boolean isEmpty() {return size.sum() == 0;}
+
+    /**
+     * Inserts an element into the queue.
+     * Complexity: O(log(n/shards)) without contention
+     * @param toInsert element to insert
+     */
+    public void insert(T toInsert) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Shard<T> shard = null;
+        for (int attempt = 0; attempt < shards.length; attempt++) {
+            Shard<T> candidate = shards[random.nextInt(shards.length)];
+            if (candidate.lock.tryLock()) {
+                shard = candidate;
+                break;
+            }
+        }
+        if (shard == null) { // every shard tried was busy, wait for one instead of spinning
+            shard = shards[random.nextInt(shards.length)];
+            shard.lock.lock();
+        }
+        try {
+            shard.heap.insert(toInsert);
+            shard.updateTop();
+        } finally {
+            shard.lock.unlock();
+        }
+        size.increment();
+    }
+
+    /**
+     * Removes and returns a minimum/maximum value of one of the shards, see the
+     * class comment for the ordering guarantee.
+     * Complexity: O(log(n/shards)) without contention
+     * @return an element with a high priority, or null if the queue is empty
+     */
+    public T poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < shards.length; attempt++) {
+            Shard<T> one = shards[random.nextInt(shards.length)];
+            Shard<T> two = shards[random.nextInt(shards.length)];
+            Shard<T> best = better(one.top, two.top) ? one : two;
+            if (best.top == null) continue; // both sampled shards look empty
+            if (best.lock.tryLock()) {
+                try {
+                    if (best.heap.size() > 0) return extractFrom(best);
+                } finally {
+                    best.lock.unlock();
+                }
+            }
+        }
+
+        // sampling keeps missing, sweep every shard before reporting empty
+        for (Shard<T> shard : shards) {
+            shard.lock.lock();
+            try {
+                if (shard.heap.size() > 0) return extractFrom(shard);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /** Extracts the root of a non empty shard. Call under the shard's lock. */
+    private T extractFrom(Shard<T> shard) {
+        T root = shard.heap.extractRoot();
+        shard.updateTop();
+        size.decrement();
+        return root;
+    }
+
+    /**
+     * Returns true if the root one should be polled before the root two. An
+     * empty shard (null root) never wins.
+     */
+    private boolean better(T one, T two) {
+        if (one == null) return false;
+        if (two == null) return true;
+        return comparator.compare(one, two) <= 0;
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * A set of unit tests covering the concurrent heap.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Spencer Little
+ */
+public class ConcurrentHeapTest {
+
+    @Test
+    public void testSingleShardIsStrict() {
+        for (Heap.Type type : Heap.Type.values()) {
+            ConcurrentHeap<Integer> testHeap = new ConcurrentHeap<>(Integer.class, type, 1);
+            List<Integer> input = new ArrayList<>();
+            Random gen = new Random();
+            for (int i = 0; i < 1000; i++) {
+                Integer x = gen.nextInt();
+                input.add(x);
+                testHeap.insert(x);
+            }
+            input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            for (Integer expected : input) {
+                Assert.assertEquals(expected, testHeap.poll());
+            }
+            Assert.assertNull(testHeap.poll());
+            Assert.assertTrue(testHeap.isEmpty());
+        }
+    }
+
+    @Test
+    public void testShardedReturnsEveryElement() {
+        ConcurrentHeap<Integer> testHeap = new ConcurrentHeap<>(Integer.class, Heap.Type.MIN, 8);
+        for (int i = 0; i < 10000; i++) {
+            testHeap.insert(i);
+        }
+        Assert.assertEquals(10000, testHeap.size());
+        boolean[] seen = new boolean[10000];
+        Integer x;
+        while ((x = testHeap.poll()) != null) {
+            Assert.assertFalse(seen[x]);
+            seen[x] = true;
+        }
+        for (boolean b : seen) {
+            Assert.assertTrue(b);
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        int threads = 4, perThread = 20000;
+        ConcurrentHeap<Integer> testHeap = new ConcurrentHeap<>(Integer.class, Heap.Type.MAX);
+        ExecutorService pool = Executors.newFixedThreadPool(2 * threads);
+        ConcurrentLinkedQueue<Integer> polled = new ConcurrentLinkedQueue<>();
+        CountDownLatch producersDone = new CountDownLatch(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    testHeap.insert(base + i);
+                }
+                producersDone.countDown();
+            }));
+            futures.add(pool.submit(() -> {
+                while (true) {
+                    Integer x = testHeap.poll();
+                    if (x != null) {
+                        polled.add(x);
+                    } else if (producersDone.getCount() == 0 && testHeap.isEmpty()) {
+                        return null;
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(threads * perThread, polled.size());
+        Assert.assertEquals(threads * perThread, new HashSet<>(polled).size());
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * A set of unit tests covering the double heap class.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class DoubleHeapTest {
+
+    @Test
+    public void testHeapify() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                DoubleHeap testHeap = new DoubleHeap(makeRandomDoubleArray(), type);
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+        }
+    }
+
+    @Test
+    public void testExtractRoot() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                double[] doubleArr = makeRandomDoubleArray();
+                DoubleHeap testHeap = new DoubleHeap(doubleArr.clone(), type);
+                Arrays.sort(doubleArr);
+                for (int j = 0; j < doubleArr.length; j++) {
+                    double expected = type == Heap.Type.MIN ? doubleArr[j] : doubleArr[doubleArr.length - 1 - j];
+                    Assert.assertEquals(expected, testHeap.getRoot(), 0.0);
+                    Assert.assertEquals(expected, testHeap.extractRoot(), 0.0);
+                    Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testInsert() {
+        for (Heap.Type type : Heap.Type.values()) {
+            DoubleHeap testHeap = new DoubleHeap(type);
+            Random gen = new Random();
+            for (int j = 0; j < 1000; j++) {
+                double x = gen.nextInt(100);
+                testHeap.insert(x);
+                Assert.assertTrue(testHeap.contains(x));
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+            Assert.assertEquals(1000, testHeap.size());
+        }
+    }
+
+    @Test
+    public void testDelete() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                double[] doubleArr = makeRandomDoubleArray();
+                DoubleHeap testHeap = new DoubleHeap(doubleArr.clone(), type);
+                for (int j = 0; j < doubleArr.length; j++) {
+                    testHeap.delete(doubleArr[j]);
+                    Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteAll() {
+        for (Heap.Type type : Heap.Type.values()) {
+            DoubleHeap testHeap = new DoubleHeap(makeRandomDoubleArray(), type);
+            double x = new Random().nextDouble();
+            for (int j = 0; j < 100; j++) {
+                testHeap.insert(x);
+            }
+            Assert.assertTrue(testHeap.elementCount(x) >= 100);
+            testHeap.deleteAll(x);
+            Assert.assertFalse(testHeap.contains(x));
+            Assert.assertEquals(0, testHeap.elementCount(x));
+            Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+        }
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        for (Heap.Type type : Heap.Type.values()) {
+            DoubleHeap testHeap = new DoubleHeap(type);
+            Map<Double, Integer> counts = new HashMap<>();
+            Random gen = new Random();
+            for (int j = 0; j < 10000; j++) {
+                double x = gen.nextInt(20) / 2.0;
+                if (gen.nextInt(3) == 0 && testHeap.contains(x)) {
+                    testHeap.delete(x);
+                    counts.merge(x, -1, Integer::sum);
+                } else if (gen.nextInt(3) == 0 && testHeap.size() > 0) {
+                    counts.merge(testHeap.extractRoot(), -1, Integer::sum);
+                } else {
+                    testHeap.insert(x);
+                    counts.merge(x, 1, Integer::sum);
+                }
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+            for (double x = 0; x < 20; x++) {
+                Assert.assertEquals((int) counts.getOrDefault(x, 0), testHeap.elementCount(x));
+            }
+        }
+    }
+
+    @Test
+    public void testSignedZeroAndNaN() {
+        DoubleHeap testHeap = new DoubleHeap(new double[] {Double.NaN, 0.0, -0.0, 1.0}, Heap.Type.MIN);
+        Assert.assertEquals(1, testHeap.elementCount(0.0));
+        Assert.assertEquals(1, testHeap.elementCount(-0.0));
+        Assert.assertTrue(testHeap.contains(Double.NaN));
+        Assert.assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(testHeap.extractRoot()));
+        Assert.assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(testHeap.extractRoot()));
+        Assert.assertEquals(1.0, testHeap.extractRoot(), 0.0);
+        Assert.assertTrue(Double.isNaN(testHeap.extractRoot()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new DoubleHeap(Heap.Type.MIN).extractRoot();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeleteMissing() {
+        DoubleHeap testHeap = new DoubleHeap(Heap.Type.MIN);
+        testHeap.insert(1);
+        testHeap.delete(2);
+    }
+
+    /**
+     * Tests the heap condition for each node (that no child precedes its parent).
+     * @param testArr the heap array
+     * @param elementCount the number of elements in the heap
+     * @param type the type of heap
+     * @return a boolean indicating whether the heap property is fulfilled
+     */
+    private boolean isHeap(double[] testArr, int elementCount, Heap.Type type) {
+        for (int i = 1; i < elementCount; i++) {
+            double parent = testArr[(i - 1)/2];
+            if (type == Heap.Type.MIN ? testArr[i] < parent : testArr[i] > parent) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an array with a random amount of random double values.
+     */
+    private double[] makeRandomDoubleArray() {
+        Random gen = new Random();
+        double[] arr = new double[gen.nextInt(1000) + 1];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = gen.nextInt(500) / 4.0;
+        }
+        return arr;
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * External merge sort built on the heap.
+ * Author: Spencer Little
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorts inputs larger than memory. The input is cut into runs of at most
+ * runSize elements, the memory budget; each run is heapsorted, by heapifying
+ * it into a Heap without position tracking and extracting the root until it
+ * is empty, and spilled to a temporary file through a buffered FileChannel.
+ * The runs are then merged with a KWayMerge over buffered readers of the run
+ * files, at most fanIn at a time: while more runs are left, groups of fanIn
+ * are merged into longer runs first. Elements are written with a HeapCodec,
+ * each run file holding its element count followed by the elements.
+ *
+ * The sort is stable, equal elements keep their input order. The temporary
+ * files are deleted when sort returns or fails.
+ * @author Spencer Little
+ */
+public class ExternalSort<T> {
+
+    /** The size of the buffer each run file is read and written through. */
+    private static final int RUN_BUFFER = 1 << 16;
+    /** The default number of runs merged at once. */
+    private static final int DEFAULT_FAN_IN = 128;
+
+    /** The element class, used to create the run buffer. */
+    private final Class<T> elementClass;
+    /** The sort order. */
+    private final Comparator<? super T> order;
+    /** Reads and writes the elements of the runs and the output. */
+    private final HeapCodec<T> codec;
+    /** The maximum number of elements held in memory to sort a run. */
+    private final int runSize;
+    /** The maximum number of runs merged at once. */
+    private final int fanIn;
+    /** The directory the run files are created in. */
+    private final Path tempDir;
+    /** The number of run files written by the last sort, including those of intermediate merges. */
+    private int runFiles;
+
+    /**
+     * Creates a sorter ordering the elements by their natural ordering.
+     * @param t the element class
+     * @param type MIN to sort ascending, MAX descending
+     * @param codec reads and writes the elements
+     * @param runSize the maximum number of elements held in memory, at least 1
+     * @param tempDir the directory to create the run files in
+     * @throws IllegalArgumentException if runSize is less than 1
+     */
+    public ExternalSort(Class<T> t, Heap.Type type, HeapCodec<T> codec, int runSize, Path tempDir) {
+        this(t, Heap.<T>naturalOrder(type), codec, runSize, DEFAULT_FAN_IN, tempDir);
+    }
+
+    /**
+     * Creates a sorter ordering the elements by order.
+     * @param t the element class
+     * @param order the sort order
+     * @param codec reads and writes the elements
+     * @param runSize the maximum number of elements held in memory, at least 1
+     * @param fanIn the maximum number of runs merged at once, at least 2
+     * @param tempDir the directory to create the run files in
+     * @throws IllegalArgumentException if runSize is less than 1 or fanIn less than 2
+     */
+    public ExternalSort(Class<T> t, Comparator<? super T> order, HeapCodec<T> codec, int runSize, int fanIn,
+                        Path tempDir) {
+        if (runSize < 1) throw new IllegalArgumentException("runSize must be at least 1, got " + runSize);
+        if (fanIn < 2) throw new IllegalArgumentException("fanIn must be at least 2, got " + fanIn);
+        this.elementClass = t;
+        this.order = order;
+        this.codec = codec;
+        this.runSize = runSize;
+        this.fanIn = fanIn;
+        this.tempDir = tempDir;
+    }
+
+    /** Returns the number of run files written by the last sort, including those of intermediate merges. */
+    public int runFiles() {return runFiles;}
+
+    /**
+     * Sorts input and writes the sorted elements to out with the codec, out is
+     * left open.
+     * Complexity: O(n*log(n)) comparisons, O(n*log_f(n/m)) elements read and
+     * written, m = runSize, f = fanIn
+     * @throws IOException if a run file or out cannot be written or read
+     * @param input the elements to sort
+     * @param out the channel to write the sorted elements to
+     * @return the number of elements written
+     */
+    public long sort(Iterator<? extends T> input, WritableByteChannel out) throws IOException {
+        runFiles = 0;
+        List<Path> created = new ArrayList<>();
+        try {
+            List<Path> runs = new ArrayList<>();
+            writeRuns(input, runs, created);
+            while (runs.size() > fanIn) {
+                List<Path> merged = new ArrayList<>();
+                for (int first = 0; first < runs.size(); first += fanIn) {
+                    List<Path> group = runs.subList(first, Math.min(first + fanIn, runs.size()));
+                    Path run = newRunFile(created);
+                    merged.add(run);
+                    try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+                        merge(group, channel, true);
+                    }
+                    for (Path done : group) {
+                        Files.delete(done); // frees the disk space as the pass goes
+                    }
+                }
+                runs = merged;
+            }
+            return merge(runs, out, false);
+        } finally {
+            for (Path run : created) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Cuts input into runs of runSize elements, heapsorts each and spills it
+     * to a new run file, adding the files to runs and created.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeRuns(Iterator<? extends T> input, List<Path> runs, List<Path> created) throws IOException {
+        T[] buffer = (T[]) Array.newInstance(elementClass, input.hasNext() ? runSize : 0);
+        while (input.hasNext()) {
+            int count = 0;
+            while (count < runSize && input.hasNext()) {
+                buffer[count++] = input.next();
+            }
+            // STABLE numbers the elements in array order, so the heapsort keeps equal elements in input order
+            Heap<T> heap = new Heap<>(count == runSize ? buffer : Arrays.copyOf(buffer, count), order,
+                    Heap.Option.NO_POSITION_TRACKING, Heap.Option.STABLE);
+            Path file = newRunFile(created);
+            runs.add(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                DataOutputStream data = writer(channel);
+                data.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    codec.write(heap.extractRoot(), data);
+                }
+                data.flush();
+            }
+        }
+    }
+
+    /**
+     * Merges the run files into out, preceded by the element count if counted.
+     * @return the number of elements written
+     */
+    private long merge(List<Path> runs, WritableByteChannel out, boolean counted) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            long total = 0;
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                total += reader.remaining;
+            }
+            DataOutputStream data = writer(out);
+            if (counted) {
+                if (total > Integer.MAX_VALUE) throw new IOException("A run cannot hold more than 2^31-1 elements");
+                data.writeInt((int) total);
+            }
+            KWayMerge<T> merge = new KWayMerge<>(readers, order);
+            try {
+                while (merge.hasNext()) {
+                    codec.write(merge.next(), data);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            data.flush();
+            return total;
+        } finally {
+            for (RunReader reader : readers) {
+                reader.channel.close();
+            }
+        }
+    }
+
+    /** Creates an empty run file and adds it to created. */
+    private Path newRunFile(List<Path> created) throws IOException {
+        Path run = Files.createTempFile(tempDir, "run", ".bin");
+        created.add(run);
+        runFiles++;
+        return run;
+    }
+
+    /** Returns a buffered stream writing to out, flushing it does not close out. */
+    private static DataOutputStream writer(WritableByteChannel out) {
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), RUN_BUFFER));
+    }
+
+    /** Reads the elements of a run file in order through a buffer. */
+    private final class RunReader implements Iterator<T> {
+        /** The run file. */
+        private final FileChannel channel;
+        /** The buffered stream over the run file. */
+        private final DataInputStream data;
+        /** The number of elements left to read. */
+        private int remaining;
+
+        private RunReader(Path run) throws IOException {
+            channel = FileChannel.open(run, StandardOpenOption.READ);
+            data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), RUN_BUFFER));
+            remaining = data.readInt();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * Returns the next element of the run.
+         * @throws UncheckedIOException if the run file cannot be read
+         */
+        @Override
+        public T next() {
+            if (remaining == 0) throw new NoSuchElementException();
+            remaining--;
+            try {
+                return codec.read(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
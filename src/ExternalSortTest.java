@@ -0,0 +1,103 @@
+/*
+ * A set of unit tests covering the external sort.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class ExternalSortTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSort() throws IOException {
+        Path tempDir = folder.newFolder().toPath();
+        Random gen = new Random();
+        for (int n : new int[] {0, 1, 999, 1000, 1001, 25000}) {
+            List<Integer> input = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                input.add(gen.nextInt());
+            }
+            ExternalSort<Integer> sorter = new ExternalSort<>(Integer.class, Heap.Type.MIN, HeapCodec.integers(),
+                    1000, tempDir);
+            List<Integer> sorted = sort(sorter, input, HeapCodec.integers());
+            input.sort(Comparator.naturalOrder());
+            Assert.assertEquals(input, sorted);
+            Assert.assertEquals((n + 999) / 1000, sorter.runFiles());
+            Assert.assertEquals(0, tempDir.toFile().list().length);
+        }
+    }
+
+    @Test
+    public void testMultiPassStable() throws IOException {
+        Path tempDir = folder.newFolder().toPath();
+        HeapCodec<long[]> codec = new HeapCodec<>() {
+            @Override
+            public void write(long[] elem, DataOutput out) throws IOException {
+                out.writeLong(elem[0]);
+                out.writeLong(elem[1]);
+            }
+            @Override
+            public long[] read(DataInput in) throws IOException {return new long[] {in.readLong(), in.readLong()};}
+        };
+        List<long[]> input = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 10000; i++) {
+            input.add(new long[] {gen.nextInt(20), i});
+        }
+        ExternalSort<long[]> sorter = new ExternalSort<>(long[].class,
+                Comparator.comparingLong((long[] e) -> e[0]).reversed(), codec, 100, 4, tempDir);
+        List<long[]> sorted = sort(sorter, input, codec);
+        // 100 runs, merged 4 at a time into 25, 7 and 2 runs before the final merge
+        Assert.assertEquals(100 + 25 + 7 + 2, sorter.runFiles());
+        Assert.assertEquals(input.size(), sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            long[] previous = sorted.get(i - 1), current = sorted.get(i);
+            Assert.assertTrue(previous[0] > current[0] || previous[0] == current[0] && previous[1] < current[1]);
+        }
+        Assert.assertEquals(0, tempDir.toFile().list().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFanInTooSmall() {
+        new ExternalSort<>(Integer.class, Comparator.<Integer>naturalOrder(), HeapCodec.integers(), 10, 1,
+                folder.getRoot().toPath());
+    }
+
+    /** Sorts input into a file with sorter and reads the sorted elements back. */
+    private <T> List<T> sort(ExternalSort<T> sorter, List<T> input, HeapCodec<T> codec) throws IOException {
+        Path out = folder.newFile().toPath();
+        long count;
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE)) {
+            count = sorter.sort(input.iterator(), channel);
+        }
+        Assert.assertEquals(input.size(), count);
+        List<T> sorted = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Channels.newInputStream(FileChannel.open(out)))) {
+            for (long i = 0; i < count; i++) {
+                sorted.add(codec.read(in));
+            }
+            Assert.assertEquals(-1, in.read());
+        }
+        return sorted;
+    }
+
+}
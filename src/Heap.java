@@ -3,75 +3,358 @@
  * Author: Spencer Little
  */
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * An implementation of a heap data structure.
+ * An implementation of a heap data structure. Elements are ordered either by
+ * their natural ordering, for heaps built with a Type, or by a Comparator.
  * @author Spencer Little
  */
-public class Heap<T extends Comparable> {
+public class Heap<T> implements PriorityHeap<T> {
 
     /** An enum indicating the type of heap, min or max. */
     public enum Type {MIN, MAX}
-    /** The type of heap, determines how heapCmp behaves. */
-    private Type heapType;
+    /** Optional behaviours that can be enabled when the heap is constructed. */
+    public enum Option {
+        /**
+         * Disables position tracking. insert and extractRoot no longer maintain
+         * an index of where each element lives, and contains, elementCount,
+         * delete and deleteAll throw UnsupportedOperationException.
+         */
+        NO_POSITION_TRACKING,
+        /**
+         * Extracts and deletes elements with equal keys in the order they were
+         * inserted (or, for the heapify constructor, in array order) by breaking
+         * ties on an insertion sequence number kept beside the heap array.
+         */
+        STABLE,
+        /**
+         * Counts comparisons, element moves, sift depths and resizes, available through
+         * getMetrics, and emits the JFR events described in HeapMetrics.
+         */
+        METRICS,
+        /**
+         * Makes delete and deleteAll O(1) per element: a deleted element is only
+         * marked dead and stays in the heap array until it reaches the root,
+         * where extractRoot and getRoot discard it, or until dead elements make
+         * up LAZY_COMPACTION_RATIO of the heap array and one heapify pass drops
+         * them all. size, contains and elementCount count live elements only.
+         * Suits workloads where most elements are deleted before they are
+         * extracted. Has no effect without position tracking.
+         */
+        LAZY_DELETE,
+        /**
+         * Makes the heapify constructors build large heaps on the common
+         * fork/join pool: independent subtrees are heapified in parallel and the
+         * position index hashes the elements in parallel. Arrays shorter than
+         * PARALLEL_THRESHOLD, and heaps with METRICS, whose counters are not
+         * thread safe, are built sequentially. The heap built is the same either way.
+         */
+        PARALLEL_HEAPIFY
+    }
+    /**
+     * Orders the elements so that the root compares least. For heaps built with
+     * a Type the min/max choice is folded in once, when the heap is built, so
+     * heapCmp never branches on the type.
+     */
+    private Comparator<? super T> comparator;
+    /**
+     * The number of children of each node. Wider nodes make the tree shallower
+     * and keep the children compared by a sift down within one cache line.
+     */
+    private int arity;
     /** Holds the index of the next open position in the heap array. */
     private int nextNodeIndex;
     /** The heap array itself. */
     private T[] heapArray;
     /** The current capacity of the heap array. */
     private int capacity;
+    /** The capacity the heap array never shrinks below on its own. */
+    private int minCapacity;
+    /**
+     * Maps each element to the indices in the heap array that contain that
+     * element or an equivalent element. Null if position tracking is disabled.
+     */
+    private PositionIndex<T> positionIndex;
+    /**
+     * The insertion sequence number of the element at each index of the heap
+     * array, used to break ties between equal keys. Null unless the heap is stable.
+     */
+    private long[] sequence;
+    /** The sequence number given to the next inserted element. */
+    private long nextSequence;
+    /** Instrumentation counters. Null unless metrics are enabled. */
+    private HeapMetrics.Counters counters;
+    /** True if delete only marks elements dead, see Option.LAZY_DELETE. */
+    private boolean lazyDelete;
+    /** The number of dead elements still in the heap array. */
+    private int deadCount;
+    /**
+     * Batches of at least this fraction of the current size are appended and
+     * re-heapified (O(n + m)) instead of being sifted up one by one (O(m*log(n))).
+     */
+    private static final double BULK_HEAPIFY_RATIO = 0.5;
+    /** The initial capacity when no expected size is given. */
+    private static final int DEFAULT_CAPACITY = 10;
+    /**
+     * The heap array is halved once it is less than 1/SHRINK_FACTOR full. It
+     * grows only when full, so after a shrink the heap has to double in size
+     * before it grows again and a size oscillating around a threshold never
+     * resizes on every operation.
+     */
+    private static final int SHRINK_FACTOR = 4;
+    /** extractRoots heapifies the whole remainder once it extracts more than 1/BULK_EXTRACT_RATIO of the heap. */
+    private static final int BULK_EXTRACT_RATIO = 8;
+    /** The smallest array the heapify constructors build in parallel, and the subtree size below which a fork/join task heapifies sequentially. */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    /** A lazy delete heap drops its dead elements once they make up this fraction of the heap array. */
+    private static final double LAZY_COMPACTION_RATIO = 0.5;
+    /**
+     * The key dead elements are tracked under in the position index, so their
+     * positions move with them through sifts while contains and elementCount
+     * no longer see them.
+     */
+    private static final Object DEAD = new Object();
+    /** Identifies a heap snapshot, the ASCII bytes "HEAP". */
+    private static final int SNAPSHOT_MAGIC = 0x48454150;
+    /** The snapshot format written by snapshot. */
+    private static final int SNAPSHOT_VERSION = 1;
+    /** Recorded in place of a Type in snapshots of heaps built with a Comparator. */
+    private static final int SNAPSHOT_COMPARATOR = -1;
+    /** The size of the buffer snapshots are streamed through. */
+    private static final int SNAPSHOT_BUFFER = 1 << 16;
+
+    /** The kinds of sift, see siftUp, siftDown and siftBottomUp. */
+    private enum Sift {
+        UP("up"), DOWN("down"), BOTTOM_UP("bottom-up");
+
+        /** The direction reported by heap.Sift events. */
+        final String label;
+
+        Sift(String label) {this.label = label;}
+    }
+
+    /**
+     * Initializes the heapArray when no initialize array is passed. The
+     * elements are ordered by their natural ordering and must implement Comparable.
+     * @param options optional behaviours to enable
+     */
+    public Heap(Class<T> t, Type type, Option... options) {
+        this(t, type, 2, options);
+    }
+
+    /**
+     * Initializes a d-ary heap when no initialize array is passed. The
+     * elements are ordered by their natural ordering and must implement Comparable.
+     * @param arity the number of children of each node, at least 2
+     * @param options optional behaviours to enable
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public Heap(Class<T> t, Type type, int arity, Option... options) {
+        this(t, naturalOrder(type), arity, DEFAULT_CAPACITY, options);
+    }
+
+    /**
+     * Initializes a d-ary heap sized for expectedSize elements when no
+     * initialize array is passed. The elements are ordered by their natural
+     * ordering and must implement Comparable.
+     * @param arity the number of children of each node, at least 2
+     * @param expectedSize the number of elements the heap is expected to hold,
+     *                     the heap array never shrinks below it on its own
+     * @param options optional behaviours to enable
+     * @throws IllegalArgumentException if arity is less than 2 or expectedSize is negative
+     */
+    public Heap(Class<T> t, Type type, int arity, int expectedSize, Option... options) {
+        this(t, naturalOrder(type), arity, expectedSize, options);
+    }
+
     /**
-     * A dictionary mapping an object to a list of indices in the heap
-     * array that contain that object or an equivalent object.
+     * Initializes a heap ordered by comparator when no initialize array is
+     * passed. The root is the least element according to comparator, use
+     * comparator.reversed() for a max heap.
+     * @param comparator the ordering of the elements
+     * @param options optional behaviours to enable
      */
-    private HashMap<T, List<Integer>> objectIndices = new HashMap<>();
+    public Heap(Class<T> t, Comparator<? super T> comparator, Option... options) {
+        this(t, comparator, 2, options);
+    }
 
     /**
-     * Initializes the heapArray when no initialize array is passed.
+     * Initializes a d-ary heap ordered by comparator when no initialize array
+     * is passed. The root is the least element according to comparator.
+     * @param comparator the ordering of the elements
+     * @param arity the number of children of each node, at least 2
+     * @param options optional behaviours to enable
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public Heap(Class<T> t, Comparator<? super T> comparator, int arity, Option... options) {
+        this(t, comparator, arity, DEFAULT_CAPACITY, options);
+    }
+
+    /**
+     * Initializes a d-ary heap ordered by comparator and sized for
+     * expectedSize elements when no initialize array is passed.
+     * @param comparator the ordering of the elements, the least element is the root
+     * @param arity the number of children of each node, at least 2
+     * @param expectedSize the number of elements the heap is expected to hold,
+     *                     the heap array never shrinks below it on its own
+     * @param options optional behaviours to enable
+     * @throws IllegalArgumentException if arity is less than 2 or expectedSize is negative
      */
     @SuppressWarnings("unchecked")
-    public Heap(Class<T> t, Type type) {
+    public Heap(Class<T> t, Comparator<? super T> comparator, int arity, int expectedSize, Option... options) {
+        if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative, got " + expectedSize);
         // generic array creation: https://stackoverflow.com/questions/529085/how-to-create-a-generic-array-in-java
-        heapArray = (T[]) Array.newInstance(t, 10);
-        capacity = 10;
+        heapArray = (T[]) Array.newInstance(t, expectedSize);
+        capacity = expectedSize;
+        minCapacity = expectedSize;
         nextNodeIndex = 0;
-        heapType = type;
+        this.comparator = comparator;
+        this.arity = checkArity(arity);
+        if (!hasOption(options, Option.NO_POSITION_TRACKING)) {
+            positionIndex = new PositionIndex<>(capacity);
+        }
+        if (hasOption(options, Option.STABLE)) {
+            sequence = new long[capacity];
+        }
+        if (hasOption(options, Option.METRICS)) {
+            counters = new HeapMetrics.Counters();
+        }
+        lazyDelete = hasOption(options, Option.LAZY_DELETE);
     }
 
     /**
      * Initializes the heap array by heapifying the supplied array.
-     * Assumes array is full.
+     * Assumes array is full. The elements are ordered by their natural
+     * ordering and must implement Comparable.
      * @param userArray the user provided array to be heapified
+     * @param options optional behaviours to enable
      */
-    public Heap(T[] userArray, Type type) {
-        int ind = 0;
-        for (T t : userArray) {
-            if (objectIndices.containsKey(t)) {
-                objectIndices.get(t).add(ind++);
-            } else {
-                List<Integer> indexList = new ArrayList<>();
-                indexList.add(ind++);
-                objectIndices.put(t, indexList);
+    public Heap(T[] userArray, Type type, Option... options) {
+        this(userArray, type, 2, options);
+    }
+
+    /**
+     * Initializes a d-ary heap array by heapifying the supplied array.
+     * Assumes array is full. The elements are ordered by their natural
+     * ordering and must implement Comparable.
+     * @param userArray the user provided array to be heapified
+     * @param arity the number of children of each node, at least 2
+     * @param options optional behaviours to enable
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public Heap(T[] userArray, Type type, int arity, Option... options) {
+        this(userArray, naturalOrder(type), arity, options);
+    }
+
+    /**
+     * Initializes a heap ordered by comparator by heapifying the supplied
+     * array. Assumes array is full.
+     * @param userArray the user provided array to be heapified
+     * @param comparator the ordering of the elements, the least element is the root
+     * @param options optional behaviours to enable
+     */
+    public Heap(T[] userArray, Comparator<? super T> comparator, Option... options) {
+        this(userArray, comparator, 2, options);
+    }
+
+    /**
+     * Initializes a d-ary heap ordered by comparator by heapifying the
+     * supplied array. Assumes array is full. Equal elements count as inserted
+     * in array order, for STABLE and for the occurrence delete removes.
+     * @param userArray the user provided array to be heapified
+     * @param comparator the ordering of the elements, the least element is the root
+     * @param arity the number of children of each node, at least 2
+     * @param options optional behaviours to enable
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public Heap(T[] userArray, Comparator<? super T> comparator, int arity, Option... options) {
+        this.comparator = comparator;
+        this.arity = checkArity(arity);
+        lazyDelete = hasOption(options, Option.LAZY_DELETE);
+        if (hasOption(options, Option.METRICS)) {
+            counters = new HeapMetrics.Counters();
+        }
+        boolean stable = hasOption(options, Option.STABLE);
+        boolean tracked = !hasOption(options, Option.NO_POSITION_TRACKING);
+        if (stable || tracked) { // a tracked heap numbers the elements too, to index them in array order
+            sequence = new long[userArray.length];
+            for (int i = 0; i < userArray.length; i++) {
+                sequence[i] = nextSequence++;
             }
         }
-
-        heapType = type;
-        heapArray = heapify(userArray);
+        boolean parallel = hasOption(options, Option.PARALLEL_HEAPIFY)
+                && counters == null && userArray.length >= PARALLEL_THRESHOLD;
+        if (parallel) {
+            new HeapifyTask(userArray, 0, userArray.length).invoke();
+            heapArray = userArray;
+        } else {
+            heapArray = heapify(userArray, userArray.length);
+        }
         capacity = heapArray.length;
+        minCapacity = Math.min(capacity, DEFAULT_CAPACITY);
         nextNodeIndex = heapArray.length;
+
+        if (tracked) {
+            positionIndex = new PositionIndex<>(capacity);
+            positionIndex.addAll(heapArray, bySequence(sequence, nextNodeIndex), nextNodeIndex, parallel);
+        }
+        if (!stable) sequence = null;
     }
 
-    /** Returns the heap as an array. */
+    /**
+     * Returns the heap as an array. With Option.LAZY_DELETE the array may still
+     * hold deleted elements, see compact.
+     */
     public T[] getHeapArray() {return heapArray;}
     /** Returns the number of elements in the heap. */
-    public int size() {return nextNodeIndex;}
+    public int size() {return nextNodeIndex - deadCount;}
+    /** Returns the ordering of the heap, the root compares least. */
+    public Comparator<? super T> comparator() {return comparator;}
     /** Returns true if the heap contains the specified element. O(1). */
-    public boolean contains(T elem) {return objectIndices.containsKey(elem);}
+    public boolean contains(T elem) {return trackedPositions().first(elem) >= 0;}
+
+    /**
+     * Returns a snapshot of the instrumentation counters.
+     * @throws UnsupportedOperationException if metrics are disabled
+     * @return the current metrics
+     */
+    public HeapMetrics getMetrics() {
+        if (counters == null) throw new UnsupportedOperationException("Metrics are disabled for this heap");
+        if (positionIndex == null) return new HeapMetrics(counters, -1, -1);
+        int distinct = positionIndex.distinctKeys() - (deadCount > 0 ? 1 : 0);
+        return new HeapMetrics(counters, distinct, positionIndex.maxCount(DEAD));
+    }
+
+    /**
+     * Resets the instrumentation counters to zero.
+     * @throws UnsupportedOperationException if metrics are disabled
+     */
+    public void resetMetrics() {
+        if (counters == null) throw new UnsupportedOperationException("Metrics are disabled for this heap");
+        counters = new HeapMetrics.Counters();
+    }
 
     /**
      * Returns the number of occurrences of elem in the heap.
@@ -79,11 +362,7 @@ public class Heap<T extends Comparable> {
      * @return the number of occurrences of elem in the heap
      */
     public int elementCount(T elem) {
-        if (objectIndices.containsKey(elem)) {
-            return objectIndices.get(elem).size();
-        } else {
-            return 0;
-        }
+        return trackedPositions().count(elem);
     }
 
     /********************************************************************
@@ -95,22 +374,124 @@ public class Heap<T extends Comparable> {
      * Complexity: O(log(n)), n = heapArray.length, can be O(n) if resizing is necessary
      * @param toInsert element to insert
      */
-    public void insert(T toInsert) { //TODO: duplicate keys should be extracted in the order they were inserted 
-        if (nextNodeIndex > capacity>>>1) {
-            capacity = capacity + (capacity>>>1); // increase capacity by 1.5
-            heapArray = Arrays.copyOf(heapArray, capacity);
+    public void insert(T toInsert) {
+        if (nextNodeIndex == capacity) {
+            resize(capacity + (capacity>>>1) + 1); // increase capacity by 1.5, +1 so tiny heaps grow
         }
 
-        if (objectIndices.containsKey(toInsert)) {
-            objectIndices.get(toInsert).add(nextNodeIndex);
-        } else {
-            List<Integer> indexList = new ArrayList<>();
-            indexList.add(nextNodeIndex);
-            objectIndices.put(toInsert, indexList);
+        if (positionIndex != null) positionIndex.add(toInsert, nextNodeIndex);
+        if (sequence != null) sequence[nextNodeIndex] = nextSequence++;
+        heapArray[nextNodeIndex] = toInsert;
+        sift(nextNodeIndex++, Sift.UP);
+    }
+
+    /**
+     * Inserts every element of the array into the heap. Large batches are
+     * appended and the whole array re-heapified in one pass.
+     * Complexity: O(min(m*log(n), n + m)), m = toInsert.length
+     * @param toInsert the elements to insert, in insertion order
+     */
+    public void insertAll(T[] toInsert) {
+        int first = reserve(toInsert.length);
+        for (T elem : toInsert) {
+            append(elem, nextSequence++);
         }
+        restoreAfterAppend(first);
+    }
 
-        heapArray[nextNodeIndex] = toInsert;
-        swapUpTree(heapArray, nextNodeIndex++);
+    /**
+     * Inserts every element of the collection into the heap, in iteration
+     * order. Large batches are appended and the whole array re-heapified in one pass.
+     * Complexity: O(min(m*log(n), n + m)), m = toInsert.size()
+     * @param toInsert the elements to insert
+     */
+    public void insertAll(Collection<? extends T> toInsert) {
+        int first = reserve(toInsert.size());
+        for (T elem : toInsert) {
+            append(elem, nextSequence++);
+        }
+        restoreAfterAppend(first);
+    }
+
+    /**
+     * Moves every element of other into this heap, leaving other empty. The
+     * elements of other are appended in their insertion order, so in a stable
+     * heap they keep their relative order, and delete removes them in it,
+     * after the equal elements already in this heap. Both heaps must be
+     * ordered by the same comparator instance, as heaps of one Type built
+     * without a comparator are; equal but distinct comparators are rejected
+     * too, since their equality cannot be checked.
+     * Complexity: O(min(m*log(n), n + m)), m = other.size()
+     * @throws IllegalArgumentException if other is this heap or is ordered by another comparator
+     * @param other the heap to meld into this one
+     */
+    public void meld(Heap<T> other) {
+        if (other == this) throw new IllegalArgumentException("Cannot meld a heap with itself");
+        if (other.comparator != comparator) {
+            throw new IllegalArgumentException("Cannot meld a heap ordered by another comparator");
+        }
+        int first = reserve(other.size());
+        int[] order = other.insertionOrder();
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k];
+            if (other.isDead(i)) continue;
+            append(other.heapArray[i], nextSequence + (other.sequence != null ? other.sequence[i] : k));
+        }
+        nextSequence += other.sequence != null ? other.nextSequence : other.nextNodeIndex;
+        restoreAfterAppend(first);
+        other.clear();
+    }
+
+    /**
+     * Removes every element from the heap and shrinks the heap array back to
+     * its initial capacity.
+     * Complexity: O(n)
+     */
+    public void clear() {
+        Arrays.fill(heapArray, 0, nextNodeIndex, null);
+        nextNodeIndex = 0;
+        deadCount = 0;
+        if (capacity > minCapacity) {
+            capacity = minCapacity;
+            heapArray = Arrays.copyOf(heapArray, capacity);
+            if (sequence != null) sequence = new long[capacity];
+        }
+        if (positionIndex != null) positionIndex = new PositionIndex<>(capacity);
+    }
+
+    /**
+     * Shrinks the heap array, and every array kept beside it, to the number of
+     * elements in the heap, dropping any dead elements first. The next insert
+     * grows the heap array again.
+     * Complexity: O(n)
+     */
+    public void trimToSize() {
+        compact();
+        if (nextNodeIndex < capacity) resize(nextNodeIndex);
+    }
+
+    /**
+     * Drops the elements deleted under Option.LAZY_DELETE from the heap array
+     * and re-heapifies the live ones. Runs automatically once dead elements
+     * make up LAZY_COMPACTION_RATIO of the heap array.
+     * Complexity: O(n)
+     */
+    public void compact() {
+        if (deadCount == 0) return;
+        int live = 0;
+        for (int i = 0; i < nextNodeIndex; i++) {
+            if (positionIndex.holds(i, DEAD)) {
+                positionIndex.remove(i);
+            } else {
+                if (i != live) moveElement(heapArray, i, live);
+                live++;
+            }
+        }
+        Arrays.fill(heapArray, live, nextNodeIndex, null);
+        nextNodeIndex = live;
+        deadCount = 0;
+        heapify(heapArray, nextNodeIndex);
+        shrinkIfSparse();
     }
 
     /**
@@ -120,176 +501,988 @@ public class Heap<T extends Comparable> {
      * @return the minimum value
      */
     public T extractRoot() {
-        if (nextNodeIndex < 0) throw new IllegalStateException("Root does not exist, heap is empty.");
-        T root = heapArray[0];
-        if (objectIndices.get(root).size() > 1) {
-            objectIndices.get(root).remove(0);
+        discardDeadRoots();
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        T root = removeRoot();
+        shrinkIfSparse();
+        return root;
+    }
+
+    /**
+     * Extracts the k best elements into dest in extraction order, or every
+     * element if the heap holds fewer. A batch of at most 1/BULK_EXTRACT_RATIO
+     * of the heap is extracted with repeated bottom-up root removals, checking
+     * for dead roots and shrinking the array once for the whole batch. A larger
+     * batch is found with the frontier walk of sortedIterator instead, the
+     * holes it leaves are filled with the last elements of the heap array and
+     * the remainder is heapified once, which is cheaper than k sifts from the
+     * root once k*log(n) exceeds n.
+     * Complexity: O(k*log(n)), or O(k*log(k) + n) when k > n/BULK_EXTRACT_RATIO
+     * @throws IllegalArgumentException if k is negative or dest is shorter than min(k, size())
+     * @param k the maximum number of elements to extract
+     * @param dest the array receiving the elements from dest[0]
+     * @return the number of elements extracted, min(k, size())
+     */
+    public int extractRoots(int k, T[] dest) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative, got " + k);
+        int wanted = Math.min(k, size());
+        if (dest.length < wanted) {
+            throw new IllegalArgumentException("dest holds " + dest.length + " elements, " + wanted + " needed");
+        }
+        if (wanted == 0) return 0;
+
+        int found = 0;
+        if (wanted <= size() / BULK_EXTRACT_RATIO) {
+            while (found < wanted) {
+                boolean dead = isDead(0);
+                T root = removeRoot();
+                if (dead) {
+                    deadCount--;
+                } else {
+                    dest[found++] = root;
+                }
+            }
         } else {
-            objectIndices.remove(root);
+            SortedIterator walk = new SortedIterator();
+            int[] taken = new int[wanted];
+            int takenCount = 0;
+            while (found < wanted) {
+                int pos = walk.nextPosition();
+                if (takenCount == taken.length) taken = Arrays.copyOf(taken, takenCount*2);
+                taken[takenCount++] = pos;
+                if (isDead(pos)) {
+                    deadCount--;
+                } else {
+                    dest[found++] = heapArray[pos];
+                }
+                if (positionIndex != null) positionIndex.remove(pos);
+            }
+            removePositions(taken, takenCount);
         }
-        heapArray[0] = heapArray[--nextNodeIndex];
-        heapArray[nextNodeIndex] = null;
-        swapDownTree(heapArray, 0, nextNodeIndex);
-        return root;
+        shrinkIfSparse();
+        return found;
+    }
+
+    /**
+     * Extracts up to max of the best elements and adds them to dest in
+     * extraction order, see extractRoots.
+     * Complexity: O(k*log(n)), k = min(max, size())
+     * @throws IllegalArgumentException if max is negative
+     * @param dest the collection to add the elements to
+     * @param max the maximum number of elements to extract
+     * @return the number of elements added
+     */
+    public int drainTo(Collection<? super T> dest, int max) {
+        if (max < 0) throw new IllegalArgumentException("max must not be negative, got " + max);
+        T[] batch = newArray(Math.min(max, size()));
+        int count = extractRoots(batch.length, batch);
+        dest.addAll(Arrays.asList(batch));
+        return count;
     }
 
     /**
-     * Deletes an arbitrary element from the heap. O(log(n)) because a HashMap of
-     * object indicies is maintained. If heap contains elements with duplicate keys
-     * then the elements are deleted in an arbitrary order.
+     * Returns but does not extract the k best elements in extraction order,
+     * or every element if the heap holds fewer.
+     * Complexity: O(k*log(k))
+     * @throws IllegalArgumentException if k is negative
+     * @param k the maximum number of elements to return
+     * @return a new array of min(k, size()) elements
+     */
+    public T[] peekRoots(int k) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative, got " + k);
+        T[] roots = newArray(Math.min(k, size()));
+        Iterator<T> it = sortedIterator();
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = it.next();
+        }
+        return roots;
+    }
+
+    /**
+     * Replaces the next minimum/maximum value with toInsert and returns it.
+     * Equivalent to extractRoot followed by insert, but restores the heap with a
+     * single bottom-up sift.
      * Complexity: O(log(n))
+     * @throws IllegalStateException if the heap is empty
+     * @param toInsert element to insert
+     * @return the previous root
+     */
+    public T replaceRoot(T toInsert) {
+        discardDeadRoots();
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        T root = heapArray[0];
+        if (positionIndex != null) {
+            positionIndex.remove(0);
+            positionIndex.add(toInsert, 0);
+            positionIndex.park(0);
+        }
+        if (sequence != null) sequence[0] = nextSequence++;
+        heapArray[0] = toInsert;
+        sift(0, Sift.BOTTOM_UP);
+        return root;
+    }
+
+    /**
+     * Deletes an arbitrary element from the heap. O(log(n)) because an index of
+     * element positions is maintained. If heap contains elements with duplicate keys
+     * then the earliest inserted occurrence is deleted first.
+     * Complexity: O(log(n)), O(1) amortized with Option.LAZY_DELETE
      * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
      * @param toDelete the object to delete from the heap
      */
     @SuppressWarnings("unchecked")
     public void delete(T toDelete) {
-        if (!objectIndices.containsKey(toDelete)) {
+        int pos = trackedPositions().first(toDelete);
+        if (pos < 0) {
             throw new IllegalArgumentException("Heap does not contain the specified element");
         }
 
-        int pos;
-        if (objectIndices.get(toDelete).size() > 1) {
-            pos = objectIndices.get(toDelete).remove(0);
-        } else {
-            pos = objectIndices.remove(toDelete).remove(0);
+        positionIndex.remove(pos);
+        if (lazyDelete) {
+            positionIndex.add((T) DEAD, pos);
+            if (++deadCount >= nextNodeIndex * LAZY_COMPACTION_RATIO) compact();
+            return;
         }
-
         if (pos != --nextNodeIndex) { // if toDelete is not leaf or last element (root with no other elements)
-            objectIndices.get(heapArray[nextNodeIndex]).remove(Integer.valueOf(nextNodeIndex));
-            objectIndices.get(heapArray[nextNodeIndex]).add(pos);
+            positionIndex.move(nextNodeIndex, pos);
         }
         heapArray[pos] = heapArray[nextNodeIndex];
         heapArray[nextNodeIndex] = null;
-
-        int parentNode = (pos+1)/2 - 1;
-        int childNode = 2*pos + 1;
-
-        if (childNode + 1 < nextNodeIndex && !heapCmp(heapArray[childNode], heapArray[childNode + 1])) {
-            childNode++;
-        }
-
-        if (childNode < nextNodeIndex && !heapCmp(heapArray[pos], heapArray[childNode])) {
-            swapDownTree(heapArray, pos, nextNodeIndex);
-        } else if (parentNode != -1 && pos != nextNodeIndex && !heapCmp(heapArray[parentNode], heapArray[pos])) {
-            // node isn't root, deleted element wasn't last element, parent is greater than new child
-            swapUpTree(heapArray, pos);
+        if (sequence != null) sequence[pos] = sequence[nextNodeIndex];
+        if (pos != nextNodeIndex) { // deleted element was not the last element
+            if (pos > 0 && heapCmp(heapArray, pos, parentOf(pos))) {
+                // node isn't root and the moved element is less than its new parent
+                sift(pos, Sift.UP);
+            } else {
+                sift(pos, Sift.DOWN);
+            }
         }
+        shrinkIfSparse();
     }
 
     /**
      * Deletes all occurrences of the given element in the heap.
-     * Complexity: O(log(n))
+     * Complexity: O(k*log(n)), k = number of occurrences, O(k) amortized with Option.LAZY_DELETE
      * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
      * @param toDelete the element to delete
      */
     public void deleteAll(T toDelete) {
-        if (!objectIndices.containsKey(toDelete)) {
+        if (!contains(toDelete)) {
             throw new IllegalArgumentException("Heap does not contain the specified element");
         }
-        while (objectIndices.get(toDelete) != null) {
+        while (contains(toDelete)) {
             delete(toDelete);
         }
     }
 
     /**
      * Returns but does not extract the next minimum/maximum value in the heap.
-     * Complexity: O(1)
+     * Complexity: O(1), O(log(n)) amortized with Option.LAZY_DELETE
      * @throws IllegalStateException if the heap is empty
      * @return the minimum value in the heap
      */
     public T getRoot() {
-        if (heapArray[0] == null) throw new IllegalStateException("Root does not exist, heap is empty.");
+        discardDeadRoots();
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
         return heapArray[0];
     }
 
+    /**
+     * Removes the root of a non empty heap array, dead or alive, and returns it.
+     * Complexity: O(log(n))
+     */
+    private T removeRoot() {
+        T root = heapArray[0];
+        if (positionIndex != null) positionIndex.remove(0);
+        int last = --nextNodeIndex;
+        if (last > 0) {
+            if (positionIndex != null) positionIndex.park(last);
+            heapArray[0] = heapArray[last];
+            if (sequence != null) sequence[0] = sequence[last];
+            heapArray[last] = null;
+            sift(0, Sift.BOTTOM_UP);
+        } else {
+            heapArray[0] = null;
+        }
+        return root;
+    }
+
+    /** Removes dead elements from the root until the root is alive or the heap array is empty. */
+    private void discardDeadRoots() {
+        while (deadCount > 0 && positionIndex.holds(0, DEAD)) {
+            removeRoot();
+            deadCount--;
+        }
+    }
+
+    /** Returns true if the element at pos was deleted under Option.LAZY_DELETE. */
+    private boolean isDead(int pos) {
+        return deadCount > 0 && positionIndex.holds(pos, DEAD);
+    }
+
+    /********************************************************************
+     *                             Iteration                            *
+     ********************************************************************/
+
+    /**
+     * Returns an iterator over the elements in extraction order that leaves
+     * the heap untouched. It keeps a frontier heap of the positions whose
+     * parents have been returned: the next element is the root of the
+     * frontier, which is replaced by its children. The heap must not be
+     * modified while iterating.
+     * Complexity: O(k*log(k)) for the first k elements, O(arity*k) extra space
+     * @return an iterator returning the elements from the root on
+     */
+    public Iterator<T> sortedIterator() {
+        return new SortedIterator();
+    }
+
+    /**
+     * Returns a sequential stream of the elements in extraction order, see
+     * sortedIterator. Short circuiting operations such as limit(k) only pay
+     * for the elements they consume.
+     */
+    public Stream<T> sortedStream() {
+        return StreamSupport.stream(Spliterators.spliterator(sortedIterator(), size(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns a spliterator over the elements in heap array order, which is
+     * not sorted. It splits the array in halves, so parallel streams scale for
+     * aggregate scans like counting, matching or summing. With
+     * Option.LAZY_DELETE the dead elements are skipped, the heap is not
+     * compacted, and the spliterator only estimates its size. The heap must
+     * not be modified while the spliterator is in use.
+     * Complexity: O(1)
+     */
+    public Spliterator<T> spliterator() {
+        if (deadCount == 0) return Spliterators.spliterator(heapArray, 0, nextNodeIndex, Spliterator.NONNULL);
+        return new LiveSpliterator(0, nextNodeIndex);
+    }
+
+    /**
+     * Returns a stream of the elements in heap array order, see spliterator.
+     * Call parallel() on it for a parallel scan.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Splits a range of the heap array in halves like an array spliterator,
+     * skipping the elements deleted under Option.LAZY_DELETE.
+     */
+    private final class LiveSpliterator implements Spliterator<T> {
+        /** The next position to visit. */
+        private int pos;
+        /** The end of the range, exclusive. */
+        private final int end;
+
+        LiveSpliterator(int pos, int end) {
+            this.pos = pos;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (pos < end) {
+                int next = pos++;
+                if (!isDead(next)) {
+                    action.accept(heapArray[next]);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (; pos < end; pos++) {
+                if (!isDead(pos)) action.accept(heapArray[pos]);
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (pos + end) >>> 1;
+            if (mid <= pos) return null;
+            Spliterator<T> prefix = new LiveSpliterator(pos, mid);
+            pos = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - pos;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL;
+        }
+    }
+
+    /** Walks the heap in extraction order with a frontier heap of heap array positions. */
+    private final class SortedIterator implements Iterator<T> {
+        /** The frontier, a binary min heap of positions ordered by heapCmp. */
+        private int[] frontier = new int[Math.max(arity, 8)];
+        /** The number of positions in the frontier. */
+        private int count;
+        /** The number of elements left to return. */
+        private int remaining = size();
+
+        SortedIterator() {
+            if (nextNodeIndex > 0) frontier[count++] = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (remaining == 0) throw new NoSuchElementException();
+            while (true) {
+                int pos = nextPosition();
+                if (!isDead(pos)) {
+                    remaining--;
+                    return heapArray[pos];
+                }
+            }
+        }
+
+        /**
+         * Removes the best position from the frontier, adds its children and
+         * returns it, dead or alive. The frontier must not be empty.
+         */
+        int nextPosition() {
+            int pos = frontier[0];
+            int last = frontier[--count];
+            if (count > 0) {
+                frontier[0] = last;
+                siftDown(0);
+            }
+            int firstChild = arity*pos + 1;
+            for (int child = firstChild; child < firstChild + arity && child < nextNodeIndex; child++) {
+                push(child);
+            }
+            return pos;
+        }
+
+        /** Adds a position to the frontier. */
+        private void push(int pos) {
+            if (count == frontier.length) frontier = Arrays.copyOf(frontier, count*2);
+            int hole = count++;
+            while (hole > 0) {
+                int parent = (hole - 1) >>> 1;
+                if (!heapCmp(heapArray, pos, frontier[parent])) break;
+                frontier[hole] = frontier[parent];
+                hole = parent;
+            }
+            frontier[hole] = pos;
+        }
+
+        /** Moves the position at hole down the frontier. */
+        private void siftDown(int hole) {
+            int pos = frontier[hole];
+            int child;
+            while ((child = 2*hole + 1) < count) {
+                if (child + 1 < count && heapCmp(heapArray, frontier[child + 1], frontier[child])) child++;
+                if (!heapCmp(heapArray, frontier[child], pos)) break;
+                frontier[hole] = frontier[child];
+                hole = child;
+            }
+            frontier[hole] = pos;
+        }
+    }
+
+    /********************************************************************
+     *                             Snapshots                            *
+     ********************************************************************/
+
+    /**
+     * Writes the heap to out in a compact binary format that restore reads
+     * back without heapifying. The header holds the ordering (a Type, or a
+     * marker for a heap built with a Comparator), the arity and the size, and
+     * is followed by the heap array in its current order, each element
+     * written by codec, followed by its sequence number if the heap is
+     * stable. The heap is not modified: if it holds dead elements the live
+     * ones are written in extraction order instead, a sorted array being a
+     * valid heap array too. The snapshot is streamed through a small buffer
+     * and out is left open.
+     * Complexity: O(n), O(n*log(n)) if the heap holds dead elements
+     * @throws IOException if out cannot be written
+     * @param out the channel to write to, for example a FileChannel
+     * @param codec writes each element
+     */
+    public void snapshot(WritableByteChannel out, HeapCodec<? super T> codec) throws IOException {
+        DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(out), SNAPSHOT_BUFFER));
+        data.writeInt(SNAPSHOT_MAGIC);
+        data.writeByte(SNAPSHOT_VERSION);
+        data.writeByte(comparator == naturalOrder(Type.MIN) ? Type.MIN.ordinal()
+                : comparator == naturalOrder(Type.MAX) ? Type.MAX.ordinal() : SNAPSHOT_COMPARATOR);
+        data.writeBoolean(sequence != null);
+        data.writeInt(arity);
+        data.writeInt(size());
+        if (sequence != null) data.writeLong(nextSequence);
+        SortedIterator walk = deadCount > 0 ? new SortedIterator() : null;
+        for (int i = 0; i < size(); i++) {
+            int pos = i;
+            if (walk != null) {
+                do {
+                    pos = walk.nextPosition();
+                } while (isDead(pos));
+            }
+            codec.write(heapArray[pos], data);
+            if (sequence != null) data.writeLong(sequence[pos]);
+        }
+        data.flush(); // not closed, that would close out
+    }
+
+    /**
+     * Rebuilds a heap written by snapshot from a heap with a Type. The heap
+     * array is read in order and used as is, without heapify, and the
+     * position index is built in one pass over it. The snapshot is trusted
+     * to hold a valid heap. Restoring a stable snapshot into a heap without
+     * Option.STABLE drops the sequence numbers, and restoring a snapshot
+     * without them into a stable heap numbers the elements in array order,
+     * which keeps every parent ahead of its children. The position index is
+     * built in sequence number order when the snapshot holds them, so delete
+     * keeps removing the earliest inserted of equal elements; a snapshot of a
+     * heap without Option.STABLE does not record insertion order, and equal
+     * elements restored from it are deleted in heap array order. The
+     * snapshot is read through a buffer that may read past its end, so in
+     * should hold nothing after it.
+     * Complexity: O(n), O(n*log(n)) if the sequence numbers have gaps
+     * @throws IOException if in cannot be read, ends early, does not hold a
+     *         snapshot or holds one of a heap built with a Comparator
+     * @param in the channel to read from, for example a FileChannel
+     * @param t the class of the elements
+     * @param codec reads each element
+     * @param options optional behaviours to enable, as for the constructors
+     * @return the restored heap
+     */
+    public static <T> Heap<T> restore(ReadableByteChannel in, Class<T> t, HeapCodec<? extends T> codec,
+                                      Option... options) throws IOException {
+        return restore(in, t, null, codec, options);
+    }
+
+    /**
+     * Rebuilds a heap written by snapshot, ordered by comparator, see
+     * restore(ReadableByteChannel, Class, HeapCodec, Option...). comparator
+     * must order the elements as the heap the snapshot was taken of did.
+     * Complexity: O(n)
+     * @throws IOException if in cannot be read, ends early or does not hold a snapshot
+     * @param in the channel to read from, for example a FileChannel
+     * @param t the class of the elements
+     * @param comparator the ordering of the elements, the least element is the root
+     * @param codec reads each element
+     * @param options optional behaviours to enable, as for the constructors
+     * @return the restored heap
+     */
+    public static <T> Heap<T> restore(ReadableByteChannel in, Class<T> t, Comparator<? super T> comparator,
+                                      HeapCodec<? extends T> codec, Option... options) throws IOException {
+        DataInputStream data = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(in), SNAPSHOT_BUFFER));
+        if (data.readInt() != SNAPSHOT_MAGIC || data.readByte() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a heap snapshot");
+        }
+        int order = data.readByte();
+        boolean stable = data.readBoolean();
+        int arity = data.readInt();
+        int count = data.readInt();
+        if (order < SNAPSHOT_COMPARATOR || order >= Type.values().length || arity < 2 || count < 0) {
+            throw new IOException("Not a heap snapshot");
+        }
+        if (comparator == null) {
+            if (order == SNAPSHOT_COMPARATOR) {
+                throw new IOException("Snapshot is of a heap ordered by a Comparator, restore it with one");
+            }
+            comparator = naturalOrder(Type.values()[order]);
+        }
+
+        Heap<T> heap = new Heap<>(t, comparator, arity, count, options);
+        heap.minCapacity = Math.min(count, DEFAULT_CAPACITY);
+        long nextSequence = stable ? data.readLong() : count;
+        long[] sequence = heap.sequence != null ? heap.sequence : stable ? new long[count] : null;
+        for (int i = 0; i < count; i++) {
+            heap.heapArray[i] = codec.read(data);
+            long elemSequence = stable ? data.readLong() : i;
+            if (sequence != null) sequence[i] = elemSequence;
+        }
+        heap.nextNodeIndex = count;
+        if (heap.sequence != null) heap.nextSequence = nextSequence;
+        if (heap.positionIndex != null) {
+            int[] addOrder = sequence != null ? bySequence(sequence, count) : identity(count);
+            heap.positionIndex.addAll(heap.heapArray, addOrder, count, hasOption(options, Option.PARALLEL_HEAPIFY));
+        }
+        return heap;
+    }
+
     /**
      * Constructs a heap from an arbitrary array.
-     * Complexity: O(n), n = toHeapify.length
+     * Complexity: O(n), n = elementCount
      * @param toHeapify the array to heapify
+     * @param elementCount the number of elements at the start of the array to heapify
      * @return the heapified array
      */
-    private T[] heapify(T[] toHeapify) {
-        int start = (toHeapify.length/2) - 1; // the parent of the last node
+    private T[] heapify(T[] toHeapify, int elementCount) {
+        int start = elementCount > 1 ? parentOf(elementCount - 1) : -1; // the parent of the last node
         for (int i = start; i >= 0; i--) {
-            swapDownTree(toHeapify, i, toHeapify.length);
+            siftDown(toHeapify, i, elementCount);
         }
         return toHeapify;
     }
 
     /**
-     * Compares the child nodes of T[parentNode] and swaps parentNode
-     * with the least of the two, if parent node is greater than those
-     * element, all the way to the leafs of the tree.
-     * Complexity: O(log(n))
-     * @param toHeapify the array being heapified
-     * @param parentNode the node current being processed
+     * Heapifies the subtree rooted at root of an array of count elements. The
+     * subtrees of the children are heapified in parallel, then root is sifted
+     * down. Subtrees smaller than PARALLEL_THRESHOLD are heapified
+     * sequentially, level by level from the bottom. Every node is still
+     * sifted after all of its descendants, so the result is the one heapify
+     * produces. Only used before positions are tracked.
+     */
+    private final class HeapifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] arr;
+        private final int root;
+        private final int count;
+
+        HeapifyTask(T[] arr, int root, int count) {
+            this.arr = arr;
+            this.root = root;
+            this.count = count;
+        }
+
+        @Override
+        protected void compute() {
+            int firstChild = arity*root + 1;
+            if (firstChild >= count) return;
+            if (subtreeSize(root, count) < PARALLEL_THRESHOLD) {
+                heapifySubtree(arr, root, count);
+                return;
+            }
+            List<HeapifyTask> children = new ArrayList<>(arity);
+            for (int child = firstChild; child < firstChild + arity && child < count; child++) {
+                children.add(new HeapifyTask(arr, child, count));
+            }
+            invokeAll(children);
+            siftDown(arr, root, count);
+        }
+    }
+
+    /** Returns the number of nodes in the subtree rooted at root of an array of count elements. */
+    private int subtreeSize(int root, int count) {
+        int size = 0;
+        for (long first = root, last = root; first < count; first = arity*first + 1, last = arity*last + arity) {
+            size += (int) (Math.min(last, count - 1) - first + 1);
+        }
+        return size;
+    }
+
+    /**
+     * Heapifies the subtree rooted at root of an array of count elements,
+     * sifting its inner nodes down level by level from the bottom.
+     * Complexity: O(m), m = the size of the subtree
+     */
+    private void heapifySubtree(T[] arr, int root, int count) {
+        long[] firsts = new long[Integer.SIZE];
+        long[] lasts = new long[Integer.SIZE];
+        int levels = 0;
+        for (long first = root, last = root; first < count; first = arity*first + 1, last = arity*last + arity) {
+            firsts[levels] = first;
+            lasts[levels++] = Math.min(last, count - 1);
+        }
+        for (int level = levels - 2; level >= 0; level--) {
+            for (int pos = (int) lasts[level]; pos >= firsts[level]; pos--) {
+                siftDown(arr, pos, count);
+            }
+        }
+    }
+
+    /**
+     * Removes the elements at the given positions from the heap array and
+     * heapifies the rest. The positions must already be removed from the
+     * position index. The holes below the new size are filled with the
+     * remaining elements from the end of the array.
+     * Complexity: O(n + k*log(k)), k = count
+     * @param positions the positions to remove, reordered by this method
+     * @param count the number of positions
+     */
+    private void removePositions(int[] positions, int count) {
+        Arrays.sort(positions, 0, count);
+        int newCount = nextNodeIndex - count;
+        int filler = nextNodeIndex - 1;
+        int lastHole = count - 1;
+        int filled = 0;
+        while (filled < count && positions[filled] < newCount) {
+            while (positions[lastHole] == filler) { // skip trailing holes, they are simply dropped
+                lastHole--;
+                filler--;
+            }
+            moveElement(heapArray, filler--, positions[filled++]);
+        }
+        Arrays.fill(heapArray, newCount, nextNodeIndex, null);
+        nextNodeIndex = newCount;
+        heapify(heapArray, nextNodeIndex);
+    }
+
+    /**
+     * Returns the positions of the heap array with equal elements in insertion
+     * order: by sequence number in a stable heap, in the order of the position
+     * index otherwise, and in array order if the heap keeps neither.
+     */
+    private int[] insertionOrder() {
+        if (sequence != null) return bySequence(sequence, nextNodeIndex);
+        if (positionIndex != null) return positionIndex.positionsByKey(nextNodeIndex);
+        return identity(nextNodeIndex);
+    }
+
+    /**
+     * Returns the positions [0, count) ordered by their sequence numbers,
+     * which must be distinct.
+     * Complexity: O(n) if the numbers are consecutive, O(n*log(n)) otherwise
      */
+    private static int[] bySequence(long[] sequence, int count) {
+        int[] order = new int[count];
+        if (count == 0) return order;
+        long min = sequence[0];
+        long max = sequence[0];
+        for (int pos = 1; pos < count; pos++) {
+            min = Math.min(min, sequence[pos]);
+            max = Math.max(max, sequence[pos]);
+        }
+        if (max - min < count) { // consecutive, the rank is the offset
+            for (int pos = 0; pos < count; pos++) {
+                order[(int) (sequence[pos] - min)] = pos;
+            }
+            return order;
+        }
+        long[] sorted = Arrays.copyOf(sequence, count);
+        Arrays.sort(sorted);
+        for (int pos = 0; pos < count; pos++) {
+            order[Arrays.binarySearch(sorted, sequence[pos])] = pos;
+        }
+        return order;
+    }
+
+    /** Returns the positions [0, count) in array order. */
+    private static int[] identity(int count) {
+        int[] order = new int[count];
+        Arrays.setAll(order, pos -> pos);
+        return order;
+    }
+
+    /** Returns a new array of the heap array's component type. */
     @SuppressWarnings("unchecked")
-    private void swapDownTree(T[] toHeapify, int parentNode, int elementCount) {
-        int childNode = 2*parentNode + 1;
-        if (childNode >= elementCount) return; // parent node is leaf (first base case)
+    private T[] newArray(int length) {
+        return (T[]) Array.newInstance(heapArray.getClass().getComponentType(), length);
+    }
 
-        // swap parent with the lesser of it's children
-        if (childNode + 1 < elementCount && !heapCmp(toHeapify[childNode], toHeapify[childNode+1])) {
-            childNode++;
+    /**
+     * Makes room for count more elements.
+     * @param count the number of elements about to be appended
+     * @return the position the first appended element will occupy
+     */
+    private int reserve(int count) {
+        if (nextNodeIndex + count > capacity) {
+            resize(Math.max(capacity + (capacity>>>1) + 1, nextNodeIndex + count));
         }
+        return nextNodeIndex;
+    }
 
-        // if parent > child swap, if not return (second base case)
-        if (!heapCmp(toHeapify[parentNode], toHeapify[childNode])) {
-            swapArrayElements(toHeapify, childNode, parentNode);
+    /**
+     * Places elem after the last element without restoring the heap property.
+     * The caller must have reserved room and must call restoreAfterAppend.
+     */
+    private void append(T elem, long elemSequence) {
+        if (positionIndex != null) positionIndex.add(elem, nextNodeIndex);
+        if (sequence != null) sequence[nextNodeIndex] = elemSequence;
+        heapArray[nextNodeIndex++] = elem;
+    }
+
+    /**
+     * Restores the heap property after elements were appended from position
+     * first onwards, either by re-heapifying the whole array when the batch is
+     * large or by sifting each appended element up.
+     */
+    private void restoreAfterAppend(int first) {
+        int batch = nextNodeIndex - first;
+        if (batch >= first * BULK_HEAPIFY_RATIO) {
+            heapify(heapArray, nextNodeIndex);
         } else {
+            for (int i = first; i < nextNodeIndex; i++) {
+                sift(i, Sift.UP);
+            }
+        }
+    }
+
+    /**
+     * Halves the heap array once it is less than 1/SHRINK_FACTOR full, but not
+     * below the initial capacity.
+     */
+    private void shrinkIfSparse() {
+        if (nextNodeIndex < capacity / SHRINK_FACTOR && capacity > minCapacity) {
+            resize(Math.max(capacity >>> 1, minCapacity));
+        }
+    }
+
+    /**
+     * Copies the heap array, and every array kept beside it, to a new capacity.
+     * @param newCapacity the new capacity, at least size()
+     */
+    private void resize(int newCapacity) {
+        if (counters != null) {
+            int bytesPerSlot = HeapMetrics.Counters.REFERENCE_BYTES
+                    + (sequence != null ? Long.BYTES : 0) + (positionIndex != null ? 3*Integer.BYTES : 0);
+            counters.recordResize(capacity, newCapacity, nextNodeIndex, bytesPerSlot);
+        }
+        boolean shrinking = newCapacity < capacity;
+        capacity = newCapacity;
+        heapArray = Arrays.copyOf(heapArray, capacity);
+        if (positionIndex != null) {
+            if (shrinking) positionIndex.trimTo(capacity);
+            else positionIndex.ensureCapacity(capacity);
+        }
+        if (sequence != null) sequence = Arrays.copyOf(sequence, capacity);
+    }
+
+    /**
+     * Sifts the element at pos of the heap array, recording the sift in the
+     * metrics when they are enabled.
+     * @param pos the position of the element to sift
+     * @param kind the direction of the sift
+     */
+    private void sift(int pos, Sift kind) {
+        if (counters == null) {
+            siftBy(pos, kind);
             return;
         }
 
-        swapDownTree(toHeapify, childNode, elementCount);
+        HeapMetrics.SiftEvent event = null;
+        if (HeapMetrics.Counters.SIFT_EVENT.isEnabled()) {
+            event = new HeapMetrics.SiftEvent();
+            event.begin();
+        }
+        int depth = siftBy(pos, kind);
+        counters.recordSift(depth);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.direction = kind.label;
+                event.depth = depth;
+                event.heapSize = nextNodeIndex;
+                event.commit();
+            }
+        }
+    }
+
+    /** Runs a sift of the given kind and returns the number of levels the element moved. */
+    private int siftBy(int pos, Sift kind) {
+        switch (kind) {
+            case UP: return siftUp(pos);
+            case DOWN: return siftDown(heapArray, pos, nextNodeIndex);
+            default: return siftBottomUp();
+        }
     }
 
     /**
-     * Recursively swaps the provided child node with it's parent node until
-     * the parent node is less than the child
-     * @param theArray the heap array to perform the swaps on
-     * @param childNode the initial node to begin the swapping process
+     * Moves the element at pos down past every child that belongs above it.
+     * Children are shifted up into the hole the element leaves, and the
+     * element, its sequence number and its position entry are written once
+     * at their final slot.
+     * Complexity: O(d*log_d(n)), d = arity
+     * @param arr the array being sifted, the heap array or an array being heapified
+     * @param pos the position of the element to sift
+     * @param elementCount the number of elements in arr
+     * @return the number of levels the element moved
      */
-    private void swapUpTree(T[] theArray, int childNode) {
-        int parentNode = ((childNode+1)/2) - 1;
-        if (parentNode < 0 || heapCmp(theArray[parentNode], theArray[childNode])) return;
-        swapArrayElements(theArray, childNode, parentNode);
-        swapUpTree(theArray, parentNode);
+    private int siftDown(T[] arr, int pos, int elementCount) {
+        T elem = arr[pos];
+        long elemSequence = sequence != null ? sequence[pos] : 0;
+        int hole = pos;
+        int levels = 0;
+        int child;
+        while ((child = arity*hole + 1) < elementCount) {
+            child = bestChild(arr, child, elementCount);
+            if (!heapCmp(arr[child], sequenceAt(child), elem, elemSequence)) break;
+            if (levels++ == 0 && positionIndex != null) positionIndex.park(pos);
+            moveElement(arr, child, hole);
+            hole = child;
+        }
+        if (levels > 0) placeElement(arr, elem, elemSequence, hole);
+        return levels;
+    }
+
+    /**
+     * Moves the element at pos up past every ancestor it belongs above, shifting
+     * the ancestors down and writing the element once at its final slot.
+     * Complexity: O(log_d(n)), d = arity
+     * @param pos the position of the element to sift
+     * @return the number of levels the element moved
+     */
+    private int siftUp(int pos) {
+        T[] arr = heapArray;
+        T elem = arr[pos];
+        long elemSequence = sequence != null ? sequence[pos] : 0;
+        int hole = pos;
+        int levels = 0;
+        while (hole > 0) {
+            int parent = parentOf(hole);
+            if (!heapCmp(elem, elemSequence, arr[parent], sequenceAt(parent))) break;
+            if (levels++ == 0 && positionIndex != null) positionIndex.park(pos);
+            moveElement(arr, parent, hole);
+            hole = parent;
+        }
+        if (levels > 0) placeElement(arr, elem, elemSequence, hole);
+        return levels;
+    }
+
+    /**
+     * Restores the heap after the root has been replaced, using Floyd's
+     * bottom-up heuristic. The element at the root usually belongs near the
+     * bottom, so instead of comparing it against the best child at every level
+     * (d comparisons per level) the hole it leaves is moved straight down the
+     * path of best children to a leaf (d-1 comparisons per level), and the
+     * element is then sifted up from there, which rarely takes more than a
+     * level or two. The entry of the root element must already be parked.
+     * Complexity: O(d*log_d(n)), d = arity
+     * @return the depth at which the element was placed
+     */
+    private int siftBottomUp() {
+        T[] arr = heapArray;
+        T elem = arr[0];
+        long elemSequence = sequence != null ? sequence[0] : 0;
+        int hole = 0;
+        int depth = 0;
+        int child;
+        while ((child = arity*hole + 1) < nextNodeIndex) {
+            child = bestChild(arr, child, nextNodeIndex);
+            moveElement(arr, child, hole);
+            hole = child;
+            depth++;
+        }
+        while (hole > 0) {
+            int parent = parentOf(hole);
+            if (!heapCmp(elem, elemSequence, arr[parent], sequenceAt(parent))) break;
+            moveElement(arr, parent, hole);
+            hole = parent;
+            depth--;
+        }
+        placeElement(arr, elem, elemSequence, hole);
+        return depth;
+    }
+
+    /**
+     * Returns the child that belongs highest among the children starting at firstChild.
+     * Complexity: O(d), d = arity
+     */
+    private int bestChild(T[] arr, int firstChild, int elementCount) {
+        int best = firstChild;
+        int lastChild = Math.min(firstChild + arity, elementCount);
+        for (int sibling = firstChild + 1; sibling < lastChild; sibling++) {
+            if (heapCmp(arr, sibling, best)) best = sibling;
+        }
+        return best;
+    }
+
+    /**
+     * Moves the element at from, with its sequence number and position entry,
+     * into the hole at to.
+     */
+    private void moveElement(T[] arr, int from, int to) {
+        if (positionIndex != null) positionIndex.move(from, to); // null while heapifying in the constructor
+        if (counters != null) counters.moves++;
+        if (sequence != null) sequence[to] = sequence[from];
+        arr[to] = arr[from];
+    }
+
+    /** Writes a sifted element and its sequence number into the hole at pos and unparks its position entry. */
+    private void placeElement(T[] arr, T elem, long elemSequence, int pos) {
+        if (positionIndex != null) positionIndex.unpark(pos);
+        if (sequence != null) sequence[pos] = elemSequence;
+        arr[pos] = elem;
     }
 
     /**
-     * Compares two user generic objects by invoking compareTo, returns a boolean
-     * indicating whether objOne < objTwo or objOne > objTwo depending on whether
-     * this is a min or max heap.
+     * Compares two user generic objects with the heap's comparator, returns a
+     * boolean indicating whether objOne belongs above objTwo. In a stable heap
+     * equal objects are ordered by their insertion sequence number, earliest first.
+     * @param arr the array holding both objects
+     * @param posOne the position of the first object
+     * @param posTwo the position of the second object
+     * @return true if objOne < objTwo according to the comparator, false otherwise
+     */
+    private boolean heapCmp(T[] arr, int posOne, int posTwo) {
+        return heapCmp(arr[posOne], sequenceAt(posOne), arr[posTwo], sequenceAt(posTwo));
+    }
+
+    /**
+     * Compares two user generic objects that may not be in the heap array,
+     * see heapCmp(T[], int, int).
      * @param objOne the first object
+     * @param sequenceOne the sequence number of objOne, ignored unless the heap is stable
      * @param objTwo the second object
-     * @return true if objOne < objTwo false otherwise
+     * @param sequenceTwo the sequence number of objTwo, ignored unless the heap is stable
+     * @return true if objOne belongs above objTwo
+     */
+    private boolean heapCmp(T objOne, long sequenceOne, T objTwo, long sequenceTwo) {
+        if (counters != null) counters.comparisons++;
+        int cmp = comparator.compare(objOne, objTwo);
+        if (cmp == 0) return sequence != null && sequenceOne < sequenceTwo;
+        return cmp < 0;
+    }
+
+    /** Returns the sequence number at pos, or 0 unless the heap is stable. */
+    private long sequenceAt(int pos) {
+        return sequence != null ? sequence[pos] : 0;
+    }
+
+    /** Returns the index of the parent of a non root node. */
+    private int parentOf(int childNode) {
+        return (childNode - 1)/arity;
+    }
+
+    /**
+     * Returns the position index.
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    private PositionIndex<T> trackedPositions() {
+        if (positionIndex == null) {
+            throw new UnsupportedOperationException("Position tracking is disabled for this heap");
+        }
+        return positionIndex;
+    }
+
+    /**
+     * Returns the natural ordering for a min heap or its reverse for a max heap.
+     * Elements that do not implement Comparable fail with ClassCastException
+     * when they are first compared, as with java.util.PriorityQueue.
      */
     @SuppressWarnings("unchecked")
-    private boolean heapCmp(T objOne, T objTwo) {
-        boolean cmp;
-        if (heapType == Type.MIN) cmp = objOne.compareTo(objTwo) < 0;
-        else cmp = objOne.compareTo(objTwo) > 0;
-        return cmp;
-    }
-
-    /**
-     * Swaps two elements in the specified array.
-     * @param arr the array to swap elements in
-     * @param pos1 the position of the first element to be swapped
-     * @param pos2 the position of the second element to be swapped
-     */
-    private void swapArrayElements(T[] arr, int pos1, int pos2) {
-        List indLst1 = objectIndices.get(arr[pos1]);
-        List indLst2 = objectIndices.get(arr[pos2]);
-        indLst1.remove(Integer.valueOf(pos1));
-        indLst1.add(pos2);
-        indLst2.remove(Integer.valueOf(pos2));
-        indLst2.add(pos1);
-
-        T temp = arr[pos1];
-        arr[pos1] = arr[pos2];
-        arr[pos2] = temp;
+    static <T> Comparator<T> naturalOrder(Type type) {
+        Comparator<Comparable<Object>> order = type == Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        return (Comparator<T>) (Comparator<?>) order;
+    }
+
+    /** Returns arity if it is a valid number of children per node. */
+    private static int checkArity(int arity) {
+        if (arity < 2) throw new IllegalArgumentException("Heap arity must be at least 2, got " + arity);
+        return arity;
+    }
+
+    /** Returns true if option is one of options. */
+    private static boolean hasOption(Option[] options, Option option) {
+        for (Option o : options) {
+            if (o == option) return true;
+        }
+        return false;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,482 @@
+/*
+ * A blocking priority queue built on the heap.
+ * Author: Spencer Little
+ */
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A BlockingQueue handing out its elements in heap order, optionally bounded.
+ * The elements are kept in a Heap guarded by one lock, take and poll wait on
+ * the notEmpty condition and put and offer, once the queue is full, on
+ * notFull.
+ *
+ * Waiters are woken in a chain rather than all at once. An insert signals
+ * one waiting consumer, and only if one is waiting; the consumer it wakes
+ * signals the next one if elements are left after its own extraction, and so
+ * on. A burst of inserts therefore wakes about as many consumers as there
+ * are elements for them, and a consumer is never woken to find the queue
+ * empty because a signalAll woke every waiter at once. Producers waiting for
+ * room are chained the same way. addAll inserts a whole batch under one lock
+ * acquisition and drainTo extracts one with Heap.drainTo, which repairs the
+ * heap once for the batch, so batching on either side also cuts the lock
+ * handoffs per element. The lock and conditions park virtual threads without
+ * pinning their carrier.
+ *
+ * The heap does not track positions, so put and take pay for no index
+ * updates; contains and remove(Object) scan the heap instead, O(n) as in
+ * PriorityBlockingQueue. Iterators walk a snapshot of the queue taken when
+ * they are created, in no particular order. Null elements are not permitted.
+ * @author Spencer Little
+ */
+public class HeapBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /** Guards every field below. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled when elements are added while consumers wait. */
+    private final Condition notEmpty = lock.newCondition();
+    /** Signalled when elements are removed while producers wait. */
+    private final Condition notFull = lock.newCondition();
+    /** The queued elements. */
+    private final Heap<E> heap;
+    /** The maximum number of queued elements. */
+    private final int capacity;
+    /** The number of threads waiting on notEmpty. */
+    private int waitingConsumers;
+    /** The number of threads waiting on notFull. */
+    private int waitingProducers;
+
+    /**
+     * Creates an unbounded queue ordered by the natural ordering of the elements.
+     * @param t the element class
+     * @param type MIN to hand out the least element first, MAX the greatest
+     */
+    public HeapBlockingQueue(Class<E> t, Heap.Type type) {
+        this(t, Heap.<E>naturalOrder(type), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a queue ordered by comparator holding at most capacity elements.
+     * @param t the element class
+     * @param comparator the ordering of the elements, the least element is handed out first
+     * @param capacity the maximum number of elements, Integer.MAX_VALUE for an unbounded queue
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public HeapBlockingQueue(Class<E> t, Comparator<? super E> comparator, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1, got " + capacity);
+        this.capacity = capacity;
+        heap = new Heap<>(t, comparator, Heap.Option.NO_POSITION_TRACKING);
+    }
+
+    /********************************************************************
+     *                          Queue Operations                        *
+     ********************************************************************/
+
+    /**
+     * Inserts e if the queue has room.
+     * Complexity: O(log(n))
+     * @throws NullPointerException if e is null
+     * @return true if e was inserted, false if the queue is full
+     */
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        lock.lock();
+        try {
+            if (heap.size() == capacity) return false;
+            insert(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts e, waiting for room if the queue is full.
+     * Complexity: O(log(n))
+     * @throws NullPointerException if e is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() == capacity) {
+                awaitNotFull();
+            }
+            insert(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts e, waiting up to timeout for room if the queue is full.
+     * Complexity: O(log(n))
+     * @throws NullPointerException if e is null
+     * @throws InterruptedException if interrupted while waiting
+     * @return true if e was inserted, false if the timeout elapsed first
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() == capacity) {
+                if (nanos <= 0) return false;
+                nanos = awaitNotFull(nanos);
+            }
+            insert(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts every element of c under one lock acquisition and wakes the
+     * consumers they can serve.
+     * Complexity: O(m*log(n)), O(n + m) for large batches, m = c.size()
+     * @throws NullPointerException if c or one of its elements is null
+     * @throws IllegalArgumentException if c is this queue
+     * @throws IllegalStateException if c does not fit, then none of it is inserted
+     * @return true if c was not empty
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (c == this) throw new IllegalArgumentException("Cannot add a queue to itself");
+        for (E e : c) {
+            checkNotNull(e);
+        }
+        lock.lock();
+        try {
+            if (c.size() > capacity - heap.size()) throw new IllegalStateException("Queue full");
+            if (c.isEmpty()) return false;
+            heap.insertAll(c);
+            if (waitingConsumers > 0) notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Extracts the root, waiting for an element if the queue is empty.
+     * Complexity: O(log(n))
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() == 0) {
+                awaitNotEmpty();
+            }
+            return extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Extracts the root, waiting up to timeout for an element if the queue is empty.
+     * Complexity: O(log(n))
+     * @throws InterruptedException if interrupted while waiting
+     * @return the root, or null if the timeout elapsed first
+     */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() == 0) {
+                if (nanos <= 0) return null;
+                nanos = awaitNotEmpty(nanos);
+            }
+            return extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Extracts the root if the queue is not empty.
+     * Complexity: O(log(n))
+     * @return the root, or null if the queue is empty
+     */
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return heap.size() == 0 ? null : extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns but does not extract the root.
+     * Complexity: O(1)
+     * @return the root, or null if the queue is empty
+     */
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return heap.size() == 0 ? null : heap.getRoot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves every element to c in heap order, see drainTo(Collection, int).
+     * @return the number of elements moved
+     */
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Moves up to maxElements of the best elements to c in heap order under
+     * one lock acquisition, with Heap.drainTo, and wakes the producers the
+     * room can serve. Does not wait for elements.
+     * Complexity: O(k*log(n)), k = the number of elements moved
+     * @throws NullPointerException if c is null
+     * @throws IllegalArgumentException if c is this queue
+     * @return the number of elements moved
+     */
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) throw new NullPointerException();
+        if (c == this) throw new IllegalArgumentException("Cannot drain a queue to itself");
+        if (maxElements <= 0) return 0;
+        lock.lock();
+        try {
+            int count = heap.drainTo(c, maxElements);
+            if (heap.size() > 0 && waitingConsumers > 0) notEmpty.signal();
+            if (count > 0 && waitingProducers > 0) notFull.signal();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of queued elements. */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of elements that can be inserted without waiting, Integer.MAX_VALUE if unbounded. */
+    @Override
+    public int remainingCapacity() {
+        if (capacity == Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        lock.lock();
+        try {
+            return capacity - heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if an element equal to o is queued.
+     * Complexity: O(n)
+     */
+    @Override
+    public boolean contains(Object o) {
+        lock.lock();
+        try {
+            return indexOf(o) >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes one element equal to o. The remaining elements are heapified
+     * again.
+     * Complexity: O(n)
+     * @return true if an element was removed
+     */
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            int pos = indexOf(o);
+            if (pos < 0) return false;
+            E[] elements = heap.getHeapArray();
+            E[] rest = Arrays.copyOf(elements, heap.size() - 1);
+            if (pos < rest.length) rest[pos] = elements[rest.length];
+            heap.clear();
+            heap.insertAll(rest);
+            if (waitingProducers > 0) notFull.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes every element and wakes the waiting producers. */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            heap.clear();
+            if (waitingProducers > 0) notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued elements, in no
+     * particular order. Its remove removes an element equal to the last one
+     * returned from the queue, if one is still queued.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        E[] snapshot;
+        lock.lock();
+        try {
+            snapshot = Arrays.copyOf(heap.getHeapArray(), heap.size());
+        } finally {
+            lock.unlock();
+        }
+        return new Iterator<E>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public E next() {
+                if (next == snapshot.length) throw new NoSuchElementException();
+                last = next++;
+                return snapshot[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) throw new IllegalStateException();
+                HeapBlockingQueue.this.remove(snapshot[last]);
+                last = -1;
+            }
+        };
+    }
+
+    /********************************************************************
+     *                          Helper Methods                          *
+     ********************************************************************/
+
+    /**
+     * Inserts e, wakes a consumer if one waits and passes the wakeup on to
+     * the next waiting producer if room is left. Call under lock with room in
+     * the queue.
+     */
+    private void insert(E e) {
+        heap.insert(e);
+        if (waitingConsumers > 0) notEmpty.signal();
+        if (heap.size() < capacity && waitingProducers > 0) notFull.signal();
+    }
+
+    /**
+     * Extracts the root, passes the wakeup on to the next waiting consumer if
+     * elements are left and wakes a producer if one waits. Call under lock
+     * with the queue not empty.
+     */
+    private E extract() {
+        E root = heap.extractRoot();
+        if (heap.size() > 0 && waitingConsumers > 0) notEmpty.signal();
+        if (waitingProducers > 0) notFull.signal();
+        return root;
+    }
+
+    /** Waits on notEmpty, passing on a signal this thread consumed if it is interrupted. */
+    private void awaitNotEmpty() throws InterruptedException {
+        waitingConsumers++;
+        try {
+            notEmpty.await();
+        } catch (InterruptedException e) {
+            if (heap.size() > 0 && waitingConsumers > 1) notEmpty.signal();
+            throw e;
+        } finally {
+            waitingConsumers--;
+        }
+    }
+
+    /** Waits on notEmpty for up to nanos and returns the time left. */
+    private long awaitNotEmpty(long nanos) throws InterruptedException {
+        waitingConsumers++;
+        try {
+            return notEmpty.awaitNanos(nanos);
+        } catch (InterruptedException e) {
+            if (heap.size() > 0 && waitingConsumers > 1) notEmpty.signal();
+            throw e;
+        } finally {
+            waitingConsumers--;
+        }
+    }
+
+    /** Waits on notFull, passing on a signal this thread consumed if it is interrupted. */
+    private void awaitNotFull() throws InterruptedException {
+        waitingProducers++;
+        try {
+            notFull.await();
+        } catch (InterruptedException e) {
+            if (heap.size() < capacity && waitingProducers > 1) notFull.signal();
+            throw e;
+        } finally {
+            waitingProducers--;
+        }
+    }
+
+    /** Waits on notFull for up to nanos and returns the time left. */
+    private long awaitNotFull(long nanos) throws InterruptedException {
+        waitingProducers++;
+        try {
+            return notFull.awaitNanos(nanos);
+        } catch (InterruptedException e) {
+            if (heap.size() < capacity && waitingProducers > 1) notFull.signal();
+            throw e;
+        } finally {
+            waitingProducers--;
+        }
+    }
+
+    /** Returns the position of an element equal to o in the heap array, or -1. Call under lock. */
+    private int indexOf(Object o) {
+        if (o == null) return -1;
+        E[] elements = heap.getHeapArray();
+        for (int i = 0; i < heap.size(); i++) {
+            if (o.equals(elements[i])) return i;
+        }
+        return -1;
+    }
+
+    /** Throws NullPointerException if e is null, the queue does not permit nulls. */
+    private static void checkNotNull(Object e) {
+        if (e == null) throw new NullPointerException("Null elements are not permitted");
+    }
+}
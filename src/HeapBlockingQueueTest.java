@@ -0,0 +1,193 @@
+/*
+ * A set of unit tests covering the blocking queue.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Spencer Little
+ */
+public class HeapBlockingQueueTest {
+
+    @Test
+    public void testHeapOrder() {
+        BlockingQueue<Integer> queue = new HeapBlockingQueue<>(Integer.class, Heap.Type.MAX);
+        List<Integer> input = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 2000; i++) {
+            Integer x = gen.nextInt(500);
+            input.add(x);
+            Assert.assertTrue(queue.offer(x));
+        }
+        input.sort(Comparator.reverseOrder());
+        Assert.assertEquals(input.get(0), queue.peek());
+        Assert.assertTrue(queue.contains(input.get(100)));
+        Assert.assertTrue(queue.remove(input.remove(100)));
+        Assert.assertEquals(input.size(), queue.size());
+        Assert.assertEquals(Integer.MAX_VALUE, queue.remainingCapacity());
+        for (Integer expected : input) {
+            Assert.assertEquals(expected, queue.poll());
+        }
+        Assert.assertNull(queue.poll());
+        Assert.assertNull(queue.peek());
+        try {
+            queue.offer(null);
+            Assert.fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBounded() throws InterruptedException {
+        BlockingQueue<Integer> queue = new HeapBlockingQueue<>(Integer.class, Comparator.naturalOrder(), 2);
+        Assert.assertTrue(queue.offer(5));
+        queue.put(3);
+        Assert.assertFalse(queue.offer(4));
+        Assert.assertFalse(queue.offer(4, 20, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, queue.remainingCapacity());
+        try {
+            queue.addAll(Arrays.asList(1, 2));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected, and nothing was added
+        }
+
+        CountDownLatch put = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(1);
+                put.countDown();
+            } catch (InterruptedException e) {
+                // fails the test through the latch
+            }
+        });
+        producer.start();
+        Assert.assertFalse(put.await(50, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(Integer.valueOf(3), queue.take());
+        Assert.assertTrue(put.await(5, TimeUnit.SECONDS));
+        producer.join();
+        Assert.assertEquals(Integer.valueOf(1), queue.take());
+        Assert.assertEquals(Integer.valueOf(5), queue.take());
+    }
+
+    @Test
+    public void testTimedPoll() throws InterruptedException {
+        BlockingQueue<Integer> queue = new HeapBlockingQueue<>(Integer.class, Heap.Type.MIN);
+        long start = System.nanoTime();
+        Assert.assertNull(queue.poll(30, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.add(7);
+        });
+        producer.start();
+        Assert.assertEquals(Integer.valueOf(7), queue.poll(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    public void testDrainTo() throws InterruptedException {
+        BlockingQueue<Integer> queue = new HeapBlockingQueue<>(Integer.class, Comparator.naturalOrder(), 100);
+        List<Integer> batch = new ArrayList<>();
+        for (int i = 99; i >= 0; i--) {
+            batch.add(i);
+        }
+        Assert.assertTrue(queue.addAll(batch));
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(-1);
+            } catch (InterruptedException e) {
+                // leaves the queue short, failing the test
+            }
+        });
+        producer.start();
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals(10, queue.drainTo(drained, 10));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), drained);
+        producer.join(5000);
+        Assert.assertEquals(91, queue.size());
+        Assert.assertEquals(Integer.valueOf(-1), queue.peek());
+        Assert.assertEquals(91, queue.drainTo(drained));
+        Assert.assertEquals(101, drained.size());
+        try {
+            queue.drainTo(queue);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProducersAndConsumers() throws InterruptedException {
+        BlockingQueue<Long> queue = new HeapBlockingQueue<>(Long.class, Comparator.naturalOrder(), 16);
+        int producers = 4, consumers = 4, perProducer = 20000;
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.put(base + i);
+                    }
+                } catch (InterruptedException e) {
+                    // leaves the sum short, failing the test
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            boolean batched = c % 2 == 0;
+            threads.add(new Thread(() -> {
+                List<Long> batch = new ArrayList<>();
+                try {
+                    while (count.get() < (long) producers * perProducer) {
+                        if (batched) {
+                            batch.clear();
+                            queue.drainTo(batch, 8);
+                            if (batch.isEmpty()) {
+                                Long x = queue.poll(10, TimeUnit.MILLISECONDS);
+                                if (x != null) batch.add(x);
+                            }
+                        } else {
+                            Long x = queue.poll(10, TimeUnit.MILLISECONDS);
+                            batch = x == null ? Collections.emptyList() : Collections.singletonList(x);
+                        }
+                        for (Long x : batch) {
+                            sum.addAndGet(x);
+                        }
+                        count.addAndGet(batch.size());
+                    }
+                } catch (InterruptedException e) {
+                    // leaves the sum short, failing the test
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+        long n = (long) producers * perProducer;
+        Assert.assertEquals(n, count.get());
+        Assert.assertEquals(n * (n - 1) / 2, sum.get());
+        Assert.assertEquals(0, queue.size());
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Element codecs for heap snapshots.
+ * Author: Spencer Little
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes heap elements to and reads them from a snapshot, see Heap.snapshot
+ * and Heap.restore. An element may take any number of bytes, but read must
+ * consume exactly the bytes write produced for it.
+ * @author Spencer Little
+ */
+public interface HeapCodec<T> {
+
+    /**
+     * Writes one element.
+     * @param elem the element to write
+     * @param out the snapshot stream
+     * @throws IOException if the stream cannot be written
+     */
+    void write(T elem, DataOutput out) throws IOException;
+
+    /**
+     * Reads one element written by write.
+     * @param in the snapshot stream
+     * @return the element
+     * @throws IOException if the stream cannot be read or ends early
+     */
+    T read(DataInput in) throws IOException;
+
+    /** Returns a codec writing Integers as 4 bytes. */
+    static HeapCodec<Integer> integers() {
+        return new HeapCodec<>() {
+            @Override
+            public void write(Integer elem, DataOutput out) throws IOException {out.writeInt(elem);}
+            @Override
+            public Integer read(DataInput in) throws IOException {return in.readInt();}
+        };
+    }
+
+    /** Returns a codec writing Longs as 8 bytes. */
+    static HeapCodec<Long> longs() {
+        return new HeapCodec<>() {
+            @Override
+            public void write(Long elem, DataOutput out) throws IOException {out.writeLong(elem);}
+            @Override
+            public Long read(DataInput in) throws IOException {return in.readLong();}
+        };
+    }
+
+    /** Returns a codec writing Strings in modified UTF-8, at most 65535 bytes each. */
+    static HeapCodec<String> strings() {
+        return new HeapCodec<>() {
+            @Override
+            public void write(String elem, DataOutput out) throws IOException {out.writeUTF(elem);}
+            @Override
+            public String read(DataInput in) throws IOException {return in.readUTF();}
+        };
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Instrumentation counters of the heap.
+ * Author: Spencer Little
+ */
+
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A snapshot of the counters of a Heap created with Heap.Option.METRICS. The
+ * counters cover everything since the heap was created or last reset.
+ *
+ * Heaps with metrics enabled also emit two JFR events: heap.Resize for every
+ * growth or shrink of the heap array, and heap.Sift for sifts slower than the event's
+ * threshold (10 ms by default, configurable in the recording settings).
+ * @author Spencer Little
+ */
+public final class HeapMetrics {
+
+    /** The number of element comparisons. */
+    public final long comparisons;
+    /** The number of times a sift moved an element one level, each a single array write. */
+    public final long moves;
+    /** The number of sifts run by insert, extractRoot, replaceRoot and delete. */
+    public final long sifts;
+    /** The total number of levels moved by those sifts. */
+    public final long totalSiftDepth;
+    /** The largest number of levels moved by a single sift. */
+    public final int maxSiftDepth;
+    /** The number of times the heap array was grown or shrunk. */
+    public final long resizes;
+    /** The estimated bytes copied by those resizes, including arrays kept beside the heap array. */
+    public final long bytesCopied;
+    /** The number of distinct elements in the heap, or -1 if positions are not tracked. */
+    public final int distinctElements;
+    /** The largest elementCount of any element in the heap, or -1 if positions are not tracked. */
+    public final int maxDuplicates;
+
+    HeapMetrics(Counters counters, int distinctElements, int maxDuplicates) {
+        comparisons = counters.comparisons;
+        moves = counters.moves;
+        sifts = counters.sifts;
+        totalSiftDepth = counters.totalSiftDepth;
+        maxSiftDepth = counters.maxSiftDepth;
+        resizes = counters.resizes;
+        bytesCopied = counters.bytesCopied;
+        this.distinctElements = distinctElements;
+        this.maxDuplicates = maxDuplicates;
+    }
+
+    /** Returns the mean number of levels moved per sift. */
+    public double meanSiftDepth() {return sifts == 0 ? 0 : (double) totalSiftDepth / sifts;}
+
+    @Override
+    public String toString() {
+        return "HeapMetrics{comparisons=" + comparisons + ", moves=" + moves + ", sifts=" + sifts
+                + ", meanSiftDepth=" + meanSiftDepth() + ", maxSiftDepth=" + maxSiftDepth
+                + ", resizes=" + resizes + ", bytesCopied=" + bytesCopied
+                + ", distinctElements=" + distinctElements + ", maxDuplicates=" + maxDuplicates + "}";
+    }
+
+    /** The live counters a heap updates. Only allocated when metrics are enabled. */
+    static final class Counters {
+        /** Bytes per object reference in arrays. */
+        static final int REFERENCE_BYTES = referenceBytes();
+        /** The JFR type of SiftEvent, checked before timing a sift. */
+        static final EventType SIFT_EVENT = EventType.getEventType(SiftEvent.class);
+
+        long comparisons;
+        long moves;
+        long sifts;
+        long totalSiftDepth;
+        int maxSiftDepth;
+        long resizes;
+        long bytesCopied;
+
+        /** Records a sift that moved an element depth levels. */
+        void recordSift(long depth) {
+            sifts++;
+            totalSiftDepth += depth;
+            if (depth > maxSiftDepth) maxSiftDepth = (int) depth;
+        }
+
+        /** Records a resize and emits a heap.Resize event. */
+        void recordResize(int oldCapacity, int newCapacity, int size, int bytesPerSlot) {
+            long bytes = (long) size * bytesPerSlot;
+            resizes++;
+            bytesCopied += bytes;
+            ResizeEvent event = new ResizeEvent();
+            if (event.shouldCommit()) {
+                event.oldCapacity = oldCapacity;
+                event.newCapacity = newCapacity;
+                event.bytesCopied = bytes;
+                event.commit();
+            }
+        }
+
+        /** Returns 4 if the JVM compresses references, 8 otherwise. */
+        private static int referenceBytes() {
+            try {
+                com.sun.management.HotSpotDiagnosticMXBean hotSpot =
+                        ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+                return Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedOops").getValue()) ? 4 : 8;
+            } catch (RuntimeException e) {
+                return 8;
+            }
+        }
+    }
+
+    /** Emitted when a heap with metrics enabled grows or shrinks its heap array. */
+    @Name("heap.Resize")
+    @Label("Heap Resize")
+    @Category("Heap")
+    @Description("Growth or shrink of a heap array and the arrays kept beside it")
+    static final class ResizeEvent extends Event {
+        @Label("Old Capacity")
+        int oldCapacity;
+        @Label("New Capacity")
+        int newCapacity;
+        @Label("Bytes Copied")
+        @DataAmount
+        long bytesCopied;
+    }
+
+    /** Emitted for sifts of a heap with metrics enabled that take longer than the threshold. */
+    @Name("heap.Sift")
+    @Label("Heap Sift")
+    @Category("Heap")
+    @Description("A sift up or down that took longer than the threshold")
+    @Threshold("10 ms")
+    static final class SiftEvent extends Event {
+        @Label("Direction")
+        String direction;
+        @Label("Depth")
+        int depth;
+        @Label("Heap Size")
+        int heapSize;
+    }
+}
@@ -5,15 +5,28 @@
 
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * @author Spencer Little
  */
 public class HeapTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testMinHeapify() {
         ArrayList<Integer> input;
@@ -284,6 +297,830 @@ public class HeapTest {
         }
     }
 
+    @Test
+    public void testUntrackedExtract() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                ArrayList<Integer> input = new ArrayList<>();
+                makeRandomIntegerArray(input);
+                Integer[] intArr = input.toArray(Integer[]::new);
+                Heap<Integer> testHeap = new Heap<>(intArr.clone(), type, Heap.Option.NO_POSITION_TRACKING);
+                Random gen = new Random();
+                for (int j = 0; j < 100; j++) {
+                    Integer x = gen.nextInt();
+                    testHeap.insert(x);
+                    input.add(x);
+                }
+                input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                for (Integer expected : input) {
+                    Assert.assertEquals(expected, testHeap.extractRoot());
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUntrackedDelete() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN, Heap.Option.NO_POSITION_TRACKING);
+        testHeap.insert(1);
+        testHeap.delete(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new Heap<>(Integer.class, Heap.Type.MIN).extractRoot();
+    }
+
+    @Test
+    public void testStableExtract() {
+        for (Heap.Type type : Heap.Type.values()) {
+            Random gen = new Random();
+            Ticket[] tickets = new Ticket[1000];
+            for (int i = 0; i < tickets.length; i++) {
+                tickets[i] = new Ticket(gen.nextInt(10), i);
+            }
+            Heap<Ticket> testHeap = new Heap<>(tickets.clone(), type, Heap.Option.STABLE);
+            for (int i = 0; i < 1000; i++) {
+                testHeap.insert(new Ticket(gen.nextInt(10), tickets.length + i));
+            }
+            for (int i = 0; i < tickets.length; i += 5) {
+                testHeap.delete(tickets[i]);
+            }
+            assertFifo(testHeap, type);
+        }
+    }
+
+    @Test
+    public void testStableDeleteByKey() {
+        Heap<String> testHeap = new Heap<>(String.class, Heap.Type.MIN, Heap.Option.STABLE);
+        String first = new String("key");
+        String second = new String("key");
+        testHeap.insert(first);
+        testHeap.insert(second);
+        testHeap.delete("key"); // deletes the earliest inserted occurrence
+        Assert.assertSame(second, testHeap.extractRoot());
+    }
+
+    @Test
+    public void testDeleteEarliestFromArray() {
+        Random gen = new Random();
+        for (Heap.Option[] options : new Heap.Option[][] {{}, {Heap.Option.STABLE}, {Heap.Option.PARALLEL_HEAPIFY}}) {
+            for (int n : new int[] {8, 1000, 1 << 17}) { // the last is large enough to heapify in parallel
+                String[] input = makeDuplicateStrings(n, gen);
+                Heap<String> testHeap = new Heap<>(input.clone(), Heap.Type.MIN, options);
+                assertDeletesEarliest(testHeap, Arrays.asList(input), gen);
+            }
+        }
+    }
+
+    @Test
+    public void testDaryHeap() {
+        for (int arity : new int[] {3, 4, 8}) {
+            for (Heap.Type type : Heap.Type.values()) {
+                for (int i = 0; i < 20; i++) {
+                    ArrayList<Integer> input = new ArrayList<>();
+                    makeRandomIntegerArray(input);
+                    Integer[] intArr = input.toArray(Integer[]::new);
+                    Heap<Integer> testHeap = new Heap<>(intArr.clone(), type, arity);
+                    Assert.assertTrue(isDaryHeap(testHeap, arity, type));
+                    Random gen = new Random();
+                    for (int j = 0; j < 100; j++) {
+                        Integer x = gen.nextInt();
+                        testHeap.insert(x);
+                        input.add(x);
+                    }
+                    Assert.assertTrue(isDaryHeap(testHeap, arity, type));
+                    for (int j = 0; j < intArr.length; j += 3) {
+                        testHeap.delete(intArr[j]);
+                        input.remove(intArr[j]);
+                    }
+                    Assert.assertTrue(isDaryHeap(testHeap, arity, type));
+                    input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                    for (Integer expected : input) {
+                        Assert.assertEquals(expected, testHeap.extractRoot());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidArity() {
+        new Heap<>(Integer.class, Heap.Type.MIN, 1);
+    }
+
+    @Test
+    public void testInsertAll() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int batch : new int[] {1, 10, 1000, 10000}) {
+                ArrayList<Integer> input = new ArrayList<>();
+                makeRandomIntegerArray(input);
+                Heap<Integer> testHeap = new Heap<>(input.toArray(Integer[]::new), type);
+                ArrayList<Integer> more = new ArrayList<>();
+                Random gen = new Random();
+                for (int j = 0; j < batch; j++) {
+                    more.add(gen.nextInt(100));
+                }
+                testHeap.insertAll(more.toArray(Integer[]::new));
+                testHeap.insertAll(more);
+                input.addAll(more);
+                input.addAll(more);
+                Assert.assertTrue(isDaryHeap(testHeap, 2, type));
+                Assert.assertEquals(Collections.frequency(input, more.get(0)), testHeap.elementCount(more.get(0)));
+                input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                for (Integer expected : input) {
+                    Assert.assertEquals(expected, testHeap.extractRoot());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMeld() {
+        for (Heap.Type type : Heap.Type.values()) {
+            ArrayList<Integer> first = new ArrayList<>();
+            ArrayList<Integer> second = new ArrayList<>();
+            makeRandomIntegerArray(first);
+            makeRandomIntegerArray(second);
+            Heap<Integer> testHeap = new Heap<>(first.toArray(Integer[]::new), type, 4);
+            Heap<Integer> otherHeap = new Heap<>(second.toArray(Integer[]::new), type);
+            testHeap.meld(otherHeap);
+            Assert.assertEquals(0, otherHeap.size());
+            Assert.assertFalse(otherHeap.contains(second.get(0)));
+            Assert.assertTrue(testHeap.contains(second.get(0)));
+            Assert.assertTrue(isDaryHeap(testHeap, 4, type));
+            first.addAll(second);
+            first.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            for (Integer expected : first) {
+                Assert.assertEquals(expected, testHeap.extractRoot());
+            }
+        }
+    }
+
+    @Test
+    public void testMeldOtherOrder() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN);
+        Heap<Integer> otherHeap = new Heap<>(Integer.class, Heap.Type.MAX);
+        otherHeap.insert(1);
+        try {
+            testHeap.meld(otherHeap);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected, and nothing was moved
+        }
+        Assert.assertEquals(0, testHeap.size());
+        Assert.assertEquals(1, otherHeap.size());
+        testHeap.meld(new Heap<>(new Integer[] {2}, Heap.Type.MIN));
+        Assert.assertEquals(Integer.valueOf(2), testHeap.getRoot());
+    }
+
+    @Test
+    public void testStableMeld() {
+        Random gen = new Random();
+        Heap<Ticket> testHeap = new Heap<>(Ticket.class, Heap.Type.MIN, Heap.Option.STABLE);
+        Heap<Ticket> otherHeap = new Heap<>(Ticket.class, Heap.Type.MIN, Heap.Option.STABLE);
+        List<Ticket> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            testHeap.insert(new Ticket(gen.nextInt(10), i));
+            batch.add(new Ticket(gen.nextInt(10), 1000 + i));
+            otherHeap.insert(new Ticket(gen.nextInt(10), 2000 + i));
+        }
+        testHeap.insertAll(batch);
+        testHeap.meld(otherHeap);
+        assertFifo(testHeap, Heap.Type.MIN);
+
+        // delete keeps removing the earliest inserted equal element after a meld
+        for (Heap.Option[] options : new Heap.Option[][] {{}, {Heap.Option.STABLE}}) {
+            for (int size : new int[] {0, 500}) {
+                String[] mine = makeDuplicateStrings(size, gen);
+                String[] theirs = makeDuplicateStrings(1000, gen);
+                Heap<String> into = new Heap<>(mine.clone(), Heap.Type.MIN, options);
+                Heap<String> from = new Heap<>(Arrays.copyOf(theirs, 600), Heap.Type.MIN, options);
+                for (String s : Arrays.copyOfRange(theirs, 600, 1000)) {
+                    from.insert(s);
+                }
+                into.meld(from);
+                List<String> inserted = new ArrayList<>(Arrays.asList(mine));
+                inserted.addAll(Arrays.asList(theirs));
+                assertDeletesEarliest(into, inserted, gen);
+            }
+        }
+    }
+
+    @Test
+    public void testReplaceRoot() {
+        Heap<Integer> testHeap = new Heap<>(new Integer[] {5, 1, 3}, Heap.Type.MIN);
+        Assert.assertEquals(Integer.valueOf(1), testHeap.replaceRoot(4));
+        Assert.assertFalse(testHeap.contains(1));
+        Assert.assertTrue(testHeap.contains(4));
+        Assert.assertEquals(Integer.valueOf(3), testHeap.extractRoot());
+        Assert.assertEquals(Integer.valueOf(4), testHeap.extractRoot());
+        Assert.assertEquals(Integer.valueOf(5), testHeap.extractRoot());
+    }
+
+    @Test
+    public void testMetrics() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MAX, Heap.Option.METRICS);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(100 + i);
+        }
+        Collections.shuffle(keys);
+        for (Integer key : keys) {
+            testHeap.insert(key);
+        }
+        for (int i = 0; i < 50; i++) {
+            testHeap.insert(42);
+        }
+        for (int i = 0; i < 500; i++) {
+            testHeap.extractRoot();
+        }
+        HeapMetrics metrics = testHeap.getMetrics();
+        Assert.assertEquals(1550, metrics.sifts);
+        Assert.assertTrue(metrics.comparisons >= metrics.moves);
+        Assert.assertTrue(metrics.moves > 0);
+        Assert.assertTrue(metrics.maxSiftDepth <= 11);
+        Assert.assertTrue(metrics.resizes > 0);
+        Assert.assertTrue(metrics.bytesCopied > 0);
+        Assert.assertEquals(501, metrics.distinctElements);
+        Assert.assertEquals(50, metrics.maxDuplicates);
+
+        testHeap.resetMetrics();
+        Assert.assertEquals(0, testHeap.getMetrics().comparisons);
+    }
+
+    @Test
+    public void testBottomUpExtract() {
+        for (int arity : new int[] {2, 3, 4}) {
+            Integer[] keys = new Integer[1 << 14];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = i;
+            }
+            Collections.shuffle(Arrays.asList(keys), new Random(arity));
+            Heap<Integer> testHeap = new Heap<>(keys, Heap.Type.MIN, arity, Heap.Option.METRICS);
+            testHeap.resetMetrics();
+            for (int i = 0; i < keys.length; i++) {
+                Assert.assertEquals(Integer.valueOf(i), testHeap.extractRoot());
+                Assert.assertFalse(testHeap.contains(i));
+                if (i + 1 < keys.length) Assert.assertTrue(testHeap.contains(i + 1));
+            }
+            // a plain sift down needs about d*log_d(n) comparisons per extract, bottom-up about (d-1)*log_d(n)
+            double levels = Math.log(keys.length) / Math.log(arity);
+            Assert.assertTrue(testHeap.getMetrics().comparisons < keys.length * ((arity - 1) * levels + 2));
+        }
+    }
+
+    @Test
+    public void testResizeEvents() throws Exception {
+        java.nio.file.Path dump = java.nio.file.Files.createTempFile("heap", ".jfr");
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            recording.enable("heap.Resize");
+            recording.start();
+            Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MAX, Heap.Option.METRICS);
+            for (int i = 0; i < 1000; i++) {
+                testHeap.insert(i);
+            }
+            recording.stop();
+            recording.dump(dump);
+            long events = jdk.jfr.consumer.RecordingFile.readAllEvents(dump).stream()
+                    .filter(e -> e.getEventType().getName().equals("heap.Resize"))
+                    .count();
+            Assert.assertEquals(testHeap.getMetrics().resizes, events);
+        } finally {
+            java.nio.file.Files.deleteIfExists(dump);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMetricsDisabled() {
+        new Heap<>(Integer.class, Heap.Type.MIN).getMetrics();
+    }
+
+    @Test
+    public void testComparator() {
+        Random gen = new Random();
+        Order[] orders = new Order[1000];
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = new Order(i, gen.nextInt(100));
+        }
+        for (Comparator<Order> byPrice : Arrays.asList(Comparator.comparingInt(Order::price),
+                Comparator.comparingInt(Order::price).reversed())) {
+            Heap<Order> testHeap = new Heap<>(Arrays.copyOf(orders, 500), byPrice, 3, Heap.Option.STABLE);
+            for (int i = 500; i < orders.length; i++) {
+                testHeap.insert(orders[i]);
+            }
+            testHeap.delete(orders[0]);
+            Assert.assertFalse(testHeap.contains(orders[0]));
+            Assert.assertSame(byPrice, testHeap.comparator());
+
+            Order last = testHeap.extractRoot();
+            while (testHeap.size() > 0) {
+                Order next = testHeap.extractRoot();
+                int cmp = byPrice.compare(last, next);
+                Assert.assertTrue(cmp < 0 || cmp == 0 && last.id() < next.id());
+                last = next;
+            }
+        }
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN, 2, 100, Heap.Option.STABLE);
+        Assert.assertEquals(100, testHeap.getHeapArray().length);
+        for (int i = 0; i < 100; i++) {
+            testHeap.insert(i % 10);
+        }
+        Assert.assertEquals(100, testHeap.getHeapArray().length); // grows only when full
+        for (int i = 0; i < 10000; i++) {
+            testHeap.insert(i % 10);
+        }
+        int peak = testHeap.getHeapArray().length;
+        Assert.assertTrue(peak >= 10100 && peak < 2 * 10100);
+
+        for (int i = 0; i < 10080; i++) {
+            testHeap.delete(i % 10);
+            Assert.assertTrue(testHeap.getHeapArray().length < Math.max(101, 4 * (testHeap.size() + 1)));
+        }
+        Assert.assertEquals(20, testHeap.size());
+        Assert.assertEquals(100, testHeap.getHeapArray().length); // never below the expected size
+        Assert.assertEquals(2, testHeap.elementCount(7));
+        Assert.assertTrue(isDaryHeap(testHeap, 2, Heap.Type.MIN));
+
+        testHeap.clear();
+        Assert.assertEquals(100, testHeap.getHeapArray().length);
+    }
+
+    @Test
+    public void testShrinkHysteresis() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MAX, Heap.Option.METRICS);
+        for (int i = 0; i < 1000; i++) {
+            testHeap.insert(i);
+        }
+        while (testHeap.size() > 100) {
+            testHeap.extractRoot();
+        }
+        long resizes = testHeap.getMetrics().resizes;
+        for (int i = 0; i < 1000; i++) { // oscillate around the size the heap shrank at
+            testHeap.insert(i);
+            testHeap.extractRoot();
+        }
+        Assert.assertEquals(resizes, testHeap.getMetrics().resizes);
+    }
+
+    @Test
+    public void testTrimToSize() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN);
+        for (int i = 0; i < 1000; i++) {
+            testHeap.insert(i);
+        }
+        testHeap.trimToSize();
+        Assert.assertEquals(1000, testHeap.getHeapArray().length);
+        testHeap.delete(500);
+        testHeap.insert(-1);
+        testHeap.insert(-2);
+        Assert.assertEquals(Integer.valueOf(-2), testHeap.extractRoot());
+        Assert.assertTrue(testHeap.contains(999));
+
+        Heap<Integer> emptyHeap = new Heap<>(Integer.class, Heap.Type.MIN);
+        emptyHeap.trimToSize();
+        emptyHeap.insert(1);
+        Assert.assertEquals(Integer.valueOf(1), emptyHeap.getRoot());
+    }
+
+    @Test
+    public void testLazyDelete() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int arity : new int[] {2, 4}) {
+                Heap<Integer> testHeap = new Heap<>(Integer.class, type, arity, Heap.Option.LAZY_DELETE);
+                List<Integer> input = new ArrayList<>();
+                Random gen = new Random();
+                for (int i = 0; i < 20000; i++) {
+                    Integer x = gen.nextInt(500);
+                    int op = gen.nextInt(5);
+                    if (op < 3 || input.isEmpty()) {
+                        testHeap.insert(x);
+                        input.add(x);
+                    } else if (op == 3 && testHeap.contains(x)) {
+                        testHeap.delete(x);
+                        input.remove(x);
+                    } else if (op == 3) {
+                        Integer expected = type == Heap.Type.MIN ? Collections.min(input) : Collections.max(input);
+                        Assert.assertEquals(expected, testHeap.getRoot());
+                        Assert.assertEquals(expected, testHeap.extractRoot());
+                        input.remove(expected);
+                    } else if (testHeap.contains(x)) {
+                        testHeap.deleteAll(x);
+                        input.removeIf(x::equals);
+                    }
+                    Assert.assertEquals(input.size(), testHeap.size());
+                    Assert.assertEquals(Collections.frequency(input, x), testHeap.elementCount(x));
+                }
+                input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                for (Integer expected : input) {
+                    Assert.assertEquals(expected, testHeap.extractRoot());
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testLazyCompaction() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN, 2, 1000,
+                Heap.Option.LAZY_DELETE, Heap.Option.METRICS);
+        for (int i = 0; i < 1000; i++) {
+            testHeap.insert(i);
+        }
+        long sifts = testHeap.getMetrics().sifts;
+        for (int i = 999; i >= 600; i--) {
+            testHeap.delete(i); // dead leaves stay in the heap array
+        }
+        Assert.assertEquals(600, testHeap.size());
+        Assert.assertEquals(1000, testHeap.getHeapArray().length);
+        Assert.assertEquals(sifts, testHeap.getMetrics().sifts);
+        Assert.assertEquals(600, testHeap.getMetrics().distinctElements);
+        Assert.assertEquals(1, testHeap.getMetrics().maxDuplicates);
+
+        for (int i = 599; i >= 500; i--) {
+            testHeap.delete(i); // the 500th dead element compacts the heap
+        }
+        Assert.assertEquals(500, testHeap.size());
+        Assert.assertFalse(testHeap.contains(500));
+        Assert.assertEquals(Integer.valueOf(0), testHeap.getRoot());
+        Assert.assertNull(testHeap.getHeapArray()[500]);
+
+        testHeap.delete(10);
+        testHeap.trimToSize();
+        Assert.assertEquals(499, testHeap.getHeapArray().length);
+        for (int i = 0; i < 500; i++) {
+            if (i != 10) Assert.assertEquals(Integer.valueOf(i), testHeap.extractRoot());
+        }
+    }
+
+    @Test
+    public void testLazyDeleteStable() {
+        Heap<Ticket> testHeap = new Heap<>(Ticket.class, Heap.Type.MAX, Heap.Option.STABLE, Heap.Option.LAZY_DELETE);
+        List<Ticket> tickets = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 5000; i++) {
+            Ticket ticket = new Ticket(gen.nextInt(20), i);
+            tickets.add(ticket);
+            testHeap.insert(ticket);
+        }
+        for (int i = 0; i < 2000; i++) {
+            testHeap.delete(tickets.remove(gen.nextInt(tickets.size())));
+        }
+        Assert.assertEquals(3000, testHeap.size());
+        assertFifo(testHeap, Heap.Type.MAX);
+    }
+
+    @Test
+    public void testLazyMeld() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN);
+        Heap<Integer> other = new Heap<>(Integer.class, Heap.Type.MIN, Heap.Option.LAZY_DELETE);
+        for (int i = 0; i < 100; i++) {
+            testHeap.insert(i);
+            other.insert(i);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            other.delete(i);
+        }
+        testHeap.meld(other);
+        Assert.assertEquals(166, testHeap.size());
+        Assert.assertEquals(1, testHeap.elementCount(0));
+        Assert.assertEquals(2, testHeap.elementCount(1));
+    }
+
+    @Test
+    public void testSortedIterator() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int arity : new int[] {2, 3, 8}) {
+                Heap<Integer> testHeap = new Heap<>(Integer.class, type, arity);
+                List<Integer> input = new ArrayList<>();
+                makeRandomIntegerArray(input);
+                testHeap.insertAll(input);
+                Integer[] before = testHeap.getHeapArray().clone();
+
+                List<Integer> sorted = new ArrayList<>();
+                Iterator<Integer> it = testHeap.sortedIterator();
+                while (it.hasNext()) {
+                    sorted.add(it.next());
+                }
+                input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                Assert.assertEquals(input, sorted);
+                Assert.assertArrayEquals(before, testHeap.getHeapArray());
+                Assert.assertEquals(input.size(), testHeap.size());
+                Assert.assertEquals(input.subList(0, Math.min(10, input.size())),
+                        testHeap.sortedStream().limit(10).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void testSortedIteratorStableAndLazy() {
+        Heap<Ticket> testHeap = new Heap<>(Ticket.class, Heap.Type.MIN, Heap.Option.STABLE, Heap.Option.LAZY_DELETE);
+        List<Ticket> tickets = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 3000; i++) {
+            Ticket ticket = new Ticket(gen.nextInt(30), i);
+            tickets.add(ticket);
+            testHeap.insert(ticket);
+        }
+        for (int i = 0; i < 1000; i++) {
+            testHeap.delete(tickets.remove(gen.nextInt(tickets.size()))); // stays below the compaction ratio
+        }
+        tickets.sort(Comparator.comparingInt((Ticket t) -> t.key).thenComparingInt(t -> t.order));
+        Iterator<Ticket> it = testHeap.sortedIterator();
+        for (Ticket expected : tickets) {
+            Assert.assertSame(expected, it.next());
+        }
+        Assert.assertFalse(it.hasNext());
+        try {
+            it.next();
+            Assert.fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        Assert.assertEquals(tickets.size(), testHeap.size());
+    }
+
+    @Test
+    public void testStream() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MAX, Heap.Option.LAZY_DELETE);
+        long sum = 0;
+        for (int i = 0; i < 100000; i++) {
+            testHeap.insert(i);
+            sum += i;
+        }
+        for (int i = 0; i < 100000; i += 4) {
+            testHeap.delete(i);
+            sum -= i;
+        }
+        Integer[] before = testHeap.getHeapArray().clone();
+        Assert.assertEquals(sum, testHeap.stream().parallel().mapToLong(Integer::longValue).sum());
+        Assert.assertEquals(testHeap.size(), testHeap.stream().count());
+        Assert.assertFalse(testHeap.stream().parallel().anyMatch(x -> x % 4 == 0));
+        Assert.assertArrayEquals(before, testHeap.getHeapArray()); // skipped, not compacted away
+        Assert.assertEquals(Integer.valueOf(99999), testHeap.extractRoot());
+    }
+
+    @Test
+    public void testParallelHeapify() {
+        Random gen = new Random();
+        for (int arity : new int[] {2, 3, 4}) {
+            Integer[] keys = new Integer[300000];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = gen.nextInt(100000);
+            }
+            Heap<Integer> sequential = new Heap<>(keys.clone(), Heap.Type.MIN, arity, Heap.Option.STABLE);
+            Heap<Integer> parallel = new Heap<>(keys.clone(), Heap.Type.MIN, arity,
+                    Heap.Option.STABLE, Heap.Option.PARALLEL_HEAPIFY);
+            Assert.assertArrayEquals(sequential.getHeapArray(), parallel.getHeapArray());
+            Assert.assertTrue(isDaryHeap(parallel, arity, Heap.Type.MIN));
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(sequential.elementCount(keys[i]), parallel.elementCount(keys[i]));
+            }
+            for (int i = 0; i < 1000; i++) {
+                parallel.delete(keys[i]);
+                sequential.delete(keys[i]);
+                Assert.assertSame(sequential.getRoot(), parallel.getRoot());
+            }
+        }
+    }
+
+    @Test
+    public void testExtractRoots() {
+        Random gen = new Random();
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int arity : new int[] {2, 3, 8}) {
+                for (int k : new int[] {0, 1, 5, 100, 2000, 6000}) {
+                    Heap<Integer> testHeap = new Heap<>(Integer.class, type, arity);
+                    List<Integer> input = new ArrayList<>();
+                    for (int i = 0; i < 5000; i++) {
+                        input.add(gen.nextInt(1000));
+                    }
+                    testHeap.insertAll(input);
+                    input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+
+                    Integer[] peeked = testHeap.peekRoots(k);
+                    Assert.assertEquals(5000, testHeap.size());
+                    Integer[] dest = new Integer[Math.min(k, 5000)];
+                    Assert.assertEquals(dest.length, testHeap.extractRoots(k, dest));
+                    List<Integer> expected = input.subList(0, dest.length);
+                    Assert.assertEquals(expected, Arrays.asList(peeked));
+                    Assert.assertEquals(expected, Arrays.asList(dest));
+
+                    List<Integer> rest = input.subList(dest.length, input.size());
+                    Assert.assertEquals(rest.size(), testHeap.size());
+                    Assert.assertTrue(isDaryHeap(testHeap, arity, type));
+                    for (int x = 0; x < 1000; x += 37) {
+                        Assert.assertEquals(Collections.frequency(rest, x), testHeap.elementCount(x));
+                    }
+                    for (Integer x : rest) {
+                        Assert.assertEquals(x, testHeap.extractRoot());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExtractRootsStableAndLazy() {
+        Heap<Ticket> testHeap = new Heap<>(Ticket.class, Heap.Type.MIN, Heap.Option.STABLE, Heap.Option.LAZY_DELETE);
+        List<Ticket> tickets = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 3000; i++) {
+            Ticket ticket = new Ticket(gen.nextInt(30), i);
+            tickets.add(ticket);
+            testHeap.insert(ticket);
+        }
+        for (int i = 0; i < 1000; i++) {
+            testHeap.delete(tickets.remove(gen.nextInt(tickets.size())));
+        }
+        tickets.sort(Comparator.comparingInt((Ticket t) -> t.key).thenComparingInt(t -> t.order));
+        Ticket[] dest = new Ticket[700];
+        // a small batch removes root by root, a large one walks the top of the heap
+        Assert.assertEquals(100, testHeap.extractRoots(100, dest));
+        Ticket[] rest = new Ticket[600];
+        Assert.assertEquals(600, testHeap.extractRoots(600, rest));
+        System.arraycopy(rest, 0, dest, 100, 600);
+        for (int i = 0; i < 700; i++) {
+            Assert.assertSame(tickets.get(i), dest[i]);
+        }
+        Assert.assertEquals(1300, testHeap.size());
+        for (Ticket expected : tickets.subList(700, 2000)) {
+            Assert.assertTrue(testHeap.contains(expected));
+        }
+        assertFifo(testHeap, Heap.Type.MIN);
+    }
+
+    @Test
+    public void testDrainTo() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MAX);
+        for (int i = 0; i < 100; i++) {
+            testHeap.insert(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals(10, testHeap.drainTo(drained, 10));
+        Assert.assertEquals(Arrays.asList(99, 98, 97, 96, 95, 94, 93, 92, 91, 90), drained);
+        Assert.assertEquals(90, testHeap.drainTo(drained, Integer.MAX_VALUE));
+        Assert.assertEquals(100, drained.size());
+        Assert.assertEquals(0, testHeap.size());
+        Assert.assertEquals(0, testHeap.drainTo(drained, 5));
+        Assert.assertEquals(0, testHeap.peekRoots(5).length);
+        testHeap.insert(7);
+        Assert.assertEquals(Integer.valueOf(7), testHeap.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExtractRootsShortDest() {
+        Heap<Integer> testHeap = new Heap<>(Integer.class, Heap.Type.MIN);
+        for (int i = 0; i < 10; i++) {
+            testHeap.insert(i);
+        }
+        testHeap.extractRoots(5, new Integer[4]);
+    }
+
+    @Test
+    public void testSnapshotRestore() throws IOException {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int arity : new int[] {2, 4}) {
+                Heap<Integer> testHeap = new Heap<>(Integer.class, type, arity);
+                List<Integer> input = new ArrayList<>();
+                makeRandomIntegerArray(input);
+                testHeap.insertAll(input);
+                Path file = folder.newFile().toPath();
+                try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    testHeap.snapshot(out, HeapCodec.integers());
+                }
+                Assert.assertEquals(15 + 4L * input.size(), Files.size(file));
+
+                Heap<Integer> restored;
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                    restored = Heap.restore(in, Integer.class, HeapCodec.integers());
+                }
+                Assert.assertArrayEquals(Arrays.copyOf(testHeap.getHeapArray(), testHeap.size()),
+                        Arrays.copyOf(restored.getHeapArray(), restored.size()));
+                for (Integer x : input) {
+                    Assert.assertEquals(Collections.frequency(input, x), restored.elementCount(x));
+                }
+                restored.delete(input.get(0));
+                restored.insert(-1);
+                input.remove(0);
+                input.add(-1);
+                input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                for (Integer expected : input) {
+                    Assert.assertEquals(expected, restored.extractRoot());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotRestoreDuplicates() throws IOException {
+        Random gen = new Random();
+        String[] input = makeDuplicateStrings(2000, gen);
+        Map<String, Integer> ids = new IdentityHashMap<>();
+        for (int i = 0; i < input.length; i++) {
+            ids.put(input[i], i);
+        }
+        HeapCodec<String> byId = new HeapCodec<>() { // restores the very instances written
+            @Override
+            public void write(String elem, DataOutput out) throws IOException {out.writeInt(ids.get(elem));}
+            @Override
+            public String read(DataInput in) throws IOException {return input[in.readInt()];}
+        };
+        Heap<String> testHeap = new Heap<>(Arrays.copyOf(input, 1000), Heap.Type.MIN, Heap.Option.STABLE);
+        for (String s : Arrays.copyOfRange(input, 1000, 2000)) {
+            testHeap.insert(s);
+        }
+        List<String> inserted = new ArrayList<>(Arrays.asList(input));
+        for (int i = 0; i < 100; i++) { // leaves gaps in the sequence numbers
+            String key = inserted.get(gen.nextInt(inserted.size()));
+            testHeap.delete(key);
+            inserted.remove(key);
+        }
+        Path file = folder.newFile().toPath();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            testHeap.snapshot(out, byId);
+        }
+        for (Heap.Option[] options : new Heap.Option[][] {{}, {Heap.Option.STABLE}}) {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertDeletesEarliest(Heap.restore(in, String.class, byId, options), inserted, gen);
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotRestoreStableAndLazy() throws IOException {
+        Heap<Ticket> testHeap = new Heap<>(Ticket.class, Comparator.comparingInt((Ticket t) -> t.key),
+                Heap.Option.STABLE, Heap.Option.LAZY_DELETE);
+        List<Ticket> tickets = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 3000; i++) {
+            Ticket ticket = new Ticket(gen.nextInt(30), i);
+            tickets.add(ticket);
+            testHeap.insert(ticket);
+        }
+        for (int i = 0; i < 1000; i++) {
+            testHeap.delete(tickets.remove(gen.nextInt(tickets.size())));
+        }
+        HeapCodec<Ticket> codec = new HeapCodec<>() {
+            @Override
+            public void write(Ticket elem, DataOutput out) throws IOException {
+                out.writeInt(elem.key);
+                out.writeInt(elem.order);
+            }
+            @Override
+            public Ticket read(DataInput in) throws IOException {return new Ticket(in.readInt(), in.readInt());}
+        };
+        Path file = folder.newFile().toPath();
+        Ticket[] before = testHeap.getHeapArray().clone();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            testHeap.snapshot(out, codec);
+        }
+        Assert.assertArrayEquals(before, testHeap.getHeapArray()); // the dead elements were skipped
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            Heap.restore(in, Ticket.class, codec);
+            Assert.fail();
+        } catch (IOException e) {
+            // expected, the snapshot is of a heap ordered by a Comparator
+        }
+        Heap<Ticket> restored;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            restored = Heap.restore(in, Ticket.class, testHeap.comparator(), codec, Heap.Option.STABLE);
+        }
+        Assert.assertEquals(2000, restored.size());
+        for (int i = 0; i < 500; i++) { // sequence numbers continue after the restored ones
+            Ticket ticket = new Ticket(gen.nextInt(30), 3000 + i);
+            tickets.add(ticket);
+            restored.insert(ticket);
+        }
+        tickets.sort(Comparator.comparingInt((Ticket t) -> t.key).thenComparingInt(t -> t.order));
+        for (Ticket expected : tickets) {
+            Ticket actual = restored.extractRoot();
+            Assert.assertEquals(expected.key, actual.key);
+            Assert.assertEquals(expected.order, actual.order);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRestoreNotSnapshot() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[64]);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            Heap.restore(in, Integer.class, HeapCodec.integers());
+        }
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testNaturalOrderNotComparable() {
+        Heap<Object> testHeap = new Heap<>(Object.class, Heap.Type.MIN);
+        testHeap.insert(new Object());
+        testHeap.insert(new Object());
+    }
+
     /**
      * Tests the min heap condition for each node (that each parent is less than
      * both of it's children.
@@ -322,6 +1159,87 @@ public class HeapTest {
         return isHeapified;
     }
 
+    /**
+     * Tests the heap condition of a d-ary heap (that no child precedes its parent).
+     * @param testHeap the heap to check
+     * @param arity the number of children of each node
+     * @param type the type of heap
+     * @return a boolean indicating whether the heap property is fulfilled
+     */
+    private boolean isDaryHeap(Heap<Integer> testHeap, int arity, Heap.Type type) {
+        Integer[] testArr = testHeap.getHeapArray();
+        for (int i = 1; i < testHeap.size(); i++) {
+            int parent = testArr[(i - 1)/arity];
+            if (type == Heap.Type.MIN ? testArr[i] < parent : testArr[i] > parent) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Extracts every element of a stable heap, asserting that keys come out in
+     * heap order and equal keys come out in insertion order.
+     */
+    /** Returns n strings drawn from a few keys, equal strings being distinct instances. */
+    private static String[] makeDuplicateStrings(int n, Random gen) {
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++) {
+            strings[i] = new String("key" + gen.nextInt(5));
+        }
+        return strings;
+    }
+
+    /**
+     * Deletes some elements of testHeap by value and asserts that each delete
+     * removed the earliest inserted equal element, then that exactly the other
+     * elements are left.
+     * @param inserted the elements of testHeap in insertion order
+     */
+    private static void assertDeletesEarliest(Heap<String> testHeap, List<String> inserted, Random gen) {
+        List<String> left = new ArrayList<>(inserted);
+        for (int i = Math.min(inserted.size() / 2, 2000); i > 0; i--) {
+            String key = left.get(gen.nextInt(left.size()));
+            testHeap.delete(key);
+            left.remove(key); // removes the first equal element, the earliest inserted
+        }
+        Set<String> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+        expected.addAll(left);
+        while (testHeap.size() > 0) {
+            Assert.assertTrue(expected.remove(testHeap.extractRoot()));
+        }
+        Assert.assertTrue(expected.isEmpty());
+    }
+
+    private void assertFifo(Heap<Ticket> testHeap, Heap.Type type) {
+        Ticket last = testHeap.extractRoot();
+        while (testHeap.size() > 0) {
+            Ticket next = testHeap.extractRoot();
+            if (next.key == last.key) {
+                Assert.assertTrue(last.order < next.order);
+            } else {
+                Assert.assertTrue(type == Heap.Type.MIN ? last.key < next.key : last.key > next.key);
+            }
+            last = next;
+        }
+    }
+
+    /** A price paired with the order it was created in; ids are unique, so no two orders of a test are equal. */
+    private record Order(int id, int price) {}
+
+    private static class Ticket implements Comparable<Ticket> {
+        private final int key;
+        private final int order;
+
+        Ticket(int key, int order) {
+            this.key = key;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            return Integer.compare(key, other.key);
+        }
+    }
+
     /**
      * Fills an ArrayList with a random amount of random integer values.
      * @param input the array to fill
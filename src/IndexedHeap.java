@@ -0,0 +1,273 @@
+/*
+ * Implementation of an indexed heap data structure.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+
+/**
+ * A heap that hands out an int handle for every inserted element. The handle
+ * can later be used to read, change the key of, or remove that element in
+ * O(log(n)) without searching for it, which is what decrease-key heavy
+ * algorithms like Dijkstra's need. Positions are kept in an array indexed by
+ * handle, so no hashing or per key lists are involved.
+ *
+ * Handles are released when their element leaves the heap and may be handed
+ * out again by a later insert.
+ * @author Spencer Little
+ */
+public class IndexedHeap<T extends Comparable<? super T>> {
+
+    /** The type of heap, determines how heapCmp behaves. */
+    private Heap.Type heapType;
+    /** Holds the index of the next open position in the heap array. */
+    private int nextNodeIndex;
+    /** The heap array itself, holds the handle of the element at each position. */
+    private int[] heapArray;
+    /** The key of each handle. */
+    private Object[] keys;
+    /** The position in the heap array of each handle, -1 if the handle is free. */
+    private int[] positions;
+    /** Released handles available for reuse. */
+    private int[] freeHandles;
+    /** The number of handles in freeHandles. */
+    private int freeCount;
+    /** The next never used handle. */
+    private int nextHandle;
+
+    /**
+     * Initializes an empty heap.
+     */
+    public IndexedHeap(Heap.Type type) {
+        this(type, 10);
+    }
+
+    /**
+     * Initializes an empty heap with room for the given number of elements.
+     * @param initialCapacity the number of elements to allocate space for
+     */
+    public IndexedHeap(Heap.Type type, int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        heapType = type;
+        heapArray = new int[capacity];
+        keys = new Object[capacity];
+        positions = new int[capacity];
+        freeHandles = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Initializes the heap by heapifying the supplied keys. The handle of
+     * userArray[i] is i.
+     * Complexity: O(n), n = userArray.length
+     * @param userArray the keys to be heapified
+     */
+    public IndexedHeap(T[] userArray, Heap.Type type) {
+        this(type, userArray.length);
+        for (int i = 0; i < userArray.length; i++) {
+            keys[i] = userArray[i];
+            heapArray[i] = i;
+            positions[i] = i;
+        }
+        nextNodeIndex = userArray.length;
+        nextHandle = userArray.length;
+        for (int i = (nextNodeIndex/2) - 1; i >= 0; i--) {
+            swapDownTree(i);
+        }
+    }
+
+    /** Returns the number of elements in the heap. */
+    public int size() {return nextNodeIndex;}
+    /** Returns true if handle refers to an element currently in the heap. O(1). */
+    public boolean contains(int handle) {return handle >= 0 && handle < nextHandle && positions[handle] >= 0;}
+
+    /********************************************************************
+     *                          Heap Operations                         *
+     ********************************************************************/
+
+    /**
+     * Inserts an element into the heap.
+     * Complexity: O(log(n)), can be O(n) if resizing is necessary
+     * @param key the key to insert
+     * @return the handle of the inserted element
+     */
+    public int insert(T key) {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (nextHandle == keys.length) grow();
+            handle = nextHandle++;
+        }
+
+        keys[handle] = key;
+        heapArray[nextNodeIndex] = handle;
+        positions[handle] = nextNodeIndex;
+        swapUpTree(nextNodeIndex++);
+        return handle;
+    }
+
+    /**
+     * Returns the key of the element with the given handle.
+     * Complexity: O(1)
+     * @throws IllegalArgumentException if handle is not in the heap
+     * @param handle the handle returned when the element was inserted
+     * @return the key of the element
+     */
+    @SuppressWarnings("unchecked")
+    public T peek(int handle) {
+        checkHandle(handle);
+        return (T) keys[handle];
+    }
+
+    /**
+     * Replaces the key of the element with the given handle and restores the
+     * heap property. Handles both decrease and increase of the key.
+     * Complexity: O(log(n))
+     * @throws IllegalArgumentException if handle is not in the heap
+     * @param handle the handle returned when the element was inserted
+     * @param newKey the new key of the element
+     */
+    public void updateKey(int handle, T newKey) {
+        checkHandle(handle);
+        keys[handle] = newKey;
+        int pos = positions[handle];
+        swapUpTree(pos);
+        if (positions[handle] == pos) swapDownTree(pos);
+    }
+
+    /**
+     * Removes the element with the given handle from the heap and releases
+     * the handle.
+     * Complexity: O(log(n))
+     * @throws IllegalArgumentException if handle is not in the heap
+     * @param handle the handle returned when the element was inserted
+     * @return the key of the removed element
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int handle) {
+        checkHandle(handle);
+        T key = (T) keys[handle];
+        int pos = positions[handle];
+        int last = --nextNodeIndex;
+        if (pos != last) {
+            int moved = heapArray[last];
+            heapArray[pos] = moved;
+            positions[moved] = pos;
+            swapUpTree(pos);
+            if (positions[moved] == pos) swapDownTree(pos);
+        }
+        release(handle);
+        return key;
+    }
+
+    /**
+     * Returns the handle of the next minimum/maximum value in the heap.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     * @return the handle of the root
+     */
+    public int getRootHandle() {
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return heapArray[0];
+    }
+
+    /**
+     * Returns but does not extract the next minimum/maximum value in the heap.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     * @return the root key
+     */
+    @SuppressWarnings("unchecked")
+    public T getRoot() {
+        return (T) keys[getRootHandle()];
+    }
+
+    /**
+     * Extracts and returns the next minimum/maximum value, releasing its handle.
+     * Complexity: O(log(n))
+     * @throws IllegalStateException if the heap is empty
+     * @return the root key
+     */
+    public T extractRoot() {
+        return remove(getRootHandle());
+    }
+
+    /**
+     * Swaps the element at parentNode with the lesser of its children until
+     * neither child is less than it or it reaches the leafs of the tree.
+     * Complexity: O(log(n))
+     * @param parentNode the node currently being processed
+     */
+    private void swapDownTree(int parentNode) {
+        int childNode = 2*parentNode + 1;
+        while (childNode < nextNodeIndex) {
+            if (childNode + 1 < nextNodeIndex && !heapCmp(heapArray[childNode], heapArray[childNode+1])) {
+                childNode++;
+            }
+            if (!heapCmp(heapArray[childNode], heapArray[parentNode])) return;
+            swapArrayElements(childNode, parentNode);
+            parentNode = childNode;
+            childNode = 2*parentNode + 1;
+        }
+    }
+
+    /**
+     * Swaps the element at childNode with its parent until it is no longer
+     * less than the parent.
+     * @param childNode the initial node to begin the swapping process
+     */
+    private void swapUpTree(int childNode) {
+        int parentNode = ((childNode+1)/2) - 1;
+        while (parentNode >= 0 && heapCmp(heapArray[childNode], heapArray[parentNode])) {
+            swapArrayElements(childNode, parentNode);
+            childNode = parentNode;
+            parentNode = ((childNode+1)/2) - 1;
+        }
+    }
+
+    /**
+     * Returns a boolean indicating whether the key of handleOne is less than
+     * (min heap) or greater than (max heap) the key of handleTwo.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean heapCmp(int handleOne, int handleTwo) {
+        int cmp = ((T) keys[handleOne]).compareTo((T) keys[handleTwo]);
+        return heapType == Heap.Type.MIN ? cmp < 0 : cmp > 0;
+    }
+
+    /** Swaps the handles at two positions of the heap array. */
+    private void swapArrayElements(int pos1, int pos2) {
+        int temp = heapArray[pos1];
+        heapArray[pos1] = heapArray[pos2];
+        heapArray[pos2] = temp;
+        positions[heapArray[pos1]] = pos1;
+        positions[heapArray[pos2]] = pos2;
+    }
+
+    /** Marks handle as free and makes it available for reuse. */
+    private void release(int handle) {
+        keys[handle] = null;
+        positions[handle] = -1;
+        freeHandles[freeCount++] = handle;
+    }
+
+    /** Throws IllegalArgumentException if handle is not in the heap. */
+    private void checkHandle(int handle) {
+        if (!contains(handle)) {
+            throw new IllegalArgumentException("Heap does not contain an element with handle " + handle);
+        }
+    }
+
+    /** Grows every handle indexed array by 1.5. */
+    private void grow() {
+        int capacity = keys.length + (keys.length>>>1) + 1;
+        heapArray = Arrays.copyOf(heapArray, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        freeHandles = Arrays.copyOf(freeHandles, capacity);
+        int oldLength = positions.length;
+        positions = Arrays.copyOf(positions, capacity);
+        Arrays.fill(positions, oldLength, capacity, -1);
+    }
+
+}
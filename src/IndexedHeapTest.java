@@ -0,0 +1,162 @@
+/*
+ * A set of unit tests covering the indexed heap class.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class IndexedHeapTest {
+
+    @Test
+    public void testHeapifyAndExtract() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                Integer[] intArr = makeRandomIntegerArray();
+                IndexedHeap<Integer> testHeap = new IndexedHeap<>(intArr.clone(), type);
+                for (int j = 0; j < intArr.length; j++) {
+                    Assert.assertEquals(intArr[j], testHeap.peek(j));
+                }
+                Arrays.sort(intArr, type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                for (Integer expected : intArr) {
+                    Assert.assertEquals(expected, testHeap.extractRoot());
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateKeyAndRemove() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 20; i++) {
+                IndexedHeap<Integer> testHeap = new IndexedHeap<>(type);
+                Map<Integer, Integer> live = new HashMap<>(); // handle -> key
+                Random gen = new Random();
+                for (int j = 0; j < 2000; j++) {
+                    int op = gen.nextInt(4);
+                    if (op == 0 || live.isEmpty()) {
+                        int key = gen.nextInt(100);
+                        int handle = testHeap.insert(key);
+                        Assert.assertNull(live.put(handle, key));
+                    } else {
+                        Integer handle = new ArrayList<>(live.keySet()).get(gen.nextInt(live.size()));
+                        Assert.assertEquals(live.get(handle), testHeap.peek(handle));
+                        if (op == 1) {
+                            int key = gen.nextInt(100);
+                            testHeap.updateKey(handle, key);
+                            live.put(handle, key);
+                        } else if (op == 2) {
+                            Assert.assertEquals(live.remove(handle), testHeap.remove(handle));
+                            Assert.assertFalse(testHeap.contains(handle));
+                        } else {
+                            int root = testHeap.getRootHandle();
+                            Assert.assertEquals(live.remove(root), testHeap.extractRoot());
+                        }
+                    }
+                    Assert.assertEquals(live.size(), testHeap.size());
+                    if (!live.isEmpty()) {
+                        int best = type == Heap.Type.MIN ? Collections.min(live.values()) : Collections.max(live.values());
+                        Assert.assertEquals(Integer.valueOf(best), testHeap.getRoot());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDijkstra() {
+        Random gen = new Random();
+        int n = 500;
+        List<List<int[]>> adj = makeRandomGraph(n, gen);
+
+        int[] dist = new int[n];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        dist[0] = 0;
+        int[] handles = new int[n];
+        Arrays.fill(handles, -1);
+        int[] nodes = new int[n];
+        IndexedHeap<Integer> queue = new IndexedHeap<>(Heap.Type.MIN);
+        handles[0] = queue.insert(0);
+        nodes[handles[0]] = 0;
+        boolean[] done = new boolean[n];
+        while (queue.size() > 0) {
+            int u = nodes[queue.getRootHandle()];
+            queue.extractRoot();
+            done[u] = true;
+            for (int[] edge : adj.get(u)) {
+                int v = edge[0];
+                int alt = dist[u] + edge[1];
+                if (done[v] || alt >= dist[v]) continue;
+                dist[v] = alt;
+                if (handles[v] >= 0) { // v is still queued, its handle has not been released
+                    queue.updateKey(handles[v], alt);
+                } else {
+                    handles[v] = queue.insert(alt);
+                    nodes[handles[v]] = v;
+                }
+            }
+        }
+
+        // Bellman-Ford for reference
+        int[] expected = new int[n];
+        Arrays.fill(expected, Integer.MAX_VALUE);
+        expected[0] = 0;
+        for (int round = 0; round < n; round++) {
+            for (int u = 0; u < n; u++) {
+                if (expected[u] == Integer.MAX_VALUE) continue;
+                for (int[] edge : adj.get(u)) {
+                    expected[edge[0]] = Math.min(expected[edge[0]], expected[u] + edge[1]);
+                }
+            }
+        }
+        Assert.assertArrayEquals(expected, dist);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStaleHandle() {
+        IndexedHeap<Integer> testHeap = new IndexedHeap<>(Heap.Type.MIN);
+        int handle = testHeap.insert(1);
+        testHeap.remove(handle);
+        testHeap.updateKey(handle, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new IndexedHeap<Integer>(Heap.Type.MIN).extractRoot();
+    }
+
+    /**
+     * Returns a random directed graph as adjacency lists of {target, weight}.
+     */
+    private List<List<int[]>> makeRandomGraph(int n, Random gen) {
+        List<List<int[]>> adj = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            List<int[]> edges = new ArrayList<>();
+            for (int j = 0; j < 8; j++) {
+                edges.add(new int[] {gen.nextInt(n), gen.nextInt(100)});
+            }
+            adj.add(edges);
+        }
+        return adj;
+    }
+
+    /**
+     * Returns an array with a random amount of random integer values.
+     */
+    private Integer[] makeRandomIntegerArray() {
+        Random gen = new Random();
+        Integer[] arr = new Integer[gen.nextInt(1000) + 1];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = gen.nextInt(500);
+        }
+        return arr;
+    }
+
+}
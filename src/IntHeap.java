@@ -0,0 +1,239 @@
+/*
+ * Implementation of a heap of primitive ints.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+
+/**
+ * A heap of primitive int keys. Behaves like a Heap of Integers but stores the
+ * keys in an int[] and tracks their positions in a LongPositionIndex, so none
+ * of the heap operations box or allocate (other than to grow the arrays).
+ * @author Spencer Little
+ */
+public class IntHeap {
+
+    /** The type of heap, determines how heapCmp behaves. */
+    private Heap.Type heapType;
+    /** Holds the index of the next open position in the heap array. */
+    private int nextNodeIndex;
+    /** The heap array itself. */
+    private int[] heapArray;
+    /** The current capacity of the heap array. */
+    private int capacity;
+    /** Maps each key to the indices in the heap array that hold it. */
+    private LongPositionIndex positionIndex;
+
+    /**
+     * Initializes an empty heap.
+     */
+    public IntHeap(Heap.Type type) {
+        heapArray = new int[10];
+        capacity = 10;
+        nextNodeIndex = 0;
+        heapType = type;
+        positionIndex = new LongPositionIndex(capacity);
+    }
+
+    /**
+     * Initializes the heap array by heapifying the supplied array.
+     * Assumes array is full.
+     * @param userArray the user provided array to be heapified
+     */
+    public IntHeap(int[] userArray, Heap.Type type) {
+        heapType = type;
+        heapArray = heapify(userArray);
+        capacity = heapArray.length;
+        nextNodeIndex = heapArray.length;
+
+        positionIndex = new LongPositionIndex(capacity);
+        for (int i = 0; i < nextNodeIndex; i++) {
+            positionIndex.add(heapArray[i], i);
+        }
+    }
+
+    /** Returns the heap as an array. */
+    public int[] getHeapArray() {return heapArray;}
+    /** Returns the number of elements in the heap. */
+    public int size() {return nextNodeIndex;}
+    /** Returns true if the heap contains the specified element. O(1). */
+    public boolean contains(int elem) {return positionIndex.first(elem) >= 0;}
+    /** Returns the number of occurrences of elem in the heap. O(1). */
+    public int elementCount(int elem) {return positionIndex.count(elem);}
+
+    /********************************************************************
+     *                          Heap Operations                         *
+     ********************************************************************/
+
+    /**
+     * Inserts an element into the heap.
+     * Complexity: O(log(n)), n = heapArray.length, can be O(n) if resizing is necessary
+     * @param toInsert element to insert
+     */
+    public void insert(int toInsert) {
+        if (nextNodeIndex == capacity) {
+            capacity = capacity + (capacity>>>1) + 1; // increase capacity by 1.5
+            heapArray = Arrays.copyOf(heapArray, capacity);
+            positionIndex.ensureCapacity(capacity);
+        }
+
+        positionIndex.add(toInsert, nextNodeIndex);
+        heapArray[nextNodeIndex] = toInsert;
+        siftUp(nextNodeIndex++);
+    }
+
+    /**
+     * Extracts and returns the next minimum/maximum value.
+     * Complexity: O(log(n))
+     * @throws IllegalStateException if the heap is empty
+     * @return the minimum value
+     */
+    public int extractRoot() {
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        int root = heapArray[0];
+        positionIndex.remove(0);
+        if (--nextNodeIndex > 0) {
+            positionIndex.move(nextNodeIndex, 0);
+            heapArray[0] = heapArray[nextNodeIndex];
+            siftDown(heapArray, 0, nextNodeIndex);
+        }
+        return root;
+    }
+
+    /**
+     * Deletes one occurrence of an element from the heap.
+     * Complexity: O(log(n))
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @param toDelete the element to delete from the heap
+     */
+    public void delete(int toDelete) {
+        int pos = positionIndex.first(toDelete);
+        if (pos < 0) {
+            throw new IllegalArgumentException("Heap does not contain the specified element");
+        }
+
+        positionIndex.remove(pos);
+        if (pos == --nextNodeIndex) return; // deleted the last element, no reordering needed
+
+        positionIndex.move(nextNodeIndex, pos);
+        heapArray[pos] = heapArray[nextNodeIndex];
+
+        if (pos > 0 && heapCmp(heapArray[pos], heapArray[parentOf(pos)])) {
+            siftUp(pos);
+        } else {
+            siftDown(heapArray, pos, nextNodeIndex);
+        }
+    }
+
+    /**
+     * Deletes all occurrences of the given element in the heap.
+     * Complexity: O(k*log(n)), k = number of occurrences
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @param toDelete the element to delete
+     */
+    public void deleteAll(int toDelete) {
+        if (!contains(toDelete)) {
+            throw new IllegalArgumentException("Heap does not contain the specified element");
+        }
+        while (contains(toDelete)) {
+            delete(toDelete);
+        }
+    }
+
+    /**
+     * Returns but does not extract the next minimum/maximum value in the heap.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     * @return the minimum value in the heap
+     */
+    public int getRoot() {
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return heapArray[0];
+    }
+
+    /**
+     * Constructs a heap from an arbitrary array.
+     * Complexity: O(n), n = toHeapify.length
+     * @param toHeapify the array to heapify
+     * @return the heapified array
+     */
+    private int[] heapify(int[] toHeapify) {
+        int start = (toHeapify.length/2) - 1; // the parent of the last node
+        for (int i = start; i >= 0; i--) {
+            siftDown(toHeapify, i, toHeapify.length);
+        }
+        return toHeapify;
+    }
+
+    /**
+     * Moves the key at pos down past every child that belongs above it.
+     * Children are shifted up into the hole the key leaves, and the key and
+     * its position entry are written once at their final slot.
+     * Complexity: O(log(n))
+     * @param arr the array being sifted, the heap array or an array being heapified
+     * @param pos the position of the key to sift
+     * @param elementCount the number of keys in arr
+     */
+    private void siftDown(int[] arr, int pos, int elementCount) {
+        int key = arr[pos];
+        int hole = pos;
+        int child;
+        while ((child = 2*hole + 1) < elementCount) {
+            if (child + 1 < elementCount && heapCmp(arr[child + 1], arr[child])) child++;
+            if (!heapCmp(arr[child], key)) break;
+            if (hole == pos && positionIndex != null) positionIndex.park(pos); // null while heapifying in the constructor
+            moveKey(arr, child, hole);
+            hole = child;
+        }
+        if (hole != pos) placeKey(arr, key, hole);
+    }
+
+    /**
+     * Moves the key at pos up past every ancestor it belongs above, shifting
+     * the ancestors down and writing the key once at its final slot.
+     * Complexity: O(log(n))
+     * @param pos the position of the key to sift
+     */
+    private void siftUp(int pos) {
+        int[] arr = heapArray;
+        int key = arr[pos];
+        int hole = pos;
+        while (hole > 0) {
+            int parent = parentOf(hole);
+            if (!heapCmp(key, arr[parent])) break;
+            if (hole == pos) positionIndex.park(pos);
+            moveKey(arr, parent, hole);
+            hole = parent;
+        }
+        if (hole != pos) placeKey(arr, key, hole);
+    }
+
+    /**
+     * Returns a boolean indicating whether one < two or one > two depending
+     * on whether this is a min or max heap.
+     * @param one the first key
+     * @param two the second key
+     * @return true if one < two false otherwise
+     */
+    private boolean heapCmp(int one, int two) {
+        return heapType == Heap.Type.MIN ? one < two : one > two;
+    }
+
+    /** Moves the key at from, with its position entry, into the hole at to. */
+    private void moveKey(int[] arr, int from, int to) {
+        if (positionIndex != null) positionIndex.move(from, to); // null while heapifying in the constructor
+        arr[to] = arr[from];
+    }
+
+    /** Writes the key being sifted, with its parked position entry, into the hole at pos. */
+    private void placeKey(int[] arr, int key, int pos) {
+        if (positionIndex != null) positionIndex.unpark(pos);
+        arr[pos] = key;
+    }
+
+    /** Returns the index of the parent of a non root node. */
+    private static int parentOf(int childNode) {
+        return (childNode - 1)/2;
+    }
+
+}
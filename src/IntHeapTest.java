@@ -0,0 +1,155 @@
+/*
+ * A set of unit tests covering the int heap class.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class IntHeapTest {
+
+    @Test
+    public void testHeapify() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                IntHeap testHeap = new IntHeap(makeRandomIntArray(), type);
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+        }
+    }
+
+    @Test
+    public void testExtractRoot() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                int[] intArr = makeRandomIntArray();
+                IntHeap testHeap = new IntHeap(intArr.clone(), type);
+                Arrays.sort(intArr);
+                for (int j = 0; j < intArr.length; j++) {
+                    int expected = type == Heap.Type.MIN ? intArr[j] : intArr[intArr.length - 1 - j];
+                    Assert.assertEquals(expected, testHeap.getRoot());
+                    Assert.assertEquals(expected, testHeap.extractRoot());
+                    Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testInsert() {
+        for (Heap.Type type : Heap.Type.values()) {
+            IntHeap testHeap = new IntHeap(type);
+            Random gen = new Random();
+            for (int j = 0; j < 1000; j++) {
+                int x = gen.nextInt(100);
+                testHeap.insert(x);
+                Assert.assertTrue(testHeap.contains(x));
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+            Assert.assertEquals(1000, testHeap.size());
+        }
+    }
+
+    @Test
+    public void testDelete() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                int[] intArr = makeRandomIntArray();
+                IntHeap testHeap = new IntHeap(intArr.clone(), type);
+                for (int j = 0; j < intArr.length; j++) {
+                    testHeap.delete(intArr[j]);
+                    Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteAll() {
+        for (Heap.Type type : Heap.Type.values()) {
+            IntHeap testHeap = new IntHeap(makeRandomIntArray(), type);
+            int x = new Random().nextInt();
+            for (int j = 0; j < 100; j++) {
+                testHeap.insert(x);
+            }
+            Assert.assertTrue(testHeap.elementCount(x) >= 100);
+            testHeap.deleteAll(x);
+            Assert.assertFalse(testHeap.contains(x));
+            Assert.assertEquals(0, testHeap.elementCount(x));
+            Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+        }
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        for (Heap.Type type : Heap.Type.values()) {
+            IntHeap testHeap = new IntHeap(type);
+            Map<Integer, Integer> counts = new HashMap<>();
+            Random gen = new Random();
+            for (int j = 0; j < 10000; j++) {
+                int x = gen.nextInt(20);
+                if (gen.nextInt(3) == 0 && testHeap.contains(x)) {
+                    testHeap.delete(x);
+                    counts.merge(x, -1, Integer::sum);
+                } else if (gen.nextInt(3) == 0 && testHeap.size() > 0) {
+                    counts.merge(testHeap.extractRoot(), -1, Integer::sum);
+                } else {
+                    testHeap.insert(x);
+                    counts.merge(x, 1, Integer::sum);
+                }
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+            for (int x = 0; x < 20; x++) {
+                Assert.assertEquals((int) counts.getOrDefault(x, 0), testHeap.elementCount(x));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new IntHeap(Heap.Type.MIN).extractRoot();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeleteMissing() {
+        IntHeap testHeap = new IntHeap(Heap.Type.MIN);
+        testHeap.insert(1);
+        testHeap.delete(2);
+    }
+
+    /**
+     * Tests the heap condition for each node (that no child precedes its parent).
+     * @param testArr the heap array
+     * @param elementCount the number of elements in the heap
+     * @param type the type of heap
+     * @return a boolean indicating whether the heap property is fulfilled
+     */
+    private boolean isHeap(int[] testArr, int elementCount, Heap.Type type) {
+        for (int i = 1; i < elementCount; i++) {
+            int parent = testArr[(i - 1)/2];
+            if (type == Heap.Type.MIN ? testArr[i] < parent : testArr[i] > parent) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an array with a random amount of random integer values.
+     */
+    private int[] makeRandomIntArray() {
+        Random gen = new Random();
+        int[] arr = new int[gen.nextInt(1000) + 1];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = gen.nextInt(500);
+        }
+        return arr;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * K-way merge of sorted sources built on the heap.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges sorted sources into one sorted sequence. Each source with elements
+ * left has a cursor, holding its current head, in a heap without position
+ * tracking ordered by head. next returns the head of the root cursor, then
+ * advances that cursor in place and hands it back to the heap with
+ * replaceRoot, so each element costs one sift and no index update, instead of
+ * the two sifts and two index updates of an extractRoot and insert of wrapper
+ * objects. A source is dropped with extractRoot once it runs dry.
+ *
+ * Equal elements come out in source order, earlier sources first, so merging
+ * runs cut from one input in order is stable. Sources must be sorted by the
+ * merge order; a source that is not is merged as if it were, without error.
+ * @author Spencer Little
+ */
+public class KWayMerge<T> implements Iterator<T> {
+
+    /** A source and its current head. */
+    private static final class Cursor<T> {
+        /** The element of the source to be returned next. */
+        private T head;
+        /** The rest of the source. */
+        private final Iterator<? extends T> rest;
+        /** The position of the source in the source list, breaks ties between equal heads. */
+        private final int source;
+
+        private Cursor(T head, Iterator<? extends T> rest, int source) {
+            this.head = head;
+            this.rest = rest;
+            this.source = source;
+        }
+    }
+
+    /** The cursors of the sources with elements left, the root holding the next element. */
+    private final Heap<Cursor<T>> cursors;
+
+    /**
+     * Creates a merge of sources sorted by their natural ordering.
+     * @param sources the sorted sources, consumed as the merge advances
+     * @param type MIN for sources in ascending order, MAX for descending
+     */
+    public KWayMerge(List<? extends Iterator<? extends T>> sources, Heap.Type type) {
+        this(sources, Heap.<T>naturalOrder(type));
+    }
+
+    /**
+     * Creates a merge of sources sorted by order.
+     * @param sources the sorted sources, consumed as the merge advances
+     * @param order the order of the sources and of the merge
+     */
+    @SuppressWarnings("unchecked")
+    public KWayMerge(List<? extends Iterator<? extends T>> sources, Comparator<? super T> order) {
+        Comparator<Cursor<T>> byHead = (one, two) -> {
+            int cmp = order.compare(one.head, two.head);
+            return cmp != 0 ? cmp : Integer.compare(one.source, two.source);
+        };
+        Cursor<T>[] heads = (Cursor<T>[]) new Cursor<?>[sources.size()];
+        int count = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            Iterator<? extends T> source = sources.get(i);
+            if (source.hasNext()) heads[count++] = new Cursor<>(source.next(), source, i);
+        }
+        cursors = new Heap<>(Arrays.copyOf(heads, count), byHead, Heap.Option.NO_POSITION_TRACKING);
+    }
+
+    /** Returns the number of sources with elements left. */
+    public int sources() {return cursors.size();}
+
+    @Override
+    public boolean hasNext() {
+        return cursors.size() > 0;
+    }
+
+    /**
+     * Returns the next element of the merge.
+     * Complexity: O(log(k)), k = the number of sources with elements left
+     * @throws NoSuchElementException if every source is exhausted
+     * @return the least head of the sources
+     */
+    @Override
+    public T next() {
+        if (cursors.size() == 0) throw new NoSuchElementException();
+        Cursor<T> cursor = cursors.getRoot();
+        T next = cursor.head;
+        if (cursor.rest.hasNext()) {
+            cursor.head = cursor.rest.next();
+            cursors.replaceRoot(cursor);
+        } else {
+            cursor.head = null;
+            cursors.extractRoot();
+        }
+        return next;
+    }
+}
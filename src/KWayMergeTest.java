@@ -0,0 +1,73 @@
+/*
+ * A set of unit tests covering the k-way merge.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class KWayMergeTest {
+
+    @Test
+    public void testMerge() {
+        Random gen = new Random();
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int k : new int[] {0, 1, 2, 7, 300}) {
+                List<Iterator<Integer>> sources = new ArrayList<>();
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < k; i++) {
+                    List<Integer> run = new ArrayList<>();
+                    int length = gen.nextInt(50); // some sources are empty
+                    for (int j = 0; j < length; j++) {
+                        run.add(gen.nextInt(1000));
+                    }
+                    run.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+                    expected.addAll(run);
+                    sources.add(run.iterator());
+                }
+                expected.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+
+                KWayMerge<Integer> merge = new KWayMerge<>(sources, type);
+                List<Integer> merged = new ArrayList<>();
+                while (merge.hasNext()) {
+                    merged.add(merge.next());
+                }
+                Assert.assertEquals(expected, merged);
+                Assert.assertEquals(0, merge.sources());
+            }
+        }
+    }
+
+    @Test
+    public void testEqualElementsInSourceOrder() {
+        List<Iterator<int[]>> sources = new ArrayList<>();
+        for (int source = 0; source < 5; source++) {
+            List<int[]> run = new ArrayList<>();
+            for (int key = 0; key < 10; key++) {
+                run.add(new int[] {key, source});
+            }
+            sources.add(run.iterator());
+        }
+        KWayMerge<int[]> merge = new KWayMerge<>(sources, Comparator.comparingInt((int[] e) -> e[0]));
+        for (int key = 0; key < 10; key++) {
+            for (int source = 0; source < 5; source++) {
+                Assert.assertArrayEquals(new int[] {key, source}, merge.next());
+            }
+        }
+        Assert.assertFalse(merge.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextExhausted() {
+        KWayMerge<Integer> merge = new KWayMerge<>(List.of(List.of(1).iterator()), Heap.Type.MIN);
+        Assert.assertEquals(Integer.valueOf(1), merge.next());
+        merge.next();
+    }
+
+}
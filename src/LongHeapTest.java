@@ -0,0 +1,179 @@
+/*
+ * A set of unit tests covering the long heap class.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class LongHeapTest {
+
+    @Test
+    public void testHeapify() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                LongHeap testHeap = new LongHeap(makeRandomLongArray(), type);
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+        }
+    }
+
+    @Test
+    public void testExtractRoot() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                long[] longArr = makeRandomLongArray();
+                LongHeap testHeap = new LongHeap(longArr.clone(), type);
+                Arrays.sort(longArr);
+                for (int j = 0; j < longArr.length; j++) {
+                    long expected = type == Heap.Type.MIN ? longArr[j] : longArr[longArr.length - 1 - j];
+                    Assert.assertEquals(expected, testHeap.getRoot());
+                    Assert.assertEquals(expected, testHeap.extractRoot());
+                    Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testInsert() {
+        for (Heap.Type type : Heap.Type.values()) {
+            LongHeap testHeap = new LongHeap(type);
+            Random gen = new Random();
+            for (int j = 0; j < 1000; j++) {
+                long x = gen.nextInt(100);
+                testHeap.insert(x);
+                Assert.assertTrue(testHeap.contains(x));
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+            Assert.assertEquals(1000, testHeap.size());
+        }
+    }
+
+    @Test
+    public void testDelete() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int i = 0; i < 100; i++) {
+                long[] longArr = makeRandomLongArray();
+                LongHeap testHeap = new LongHeap(longArr.clone(), type);
+                for (int j = 0; j < longArr.length; j++) {
+                    testHeap.delete(longArr[j]);
+                    Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteAll() {
+        for (Heap.Type type : Heap.Type.values()) {
+            LongHeap testHeap = new LongHeap(makeRandomLongArray(), type);
+            long x = new Random().nextLong();
+            for (int j = 0; j < 100; j++) {
+                testHeap.insert(x);
+            }
+            Assert.assertTrue(testHeap.elementCount(x) >= 100);
+            testHeap.deleteAll(x);
+            Assert.assertFalse(testHeap.contains(x));
+            Assert.assertEquals(0, testHeap.elementCount(x));
+            Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+        }
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        for (Heap.Type type : Heap.Type.values()) {
+            LongHeap testHeap = new LongHeap(type);
+            Map<Long, Integer> counts = new HashMap<>();
+            Random gen = new Random();
+            for (int j = 0; j < 10000; j++) {
+                long x = (long) gen.nextInt(20);
+                if (gen.nextInt(3) == 0 && testHeap.contains(x)) {
+                    testHeap.delete(x);
+                    counts.merge(x, -1, Integer::sum);
+                } else if (gen.nextInt(3) == 0 && testHeap.size() > 0) {
+                    counts.merge(testHeap.extractRoot(), -1, Integer::sum);
+                } else {
+                    testHeap.insert(x);
+                    counts.merge(x, 1, Integer::sum);
+                }
+                Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+            }
+            for (long x = 0; x < 20; x++) {
+                Assert.assertEquals((int) counts.getOrDefault(x, 0), testHeap.elementCount(x));
+            }
+        }
+    }
+
+    @Test
+    public void testDistinctKeyStream() {
+        for (Heap.Type type : Heap.Type.values()) {
+            LongHeap testHeap = new LongHeap(type);
+            Deque<Long> window = new ArrayDeque<>();
+            Random gen = new Random();
+            for (long x = 0; x < 50000; x++) { // keeps tombstoning the table without growing it
+                long key = x * 1000003 + gen.nextInt(1000);
+                testHeap.insert(key);
+                window.add(key);
+                if (window.size() > 40) {
+                    long victim = window.poll();
+                    testHeap.delete(victim);
+                    Assert.assertFalse(testHeap.contains(victim));
+                }
+            }
+            Assert.assertEquals(window.size(), testHeap.size());
+            for (Long key : window) {
+                Assert.assertEquals(1, testHeap.elementCount(key));
+            }
+            Assert.assertTrue(isHeap(testHeap.getHeapArray(), testHeap.size(), type));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new LongHeap(Heap.Type.MIN).extractRoot();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeleteMissing() {
+        LongHeap testHeap = new LongHeap(Heap.Type.MIN);
+        testHeap.insert(1);
+        testHeap.delete(2);
+    }
+
+    /**
+     * Tests the heap condition for each node (that no child precedes its parent).
+     * @param testArr the heap array
+     * @param elementCount the number of elements in the heap
+     * @param type the type of heap
+     * @return a boolean indicating whether the heap property is fulfilled
+     */
+    private boolean isHeap(long[] testArr, int elementCount, Heap.Type type) {
+        for (int i = 1; i < elementCount; i++) {
+            long parent = testArr[(i - 1)/2];
+            if (type == Heap.Type.MIN ? testArr[i] < parent : testArr[i] > parent) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an array with a random amount of random long values.
+     */
+    private long[] makeRandomLongArray() {
+        Random gen = new Random();
+        long[] arr = new long[gen.nextInt(1000) + 1];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = gen.nextInt(500) + ((long) gen.nextInt(2) << 40);
+        }
+        return arr;
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Position index used by the primitive heaps.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+
+/**
+ * An open addressing multimap from primitive keys to the heap array positions
+ * that hold that key. Keys are stored as longs, so int keys are widened and
+ * double keys are stored by their bit pattern (the same equality Double.equals
+ * uses). Positions holding an equal key are chained in an intrusive doubly
+ * linked list indexed by position, so moving a key to another position is O(1)
+ * no matter how many duplicates a key has, and nothing is allocated unless the
+ * table or the position arrays have to grow: tombstones are purged in place.
+ *
+ * One position past the last trackable one is a parking slot: park moves the
+ * entry of a position there and unpark moves it back to any free position,
+ * so a sift can empty the slot of the key it is moving and fill it with the
+ * keys moving the other way. Nothing may be parked while the number of
+ * trackable positions changes.
+ * @author Spencer Little
+ */
+final class LongPositionIndex {
+
+    /** Marks a table cell that has never held a key. */
+    private static final int EMPTY = -1;
+    /** Marks a table cell whose key has been removed. */
+    private static final int TOMBSTONE = -2;
+    /** Marks the end of a position list. */
+    private static final int NIL = -1;
+
+    /** The keys stored in the table. */
+    private long[] keys;
+    /** The first position holding each key, or EMPTY/TOMBSTONE. */
+    private int[] heads;
+    /** The number of positions holding each key. */
+    private int[] counts;
+    /** The number of distinct keys in the table. */
+    private int size;
+    /** The number of tombstoned cells in the table. */
+    private int tombstones;
+    /** The next position in the same key's list, indexed by position. */
+    private int[] next;
+    /** The previous position in the same key's list, indexed by position. */
+    private int[] prev;
+    /** The table cell of the key held at each position. */
+    private int[] cellOf;
+
+    /**
+     * Creates an index able to track positions in [0, positions).
+     * @param positions the initial number of trackable positions
+     */
+    LongPositionIndex(int positions) {
+        int tableLength = tableSizeFor(positions);
+        keys = new long[tableLength];
+        heads = new int[tableLength];
+        counts = new int[tableLength];
+        Arrays.fill(heads, EMPTY);
+        next = new int[positions + 1];
+        prev = new int[positions + 1];
+        cellOf = new int[positions + 1];
+    }
+
+    /**
+     * Grows the per position arrays so positions in [0, positions) can be tracked.
+     * @param positions the required number of trackable positions
+     */
+    void ensureCapacity(int positions) {
+        if (positions + 1 > next.length) {
+            next = Arrays.copyOf(next, positions + 1);
+            prev = Arrays.copyOf(prev, positions + 1);
+            cellOf = Arrays.copyOf(cellOf, positions + 1);
+        }
+    }
+
+    /**
+     * Returns a position holding key, or -1 if no position holds it.
+     * @param key the key to search for
+     * @return a position holding key or -1
+     */
+    int first(long key) {
+        int cell = find(key);
+        return cell < 0 ? -1 : heads[cell];
+    }
+
+    /**
+     * Returns the number of positions holding key.
+     * @param key the key to search for
+     * @return the number of positions holding key
+     */
+    int count(long key) {
+        int cell = find(key);
+        return cell < 0 ? 0 : counts[cell];
+    }
+
+    /**
+     * Records that pos now holds key. pos must not currently be tracked.
+     * @param key the key stored at pos
+     * @param pos the position in the heap array
+     */
+    void add(long key, int pos) {
+        int cell = find(key);
+        if (cell < 0) {
+            if (size + tombstones + 1 > (keys.length >>> 1) + (keys.length >>> 2)) {
+                rehash();
+            }
+            cell = claim(key);
+        }
+        int head = heads[cell];
+        next[pos] = head;
+        prev[pos] = NIL;
+        if (head != NIL) prev[head] = pos;
+        heads[cell] = pos;
+        counts[cell]++;
+        cellOf[pos] = cell;
+    }
+
+    /**
+     * Stops tracking pos, removing its key from the table if this was the last
+     * position holding it.
+     * @param pos the position to remove
+     */
+    void remove(int pos) {
+        int cell = cellOf[pos];
+        unlink(cell, pos);
+        if (--counts[cell] == 0) {
+            heads[cell] = TOMBSTONE;
+            size--;
+            tombstones++;
+        }
+    }
+
+    /**
+     * Records that the key held at from has moved to the untracked position to.
+     * @param from the position the key is moving from
+     * @param to the position the key is moving to
+     */
+    void move(int from, int to) {
+        int cell = cellOf[from];
+        relink(cell, from, to);
+        next[to] = next[from];
+        prev[to] = prev[from];
+        cellOf[to] = cell;
+    }
+
+    /**
+     * Moves the entry of pos to the parking slot, leaving pos untracked.
+     * @param pos the position to park
+     */
+    void park(int pos) {
+        move(pos, next.length - 1);
+    }
+
+    /**
+     * Moves the parked entry to the untracked position to.
+     * @param to the position the parked key now occupies
+     */
+    void unpark(int to) {
+        move(next.length - 1, to);
+    }
+
+    /**
+     * Points the neighbours of pos (and the head of the list if necessary) at
+     * newPos instead. Does not touch the entries of pos or newPos themselves.
+     */
+    private void relink(int cell, int pos, int newPos) {
+        if (prev[pos] != NIL) next[prev[pos]] = newPos;
+        else heads[cell] = newPos;
+        if (next[pos] != NIL) prev[next[pos]] = newPos;
+    }
+
+    /** Unlinks pos from the list of positions for cell. */
+    private void unlink(int cell, int pos) {
+        if (prev[pos] != NIL) next[prev[pos]] = next[pos];
+        else heads[cell] = next[pos];
+        if (next[pos] != NIL) prev[next[pos]] = prev[pos];
+    }
+
+    /** Returns the live cell holding key, or -1 if there is none. */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int cell = hash(key) & mask;
+        while (heads[cell] != EMPTY) {
+            if (heads[cell] != TOMBSTONE && keys[cell] == key) return cell;
+            cell = (cell + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Claims a free cell for key, which must not already be in the table. */
+    private int claim(long key) {
+        int mask = keys.length - 1;
+        int cell = hash(key) & mask;
+        while (heads[cell] >= 0) {
+            cell = (cell + 1) & mask;
+        }
+        if (heads[cell] == TOMBSTONE) tombstones--;
+        keys[cell] = key;
+        heads[cell] = NIL;
+        counts[cell] = 0;
+        size++;
+        return cell;
+    }
+
+    /**
+     * Rebuilds the table sized for the current number of distinct keys,
+     * dropping tombstones. The table is rebuilt in place unless it has to
+     * grow, so a stream of distinct keys does not allocate.
+     * Complexity: O(n), n = number of tracked positions
+     */
+    private void rehash() {
+        int tableLength = tableSizeFor(size << 1);
+        if (tableLength <= keys.length) {
+            purgeTombstones();
+            return;
+        }
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        int[] oldCounts = counts;
+        keys = new long[tableLength];
+        heads = new int[tableLength];
+        counts = new int[tableLength];
+        Arrays.fill(heads, EMPTY);
+        size = 0;
+        tombstones = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] < 0) continue; // empty or tombstone
+            int cell = claim(oldKeys[i]);
+            heads[cell] = oldHeads[i];
+            counts[cell] = oldCounts[i];
+            for (int pos = heads[cell]; pos != NIL; pos = next[pos]) {
+                cellOf[pos] = cell;
+            }
+        }
+    }
+
+    /**
+     * Empties the tombstoned cells and moves every key back along its probe
+     * path. Keys are visited in probe order starting after a cell that was
+     * empty before the purge, so no probe path wraps past the start and every
+     * cell a key probes past holds a key that has already been moved.
+     * Complexity: O(m), m = the table length
+     */
+    private void purgeTombstones() {
+        int mask = keys.length - 1;
+        int start = 0;
+        while (heads[start] != EMPTY) start++; // exists, the table is never full
+        for (int cell = 0; cell < heads.length; cell++) {
+            if (heads[cell] == TOMBSTONE) heads[cell] = EMPTY;
+        }
+        tombstones = 0;
+
+        for (int i = 1; i < keys.length; i++) {
+            int from = (start + i) & mask;
+            if (heads[from] < 0) continue;
+            int cell = hash(keys[from]) & mask;
+            while (cell != from && heads[cell] >= 0) {
+                cell = (cell + 1) & mask;
+            }
+            if (cell == from) continue;
+            keys[cell] = keys[from];
+            heads[cell] = heads[from];
+            counts[cell] = counts[from];
+            heads[from] = EMPTY;
+            for (int pos = heads[cell]; pos != NIL; pos = next[pos]) {
+                cellOf[pos] = cell;
+            }
+        }
+    }
+
+    /** Returns the power of two table length used for expected distinct keys. */
+    private static int tableSizeFor(int expected) {
+        int length = 16;
+        while (length < expected + (expected >>> 1)) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    /** Spreads the bits of key (the finalizer of MurmurHash3). */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9e53a0a2ca3L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Implementation of a heap of long key, long payload records in a memory-mapped file.
+ * Author: Spencer Little
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A binary heap of fixed width records, a long key and a long payload, stored
+ * off the JVM heap in a memory-mapped file. Meant for queues of hundreds of
+ * millions of records: the records cost the garbage collector nothing, the
+ * operating system pages them in and out as needed, and the heap survives a
+ * restart, open maps an existing file back in without rebuilding it.
+ *
+ * The file starts with a HEADER_BYTES header holding the heap type, the
+ * region size and the number of records, followed by the heap array as
+ * consecutive 16 byte little endian records, key then payload. A
+ * MappedByteBuffer is limited to 2 GiB, so the array is mapped as a series of
+ * regions of 2^regionShift records. Growing extends the file and remaps only
+ * the last, partially mapped region and any new ones.
+ *
+ * insert uses the same sift up as Heap, extractRoot the same bottom-up sift
+ * and the array constructor the same bottom-up heapify. Positions are not
+ * tracked, so there is no delete or contains. Writes reach the file through
+ * the page cache whenever the operating system flushes it; force writes them
+ * out synchronously, after which the file survives a crash of the machine.
+ * A heap is not thread safe.
+ * @author Spencer Little
+ */
+public class MappedHeap implements AutoCloseable {
+
+    /** Identifies a heap file, the ASCII bytes "MAPHEAP1". */
+    private static final long MAGIC = 0x315041454850414dL;
+    /** The size of the header preceding the heap array. */
+    private static final int HEADER_BYTES = 64;
+    /** Header offsets of the heap type ordinal, the region shift and the number of records. */
+    private static final int TYPE_OFFSET = 8, REGION_SHIFT_OFFSET = 12, SIZE_OFFSET = 16;
+    /** The size of a record, a long key and a long payload. */
+    private static final int RECORD_BYTES = 16;
+    /** The default region size, 2^26 records or 1 GiB, the largest power of two a MappedByteBuffer can hold. */
+    private static final int DEFAULT_REGION_SHIFT = 26;
+    /** The capacity of a new heap file in records. */
+    private static final long DEFAULT_CAPACITY = 1024;
+
+    /** The type of heap, determines how heapCmp behaves. */
+    private final Heap.Type heapType;
+    /** The file holding the heap. */
+    private final FileChannel channel;
+    /** The mapped header. */
+    private final MappedByteBuffer header;
+    /** Each region holds 2^regionShift records. */
+    private final int regionShift;
+    /** The mapped regions of the heap array, the last one possibly partially mapped. */
+    private MappedByteBuffer[] regions;
+    /** The number of records in the heap, mirrored in the header. */
+    private long nextNodeIndex;
+    /** The number of records the mapped regions hold. */
+    private long capacity;
+
+    private MappedHeap(FileChannel channel, Heap.Type type, int regionShift, long size) throws IOException {
+        this.channel = channel;
+        this.heapType = type;
+        this.regionShift = regionShift;
+        header = map(0, HEADER_BYTES);
+        regions = new MappedByteBuffer[0];
+        nextNodeIndex = size;
+        long fileRecords = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        mapRecords(Math.max(fileRecords, Math.max(size, DEFAULT_CAPACITY)));
+    }
+
+    /**
+     * Creates an empty heap in file, replacing anything the file held.
+     * @throws IOException if the file cannot be created or mapped
+     * @param file the file to hold the heap
+     * @param type the type of heap
+     * @return the heap, to be closed by the caller
+     */
+    public static MappedHeap create(Path file, Heap.Type type) throws IOException {
+        return create(file, type, DEFAULT_REGION_SHIFT);
+    }
+
+    /**
+     * Creates a heap in file by heapifying the records keys[i], payloads[i],
+     * replacing anything the file held.
+     * Complexity: O(n), n = keys.length
+     * @throws IOException if the file cannot be created or mapped
+     * @throws IllegalArgumentException if keys and payloads differ in length
+     * @param file the file to hold the heap
+     * @param type the type of heap
+     * @param keys the keys of the records
+     * @param payloads the payloads of the records
+     * @return the heap, to be closed by the caller
+     */
+    public static MappedHeap create(Path file, Heap.Type type, long[] keys, long[] payloads) throws IOException {
+        if (keys.length != payloads.length) {
+            throw new IllegalArgumentException("Got " + keys.length + " keys but " + payloads.length + " payloads");
+        }
+        MappedHeap heap = create(file, type);
+        try {
+            heap.reserve(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                heap.setRecord(i, keys[i], payloads[i]);
+            }
+            heap.setSize(keys.length);
+            heap.heapify();
+            return heap;
+        } catch (RuntimeException e) {
+            heap.close();
+            throw e;
+        }
+    }
+
+    /** Creates an empty heap with regions of 2^regionShift records, small regions exercise remapping in tests. */
+    static MappedHeap create(Path file, Heap.Type type, int regionShift) throws IOException {
+        if (regionShift < 1 || regionShift > DEFAULT_REGION_SHIFT) {
+            throw new IllegalArgumentException("Region shift must be in [1, " + DEFAULT_REGION_SHIFT + "], got " + regionShift);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            MappedHeap heap = new MappedHeap(channel, type, regionShift, 0);
+            heap.header.putLong(0, MAGIC);
+            heap.header.putInt(TYPE_OFFSET, type.ordinal());
+            heap.header.putInt(REGION_SHIFT_OFFSET, regionShift);
+            heap.setSize(0);
+            return heap;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a heap file written by a previous MappedHeap back in. Nothing is
+     * rebuilt, the records are used where they lie.
+     * @throws IOException if the file cannot be opened or mapped, or does not hold a heap
+     * @param file the heap file
+     * @return the heap, to be closed by the caller
+     */
+    public static MappedHeap open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) throw new IOException(file + " is not a heap file");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            int type = header.getInt(TYPE_OFFSET);
+            int regionShift = header.getInt(REGION_SHIFT_OFFSET);
+            long size = header.getLong(SIZE_OFFSET);
+            if (header.getLong(0) != MAGIC || type < 0 || type >= Heap.Type.values().length
+                    || regionShift < 1 || regionShift > DEFAULT_REGION_SHIFT
+                    || size < 0 || size > (channel.size() - HEADER_BYTES) / RECORD_BYTES) {
+                throw new IOException(file + " is not a heap file");
+            }
+            return new MappedHeap(channel, Heap.Type.values()[type], regionShift, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Returns the number of records in the heap. */
+    public long size() {return nextNodeIndex;}
+    /** Returns the type of the heap. */
+    public Heap.Type getType() {return heapType;}
+
+    /********************************************************************
+     *                          Heap Operations                         *
+     ********************************************************************/
+
+    /**
+     * Inserts a record into the heap.
+     * Complexity: O(log(n)), can be O(n) if the file has to grow
+     * @throws UncheckedIOException if the file cannot grow
+     * @param key the key the record is ordered by
+     * @param payload the payload of the record
+     */
+    public void insert(long key, long payload) {
+        if (nextNodeIndex == capacity) reserve(1);
+        long hole = nextNodeIndex;
+        while (hole > 0) {
+            long parent = (hole - 1) >>> 1;
+            long parentKey = key(parent);
+            if (!heapCmp(key, parentKey)) break;
+            setRecord(hole, parentKey, payload(parent));
+            hole = parent;
+        }
+        setRecord(hole, key, payload);
+        setSize(nextNodeIndex + 1);
+    }
+
+    /**
+     * Returns but does not extract the key of the next minimum/maximum record.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     * @return the key of the root
+     */
+    public long getRoot() {
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return key(0);
+    }
+
+    /**
+     * Returns the payload of the next minimum/maximum record.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     * @return the payload of the root
+     */
+    public long getRootPayload() {
+        if (nextNodeIndex == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return payload(0);
+    }
+
+    /**
+     * Extracts the next minimum/maximum record and returns its key, read
+     * getRootPayload first for its payload. The hole left at the root moves
+     * down the path of best children to a leaf and the last record is sifted
+     * up from there, as in Heap.
+     * Complexity: O(log(n))
+     * @throws IllegalStateException if the heap is empty
+     * @return the key of the extracted record
+     */
+    public long extractRoot() {
+        long root = getRoot();
+        long last = nextNodeIndex - 1;
+        setSize(last);
+        if (last == 0) return root;
+        long key = key(last);
+        long payload = payload(last);
+        long hole = 0;
+        long child;
+        while ((child = 2*hole + 1) < last) {
+            if (child + 1 < last && heapCmp(key(child + 1), key(child))) child++;
+            setRecord(hole, key(child), payload(child));
+            hole = child;
+        }
+        while (hole > 0) {
+            long parent = (hole - 1) >>> 1;
+            long parentKey = key(parent);
+            if (!heapCmp(key, parentKey)) break;
+            setRecord(hole, parentKey, payload(parent));
+            hole = parent;
+        }
+        setRecord(hole, key, payload);
+        return root;
+    }
+
+    /** Removes every record, the file keeps its size. */
+    public void clear() {
+        setSize(0);
+    }
+
+    /**
+     * Writes every change to the records and the header out to the file.
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void force() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Closes the file. Changes not yet forced still reach it through the page
+     * cache unless the machine crashes. The mappings are released once they
+     * are garbage collected.
+     * @throws UncheckedIOException if the file cannot be closed
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /********************************************************************
+     *                          Helper Methods                          *
+     ********************************************************************/
+
+    /**
+     * Restores the heap property over the records in the file by sifting down
+     * every parent, last to first.
+     * Complexity: O(n)
+     */
+    private void heapify() {
+        for (long pos = nextNodeIndex/2 - 1; pos >= 0; pos--) {
+            siftDown(pos);
+        }
+    }
+
+    /**
+     * Moves the record at pos down past every child that belongs above it.
+     * Complexity: O(log(n))
+     */
+    private void siftDown(long pos) {
+        long key = key(pos);
+        long payload = payload(pos);
+        long child;
+        while ((child = 2*pos + 1) < nextNodeIndex) {
+            if (child + 1 < nextNodeIndex && heapCmp(key(child + 1), key(child))) child++;
+            long childKey = key(child);
+            if (!heapCmp(childKey, key)) break;
+            setRecord(pos, childKey, payload(child));
+            pos = child;
+        }
+        setRecord(pos, key, payload);
+    }
+
+    /**
+     * Makes room for count more records, growing the file by half its
+     * capacity or more.
+     * @throws UncheckedIOException if the file cannot grow
+     */
+    private void reserve(long count) {
+        long needed = nextNodeIndex + count;
+        if (needed <= capacity) return;
+        try {
+            mapRecords(Math.max(needed, capacity + (capacity>>>1) + 1));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps the first records records of the heap array, extending the file
+     * if it is shorter. Regions that are already mapped in full are kept.
+     */
+    private void mapRecords(long records) throws IOException {
+        long regionRecords = 1L << regionShift;
+        int regionCount = (int) ((records + regionRecords - 1) >>> regionShift);
+        int firstChanged = (int) (capacity >>> regionShift); // the partially mapped region, if any
+        regions = Arrays.copyOf(regions, regionCount);
+        for (int r = firstChanged; r < regionCount; r++) {
+            long first = (long) r << regionShift;
+            long length = Math.min(regionRecords, records - first);
+            regions[r] = map(HEADER_BYTES + first*RECORD_BYTES, length*RECORD_BYTES);
+        }
+        capacity = records;
+    }
+
+    /** Maps length bytes of the file from offset, extending the file if needed. */
+    private MappedByteBuffer map(long offset, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /** Returns the key of the record at pos. */
+    private long key(long pos) {
+        return regions[(int) (pos >>> regionShift)].getLong(offsetOf(pos));
+    }
+
+    /** Returns the payload of the record at pos. */
+    private long payload(long pos) {
+        return regions[(int) (pos >>> regionShift)].getLong(offsetOf(pos) + Long.BYTES);
+    }
+
+    /** Writes a record to pos. */
+    private void setRecord(long pos, long key, long payload) {
+        MappedByteBuffer region = regions[(int) (pos >>> regionShift)];
+        int offset = offsetOf(pos);
+        region.putLong(offset, key);
+        region.putLong(offset + Long.BYTES, payload);
+    }
+
+    /** Returns the byte offset of the record at pos within its region. */
+    private int offsetOf(long pos) {
+        return (int) (pos & ((1L << regionShift) - 1)) * RECORD_BYTES;
+    }
+
+    /** Sets the number of records, in the header as well. */
+    private void setSize(long size) {
+        nextNodeIndex = size;
+        header.putLong(SIZE_OFFSET, size);
+    }
+
+    /**
+     * Returns a boolean indicating whether one < two or one > two depending
+     * on whether this is a min or max heap.
+     * @param one the first key
+     * @param two the second key
+     * @return true if one < two false otherwise
+     */
+    private boolean heapCmp(long one, long two) {
+        return heapType == Heap.Type.MIN ? one < two : one > two;
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * A set of unit tests covering the memory-mapped heap.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class MappedHeapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testInsertExtract() throws IOException {
+        for (Heap.Type type : Heap.Type.values()) {
+            Path file = folder.newFile().toPath();
+            PriorityQueue<Long> expected = new PriorityQueue<>(
+                    type == Heap.Type.MIN ? Comparator.<Long>naturalOrder() : Comparator.<Long>reverseOrder());
+            Random gen = new Random();
+            try (MappedHeap testHeap = MappedHeap.create(file, type, 4)) { // regions of 16 records
+                for (int i = 0; i < 20000; i++) {
+                    if (gen.nextInt(3) > 0 || expected.isEmpty()) {
+                        long key = gen.nextInt(5000);
+                        testHeap.insert(key, ~key);
+                        expected.add(key);
+                    } else {
+                        Assert.assertEquals(~testHeap.getRoot(), testHeap.getRootPayload());
+                        Assert.assertEquals(expected.poll().longValue(), testHeap.extractRoot());
+                    }
+                    Assert.assertEquals(expected.size(), testHeap.size());
+                }
+                while (!expected.isEmpty()) {
+                    Assert.assertEquals(expected.poll().longValue(), testHeap.extractRoot());
+                }
+                Assert.assertEquals(0, testHeap.size());
+            }
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path file = folder.newFile().toPath();
+        List<Long> keys = new ArrayList<>();
+        Random gen = new Random();
+        try (MappedHeap testHeap = MappedHeap.create(file, Heap.Type.MAX, 6)) {
+            for (int i = 0; i < 3000; i++) {
+                long key = gen.nextLong();
+                testHeap.insert(key, i);
+                keys.add(key);
+            }
+            testHeap.force();
+        }
+        keys.sort(Comparator.reverseOrder());
+        try (MappedHeap testHeap = MappedHeap.open(file)) {
+            Assert.assertEquals(Heap.Type.MAX, testHeap.getType());
+            Assert.assertEquals(3000, testHeap.size());
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(keys.remove(0).longValue(), testHeap.extractRoot());
+            }
+            for (int i = 0; i < 500; i++) { // grows the reopened file past its mapped regions
+                long key = gen.nextLong();
+                testHeap.insert(key, i);
+                keys.add(key);
+            }
+        }
+        keys.sort(Comparator.reverseOrder());
+        try (MappedHeap testHeap = MappedHeap.open(file)) {
+            Assert.assertEquals(keys.size(), testHeap.size());
+            for (Long key : keys) {
+                Assert.assertEquals(key.longValue(), testHeap.extractRoot());
+            }
+        }
+    }
+
+    @Test
+    public void testHeapify() throws IOException {
+        for (int n : new int[] {0, 1, 2, 7, 1025, 5000}) {
+            long[] keys = new long[n];
+            long[] payloads = new long[n];
+            Random gen = new Random();
+            for (int i = 0; i < n; i++) {
+                keys[i] = gen.nextInt(n + 1);
+                payloads[i] = keys[i] * 3;
+            }
+            try (MappedHeap testHeap = MappedHeap.create(folder.newFile().toPath(), Heap.Type.MIN, keys, payloads)) {
+                Arrays.sort(keys);
+                Assert.assertEquals(n, testHeap.size());
+                for (long key : keys) {
+                    Assert.assertEquals(key * 3, testHeap.getRootPayload());
+                    Assert.assertEquals(key, testHeap.extractRoot());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOpenNotHeapFile() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[100]);
+        try {
+            MappedHeap.open(file);
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractRootEmpty() throws IOException {
+        try (MappedHeap testHeap = MappedHeap.create(folder.newFile().toPath(), Heap.Type.MIN)) {
+            testHeap.insert(1, 1);
+            testHeap.clear();
+            testHeap.extractRoot();
+        }
+    }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * Implementation of a double ended min-max heap data structure.
+ * Author: Spencer Little
+ */
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A min-max heap: a binary heap whose even levels (the root's included) are
+ * ordered like a min heap and whose odd levels are ordered like a max heap,
+ * so every element on an even level is the minimum of its subtree and every
+ * element on an odd level the maximum. The minimum is the root and the
+ * maximum is one of its children, so both ends are available in O(1) and
+ * extractable in O(log(n)) from a single array, where a Heap of each type
+ * would hold every element twice and have to delete it from both.
+ *
+ * As a PriorityHeap the root is the minimum: getRoot and extractRoot are
+ * getMin and extractMin. Like in Heap, an index of element positions makes
+ * contains, elementCount and delete by value cheap, and can be disabled with
+ * Heap.Option.NO_POSITION_TRACKING.
+ * @author Spencer Little
+ */
+public class MinMaxHeap<T> implements PriorityHeap<T> {
+
+    /** The capacity of a heap created without an array. */
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /** Orders the elements, the minimum is the least element according to it. */
+    private Comparator<? super T> comparator;
+    /** The elements of the heap, in min-max heap order. */
+    private T[] heapArray;
+    /** The number of elements in the heap. */
+    private int size;
+    /** The positions holding each element. Null if position tracking is disabled. */
+    private PositionIndex<T> positionIndex;
+
+    /**
+     * Initializes an empty heap. The elements are ordered by their natural
+     * ordering and must implement Comparable.
+     * @param options optional behaviours to enable, only NO_POSITION_TRACKING is supported
+     * @throws IllegalArgumentException if an unsupported option is passed
+     */
+    public MinMaxHeap(Class<T> t, Heap.Option... options) {
+        this(t, Heap.naturalOrder(Heap.Type.MIN), options);
+    }
+
+    /**
+     * Initializes an empty heap ordered by comparator.
+     * @param comparator the ordering of the elements, the least element is the minimum
+     * @param options optional behaviours to enable, only NO_POSITION_TRACKING is supported
+     * @throws IllegalArgumentException if an unsupported option is passed
+     */
+    @SuppressWarnings("unchecked")
+    public MinMaxHeap(Class<T> t, Comparator<? super T> comparator, Heap.Option... options) {
+        this.comparator = comparator;
+        heapArray = (T[]) Array.newInstance(t, DEFAULT_CAPACITY);
+        if (isTracked(options)) positionIndex = new PositionIndex<>(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes the heap array by heapifying the supplied array.
+     * Assumes array is full. The elements are ordered by their natural
+     * ordering and must implement Comparable.
+     * @param userArray the user provided array to be heapified
+     * @param options optional behaviours to enable, only NO_POSITION_TRACKING is supported
+     * @throws IllegalArgumentException if an unsupported option is passed
+     */
+    public MinMaxHeap(T[] userArray, Heap.Option... options) {
+        this(userArray, Heap.naturalOrder(Heap.Type.MIN), options);
+    }
+
+    /**
+     * Initializes a heap ordered by comparator by heapifying the supplied
+     * array. Assumes array is full.
+     * Complexity: O(n)
+     * @param userArray the user provided array to be heapified
+     * @param comparator the ordering of the elements, the least element is the minimum
+     * @param options optional behaviours to enable, only NO_POSITION_TRACKING is supported
+     * @throws IllegalArgumentException if an unsupported option is passed
+     */
+    public MinMaxHeap(T[] userArray, Comparator<? super T> comparator, Heap.Option... options) {
+        this.comparator = comparator;
+        heapArray = userArray;
+        size = userArray.length;
+        for (int i = size/2 - 1; i >= 0; i--) {
+            trickleDown(i);
+        }
+        if (isTracked(options)) {
+            positionIndex = new PositionIndex<>(size);
+            for (int i = 0; i < size; i++) {
+                positionIndex.add(heapArray[i], i);
+            }
+        }
+    }
+
+    /** Returns the heap as an array. */
+    public T[] getHeapArray() {return heapArray;}
+    /** Returns the number of elements in the heap. */
+    public int size() {return size;}
+    /** Returns the ordering of the heap, the minimum compares least. */
+    public Comparator<? super T> comparator() {return comparator;}
+    /** Returns true if the heap contains the specified element. O(1). */
+    public boolean contains(T elem) {return trackedPositions().first(elem) >= 0;}
+
+    /**
+     * Returns the number of occurrences of elem in the heap.
+     * @param elem the element to search for
+     * @return the number of occurrences of elem in the heap
+     */
+    public int elementCount(T elem) {
+        return trackedPositions().count(elem);
+    }
+
+    /********************************************************************
+     *                          Heap Operations                         *
+     ********************************************************************/
+
+    /**
+     * Inserts an element into the heap.
+     * Complexity: O(log(n)), can be O(n) if resizing is necessary
+     * @param toInsert element to insert
+     */
+    public void insert(T toInsert) {
+        if (size == heapArray.length) {
+            int newCapacity = size + (size>>>1) + 1;
+            heapArray = Arrays.copyOf(heapArray, newCapacity);
+            if (positionIndex != null) positionIndex.ensureCapacity(newCapacity);
+        }
+        int pos = size++;
+        heapArray[pos] = toInsert;
+        if (positionIndex != null) positionIndex.add(toInsert, pos);
+        siftUp(pos);
+    }
+
+    /**
+     * Returns but does not extract the minimum element.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     */
+    public T getMin() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return heapArray[0];
+    }
+
+    /**
+     * Returns but does not extract the maximum element.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     */
+    public T getMax() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return heapArray[maxPosition()];
+    }
+
+    /**
+     * Extracts the minimum element.
+     * Complexity: O(log(n))
+     * @throws IllegalStateException if the heap is empty
+     */
+    public T extractMin() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return removeAt(0);
+    }
+
+    /**
+     * Extracts the maximum element.
+     * Complexity: O(log(n))
+     * @throws IllegalStateException if the heap is empty
+     */
+    public T extractMax() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return removeAt(maxPosition());
+    }
+
+    /** Same as getMin. */
+    public T getRoot() {return getMin();}
+    /** Same as extractMin. */
+    public T extractRoot() {return extractMin();}
+
+    /**
+     * Deletes an arbitrary element from the heap. If heap contains elements
+     * with duplicate keys then the earliest inserted occurrence is deleted first.
+     * Complexity: O(log(n))
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
+     * @param toDelete the object to delete from the heap
+     */
+    public void delete(T toDelete) {
+        int pos = trackedPositions().first(toDelete);
+        if (pos < 0) {
+            throw new IllegalArgumentException("Heap does not contain the specified element");
+        }
+        removeAt(pos);
+    }
+
+    /**
+     * Deletes all occurrences of the given element in the heap.
+     * Complexity: O(k*log(n)), k = number of occurrences
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
+     * @param toDelete the element to delete from the heap
+     */
+    public void deleteAll(T toDelete) {
+        if (!contains(toDelete)) {
+            throw new IllegalArgumentException("Heap does not contain the specified element");
+        }
+        while (contains(toDelete)) {
+            delete(toDelete);
+        }
+    }
+
+    /**
+     * Removes every element from the heap.
+     * Complexity: O(n)
+     */
+    public void clear() {
+        Arrays.fill(heapArray, 0, size, null);
+        size = 0;
+        if (positionIndex != null) positionIndex = new PositionIndex<>(heapArray.length);
+    }
+
+    /**
+     * Removes the element at pos and returns it. The last element fills the
+     * hole: the hole first moves down to where the extreme descendants of pos
+     * end, taking the minimum (on a min level) or maximum (on a max level)
+     * grandchild each step, and the last element is then sifted up from there.
+     * Complexity: O(log(n))
+     */
+    private T removeAt(int pos) {
+        T removed = heapArray[pos];
+        if (positionIndex != null) positionIndex.remove(pos);
+        int last = --size;
+        if (pos == last) {
+            heapArray[last] = null;
+            return removed;
+        }
+        T elem = heapArray[last];
+        heapArray[last] = null;
+        if (positionIndex != null) positionIndex.park(last);
+
+        int hole = pos;
+        boolean minLevel = isMinLevel(hole);
+        int best;
+        while ((best = extremeDescendant(hole, minLevel)) > 2*hole + 2) {
+            moveElement(best, hole); // a grandchild, on the same kind of level
+            hole = best;
+        }
+        if (best >= 0 && precedes(heapArray[best], elem, minLevel)) {
+            moveElement(best, hole); // a child, elem belongs on its level
+            hole = best;
+        }
+        placeElement(elem, hole);
+        siftUp(hole);
+        return removed;
+    }
+
+    /**
+     * Moves the element at pos up until it is within the bounds set by its
+     * ancestors: no less than the min levels and no greater than the max
+     * levels above it. The element at pos must already be in order with its
+     * descendants.
+     * Complexity: O(log(n))
+     */
+    private void siftUp(int pos) {
+        if (pos == 0) return;
+        T elem = heapArray[pos];
+        boolean minLevel = isMinLevel(pos);
+        boolean moved = false;
+        int parent = (pos - 1) >>> 1;
+        if (precedes(heapArray[parent], elem, minLevel)) {
+            // elem belongs on the opposite kind of level, only possible if pos is a leaf
+            if (positionIndex != null) positionIndex.park(pos);
+            moved = true;
+            moveElement(parent, pos);
+            pos = parent;
+            minLevel = !minLevel;
+        }
+        while (pos > 2) {
+            int grandparent = (pos - 3) >>> 2;
+            if (!precedes(elem, heapArray[grandparent], minLevel)) break;
+            if (!moved && positionIndex != null) positionIndex.park(pos);
+            moved = true;
+            moveElement(grandparent, pos);
+            pos = grandparent;
+        }
+        if (moved) placeElement(elem, pos);
+    }
+
+    /**
+     * Moves the element at pos down until its subtree is a min-max heap,
+     * given that the subtrees of its children already are. Only used while
+     * heapifying, before positions are tracked.
+     * Complexity: O(log(n))
+     */
+    private void trickleDown(int pos) {
+        boolean minLevel = isMinLevel(pos);
+        while (true) {
+            int best = extremeDescendant(pos, minLevel);
+            if (best < 0 || !precedes(heapArray[best], heapArray[pos], minLevel)) return;
+            swap(best, pos);
+            if (best <= 2*pos + 2) return; // a child, which bounds a subtree of equal or no elements
+            int parent = (best - 1) >>> 1;
+            if (precedes(heapArray[parent], heapArray[best], minLevel)) swap(best, parent);
+            pos = best;
+        }
+    }
+
+    /**
+     * Returns the position of the minimum (on a min level) or maximum (on a
+     * max level) of the children and grandchildren of pos, or -1 if pos is a leaf.
+     */
+    private int extremeDescendant(int pos, boolean minLevel) {
+        int child = 2*pos + 1;
+        if (child >= size) return -1;
+        int best = child;
+        if (child + 1 < size && precedes(heapArray[child + 1], heapArray[best], minLevel)) best = child + 1;
+        int grandchild = 2*child + 1;
+        int end = Math.min(grandchild + 4, size);
+        for (int i = grandchild; i < end; i++) {
+            if (precedes(heapArray[i], heapArray[best], minLevel)) best = i;
+        }
+        return best;
+    }
+
+    /** Returns the position of the maximum element of a non empty heap. */
+    private int maxPosition() {
+        if (size == 1) return 0;
+        if (size == 2) return 1;
+        return comparator.compare(heapArray[2], heapArray[1]) > 0 ? 2 : 1;
+    }
+
+    /**
+     * Returns true if one belongs above two on a min level (one is less than
+     * two) or on a max level (one is greater than two).
+     */
+    private boolean precedes(T one, T two, boolean minLevel) {
+        int cmp = comparator.compare(one, two);
+        return minLevel ? cmp < 0 : cmp > 0;
+    }
+
+    /** Returns true if pos is on an even, min ordered, level. */
+    private static boolean isMinLevel(int pos) {
+        return (Integer.numberOfLeadingZeros(pos + 1) & 1) == 1;
+    }
+
+    /** Moves the element at from into the hole at to, along with its position entry. */
+    private void moveElement(int from, int to) {
+        if (positionIndex != null) positionIndex.move(from, to);
+        heapArray[to] = heapArray[from];
+    }
+
+    /** Writes a sifted element into the hole at pos and unparks its position entry. */
+    private void placeElement(T elem, int pos) {
+        if (positionIndex != null) positionIndex.unpark(pos);
+        heapArray[pos] = elem;
+    }
+
+    /** Swaps two elements of an untracked heap array. */
+    private void swap(int one, int two) {
+        T tmp = heapArray[one];
+        heapArray[one] = heapArray[two];
+        heapArray[two] = tmp;
+    }
+
+    /** Returns the position index, or throws if position tracking is disabled. */
+    private PositionIndex<T> trackedPositions() {
+        if (positionIndex == null) {
+            throw new UnsupportedOperationException("Position tracking is disabled for this heap");
+        }
+        return positionIndex;
+    }
+
+    /**
+     * Returns false if options disable position tracking.
+     * @throws IllegalArgumentException if an option other than NO_POSITION_TRACKING is passed
+     */
+    private static boolean isTracked(Heap.Option... options) {
+        boolean tracked = true;
+        for (Heap.Option option : options) {
+            if (option != Heap.Option.NO_POSITION_TRACKING) {
+                throw new IllegalArgumentException("MinMaxHeap does not support " + option);
+            }
+            tracked = false;
+        }
+        return tracked;
+    }
+}
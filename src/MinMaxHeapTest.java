@@ -0,0 +1,167 @@
+/*
+ * A set of unit tests covering the min-max heap.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class MinMaxHeapTest {
+
+    @Test
+    public void testExtractBothEnds() {
+        MinMaxHeap<Integer> testHeap = new MinMaxHeap<>(Integer.class);
+        List<Integer> input = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 5000; i++) {
+            Integer x = gen.nextInt(1000);
+            input.add(x);
+            testHeap.insert(x);
+        }
+        Assert.assertTrue(isMinMaxHeap(testHeap));
+        Collections.sort(input);
+        while (!input.isEmpty()) {
+            Assert.assertEquals(input.get(0), testHeap.getMin());
+            Assert.assertEquals(input.get(input.size() - 1), testHeap.getMax());
+            if (gen.nextBoolean()) {
+                Assert.assertEquals(input.remove(0), testHeap.extractMin());
+            } else {
+                Assert.assertEquals(input.remove(input.size() - 1), testHeap.extractMax());
+            }
+            Assert.assertEquals(input.size(), testHeap.size());
+        }
+    }
+
+    @Test
+    public void testHeapify() {
+        for (int n : new int[] {0, 1, 2, 3, 7, 8, 100, 4097}) {
+            Integer[] keys = new Integer[n];
+            Random gen = new Random();
+            for (int i = 0; i < n; i++) {
+                keys[i] = gen.nextInt(n + 1);
+            }
+            List<Integer> input = new ArrayList<>(Arrays.asList(keys));
+            MinMaxHeap<Integer> testHeap = new MinMaxHeap<>(keys);
+            Assert.assertTrue(isMinMaxHeap(testHeap));
+            for (Integer x : input) {
+                Assert.assertEquals(Collections.frequency(input, x), testHeap.elementCount(x));
+            }
+            input.sort(Comparator.reverseOrder());
+            for (Integer expected : input) {
+                Assert.assertEquals(expected, testHeap.extractMax());
+            }
+            testHeap.insert(5);
+            Assert.assertEquals(Integer.valueOf(5), testHeap.getMax());
+        }
+    }
+
+    @Test
+    public void testDeleteAndCount() {
+        MinMaxHeap<Integer> testHeap = new MinMaxHeap<>(Integer.class);
+        List<Integer> input = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 20000; i++) {
+            Integer x = gen.nextInt(300);
+            int op = gen.nextInt(6);
+            if (op < 3 || input.isEmpty()) {
+                testHeap.insert(x);
+                input.add(x);
+            } else if (op == 3 && testHeap.contains(x)) {
+                testHeap.delete(x);
+                input.remove(x);
+            } else if (op == 3) {
+                Integer max = Collections.max(input);
+                Assert.assertEquals(max, testHeap.extractMax());
+                input.remove(max);
+            } else if (op == 4) {
+                Integer min = Collections.min(input);
+                Assert.assertEquals(min, testHeap.extractMin());
+                input.remove(min);
+            } else if (testHeap.contains(x)) {
+                testHeap.deleteAll(x);
+                input.removeIf(x::equals);
+            }
+            Assert.assertEquals(input.size(), testHeap.size());
+            Assert.assertEquals(Collections.frequency(input, x), testHeap.elementCount(x));
+        }
+        Assert.assertTrue(isMinMaxHeap(testHeap));
+        Collections.sort(input);
+        for (Integer expected : input) {
+            Assert.assertEquals(expected, testHeap.extractRoot());
+        }
+    }
+
+    @Test
+    public void testDeleteEarliestOccurrence() {
+        MinMaxHeap<String> testHeap = new MinMaxHeap<>(String.class);
+        String first = new String("key");
+        String second = new String("key");
+        testHeap.insert(first);
+        testHeap.insert("a");
+        testHeap.insert(second);
+        testHeap.delete("key");
+        Assert.assertSame(second, testHeap.getMax());
+    }
+
+    @Test
+    public void testComparator() {
+        MinMaxHeap<String> testHeap = new MinMaxHeap<>(String.class, Comparator.comparingInt(String::length));
+        for (String word : "a bounded buffer evicts its lowest priority entries".split(" ")) {
+            testHeap.insert(word);
+        }
+        Assert.assertEquals("a", testHeap.extractMin());
+        Assert.assertEquals("priority", testHeap.extractMax());
+        Assert.assertEquals(6, testHeap.size());
+    }
+
+    @Test
+    public void testUntracked() {
+        MinMaxHeap<Integer> testHeap = new MinMaxHeap<>(Integer.class, Heap.Option.NO_POSITION_TRACKING);
+        for (int i = 0; i < 100; i++) {
+            testHeap.insert(i);
+        }
+        Assert.assertEquals(Integer.valueOf(99), testHeap.extractMax());
+        Assert.assertEquals(Integer.valueOf(0), testHeap.extractMin());
+        try {
+            testHeap.contains(5);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedOption() {
+        new MinMaxHeap<>(Integer.class, Heap.Option.STABLE);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractMaxEmpty() {
+        new MinMaxHeap<>(Integer.class).extractMax();
+    }
+
+    /**
+     * Tests that each element on an even level is no greater than its
+     * descendants and each element on an odd level no less than them.
+     * @param testHeap the heap to test
+     * @return a boolean indicating whether the min-max heap property is fulfilled
+     */
+    private boolean isMinMaxHeap(MinMaxHeap<Integer> testHeap) {
+        Integer[] testArr = testHeap.getHeapArray();
+        for (int i = 1; i < testHeap.size(); i++) {
+            for (int ancestor = (i - 1)/2; ; ancestor = (ancestor - 1)/2) {
+                boolean minLevel = (31 - Integer.numberOfLeadingZeros(ancestor + 1)) % 2 == 0;
+                if (minLevel ? testArr[i] < testArr[ancestor] : testArr[i] > testArr[ancestor]) return false;
+                if (ancestor == 0) break;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,468 @@
+/*
+ * Implementation of a pairing heap data structure.
+ * Author: Spencer Little
+ */
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A pairing heap: a heap ordered multiway tree whose root is the
+ * minimum/maximum element. insert and meld only link two roots, so both are
+ * O(1), and decreaseKey cuts a node's subtree and links it to the root, which
+ * is O(1) in the worst case and O(log(n)) amortized. extractRoot and delete
+ * re-link the children of the removed node in two passes, O(log(n)) amortized.
+ * That trade suits decrease-key heavy algorithms like Dijkstra's better than
+ * the array backed Heap, whose every update is a sift.
+ *
+ * insertNode returns the node holding the element, a handle for decreaseKey
+ * and delete(Node) that needs no lookup. The value operations of
+ * PriorityHeap (contains, elementCount, delete, deleteAll) use an index of the
+ * nodes holding each element. Like in Heap, the index can be disabled with
+ * Heap.Option.NO_POSITION_TRACKING when only node handles are used.
+ * @author Spencer Little
+ */
+public class PairingHeap<T> implements PriorityHeap<T> {
+
+    /** A node of the heap, handed out by insertNode as a handle to its element. */
+    public static final class Node<T> {
+        /** The element held by this node. */
+        private T value;
+        /** The first child of this node. */
+        private Node<T> child;
+        /** The next sibling of this node. */
+        private Node<T> sibling;
+        /** The previous sibling of this node, or its parent if it is a first child. */
+        private Node<T> prev;
+        /** The next node holding an equal element, in insertion order. */
+        private Node<T> nextEqual;
+        /** The previous node holding an equal element. */
+        private Node<T> prevEqual;
+        /** True while the node is in a heap. */
+        private boolean inHeap = true;
+        /** The owner of the heap the node was inserted into, see Owner. */
+        private Owner owner;
+
+        private Node(T value, Owner owner) {
+            this.value = value;
+            this.owner = owner;
+        }
+
+        /** Returns the element held by this node. */
+        public T getValue() {return value;}
+    }
+
+    /**
+     * Identifies the nodes of one heap. clear replaces the owner of the heap,
+     * so the nodes of the old one are no longer recognised, and meld forwards
+     * the owner of the source heap to the owner of the target, so its nodes
+     * are recognised by the target without touching each of them.
+     */
+    private static final class Owner {
+        /** The owner the nodes of this one were melded into, null while they belong here. */
+        private Owner meldedInto;
+    }
+
+    /** The nodes holding one element, in insertion order. */
+    private static final class Occurrences<T> {
+        Node<T> first;
+        Node<T> last;
+        int count;
+    }
+
+    /** Orders the elements so that the root compares least. */
+    private Comparator<? super T> comparator;
+    /** The root of the tree, null if the heap is empty. */
+    private Node<T> root;
+    /** The number of elements in the heap. */
+    private int size;
+    /** The nodes holding each element. Null if position tracking is disabled. */
+    private Map<T, Occurrences<T>> occurrences;
+    /** The owner of the nodes of this heap. */
+    private Owner owner = new Owner();
+
+    /**
+     * Initializes an empty heap. The elements are ordered by their natural
+     * ordering and must implement Comparable.
+     * @param options optional behaviours to enable, only NO_POSITION_TRACKING is supported
+     * @throws IllegalArgumentException if an unsupported option is passed
+     */
+    public PairingHeap(Heap.Type type, Heap.Option... options) {
+        this(Heap.naturalOrder(type), options);
+    }
+
+    /**
+     * Initializes an empty heap ordered by comparator. The root is the least
+     * element according to comparator, use comparator.reversed() for a max heap.
+     * @param comparator the ordering of the elements
+     * @param options optional behaviours to enable, only NO_POSITION_TRACKING is supported
+     * @throws IllegalArgumentException if an unsupported option is passed
+     */
+    public PairingHeap(Comparator<? super T> comparator, Heap.Option... options) {
+        this.comparator = comparator;
+        boolean tracked = true;
+        for (Heap.Option option : options) {
+            if (option != Heap.Option.NO_POSITION_TRACKING) {
+                throw new IllegalArgumentException("PairingHeap does not support " + option);
+            }
+            tracked = false;
+        }
+        if (tracked) occurrences = new HashMap<>();
+    }
+
+    /** Returns the number of elements in the heap. */
+    public int size() {return size;}
+    /** Returns the ordering of the heap, the root compares least. */
+    public Comparator<? super T> comparator() {return comparator;}
+
+    /**
+     * Returns true if the heap contains the specified element.
+     * Complexity: O(1) expected
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    public boolean contains(T elem) {return trackedOccurrences().containsKey(elem);}
+
+    /**
+     * Returns the number of occurrences of elem in the heap.
+     * Complexity: O(1) expected
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    public int elementCount(T elem) {
+        Occurrences<T> occ = trackedOccurrences().get(elem);
+        return occ == null ? 0 : occ.count;
+    }
+
+    /** Returns true if node holds an element of this heap. */
+    public boolean contains(Node<T> node) {return node.inHeap && owns(node);}
+
+    /********************************************************************
+     *                          Heap Operations                         *
+     ********************************************************************/
+
+    /**
+     * Inserts an element into the heap.
+     * Complexity: O(1)
+     * @param toInsert element to insert
+     */
+    public void insert(T toInsert) {
+        insertNode(toInsert);
+    }
+
+    /**
+     * Inserts an element into the heap and returns the node holding it.
+     * Complexity: O(1)
+     * @param toInsert element to insert
+     * @return the node holding toInsert, valid until the element leaves the heap
+     */
+    public Node<T> insertNode(T toInsert) {
+        Node<T> node = new Node<>(toInsert, owner);
+        track(node);
+        root = root == null ? node : link(root, node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Extracts and returns the next minimum/maximum value.
+     * Complexity: O(log(n)) amortized
+     * @throws IllegalStateException if the heap is empty
+     * @return the root value
+     */
+    public T extractRoot() {
+        if (root == null) throw new IllegalStateException("Root does not exist, heap is empty.");
+        Node<T> oldRoot = root;
+        root = combineSiblings(oldRoot.child);
+        release(oldRoot);
+        return oldRoot.value;
+    }
+
+    /**
+     * Returns but does not extract the next minimum/maximum value in the heap.
+     * Complexity: O(1)
+     * @throws IllegalStateException if the heap is empty
+     * @return the root value
+     */
+    public T getRoot() {
+        if (root == null) throw new IllegalStateException("Root does not exist, heap is empty.");
+        return root.value;
+    }
+
+    /**
+     * Replaces the element held by node with one that belongs at least as
+     * close to the root (a smaller element in a min heap, a greater one in a
+     * max heap) and restores the heap. If newValue equals the current element
+     * the node keeps its place among the nodes holding it, for delete(T);
+     * otherwise it becomes the latest inserted occurrence of newValue.
+     * Complexity: O(1) worst case, O(log(n)) amortized over the following extractions
+     * @throws IllegalArgumentException if node is not in the heap or newValue
+     *                                  belongs further from the root than the current element
+     * @param node the node whose element to replace
+     * @param newValue the new element
+     */
+    public void decreaseKey(Node<T> node, T newValue) {
+        checkNode(node);
+        if (comparator.compare(newValue, node.value) > 0) {
+            throw new IllegalArgumentException("New value belongs further from the root than the current one");
+        }
+        if (Objects.equals(newValue, node.value)) {
+            node.value = newValue; // same occurrence list, the node keeps its place in it
+        } else {
+            untrack(node);
+            node.value = newValue;
+            track(node);
+        }
+        if (node != root) {
+            cut(node);
+            root = link(root, node);
+        }
+    }
+
+    /**
+     * Deletes an arbitrary element from the heap. If heap contains elements
+     * with duplicate keys then the earliest inserted occurrence is deleted first.
+     * Complexity: O(log(n)) amortized
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
+     * @param toDelete the object to delete from the heap
+     */
+    public void delete(T toDelete) {
+        Occurrences<T> occ = trackedOccurrences().get(toDelete);
+        if (occ == null) {
+            throw new IllegalArgumentException("Heap does not contain the specified element");
+        }
+        delete(occ.first);
+    }
+
+    /**
+     * Deletes the element held by node from the heap.
+     * Complexity: O(log(n)) amortized
+     * @throws IllegalArgumentException if node is not in the heap
+     * @param node the node to delete
+     */
+    public void delete(Node<T> node) {
+        checkNode(node);
+        if (node == root) {
+            extractRoot();
+            return;
+        }
+        cut(node);
+        Node<T> children = combineSiblings(node.child);
+        if (children != null) root = link(root, children);
+        release(node);
+    }
+
+    /**
+     * Deletes all occurrences of the given element in the heap.
+     * Complexity: O(k*log(n)) amortized, k = number of occurrences
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
+     * @param toDelete the element to delete
+     */
+    public void deleteAll(T toDelete) {
+        if (!contains(toDelete)) {
+            throw new IllegalArgumentException("Heap does not contain the specified element");
+        }
+        while (contains(toDelete)) {
+            delete(toDelete);
+        }
+    }
+
+    /**
+     * Moves every element of other into this heap, leaving other empty. The
+     * nodes of other keep holding their elements and become nodes of this heap,
+     * other no longer accepts them. Both heaps must be ordered by the same
+     * comparator instance, as in Heap.meld.
+     * Complexity: O(1) if this heap does not track positions, otherwise O(m), m = other.size()
+     * @throws IllegalArgumentException if other is this heap or is ordered by another comparator
+     * @param other the heap to meld into this one
+     */
+    public void meld(PairingHeap<T> other) {
+        if (other == this) throw new IllegalArgumentException("Cannot meld a heap with itself");
+        if (other.comparator != comparator) {
+            throw new IllegalArgumentException("Cannot meld a heap ordered by another comparator");
+        }
+        if (other.root == null) return;
+        if (occurrences != null) {
+            if (other.occurrences != null) {
+                for (Occurrences<T> occ : other.occurrences.values()) {
+                    Node<T> node = occ.first;
+                    while (node != null) {
+                        Node<T> next = node.nextEqual; // track relinks node
+                        track(node);
+                        node = next;
+                    }
+                }
+            } else {
+                trackSubtree(other.root);
+            }
+        }
+        root = root == null ? other.root : link(root, other.root);
+        size += other.size;
+        other.owner.meldedInto = owner;
+        other.owner = new Owner();
+        other.root = null;
+        other.size = 0;
+        if (other.occurrences != null) other.occurrences = new HashMap<>();
+    }
+
+    /**
+     * Removes every element from the heap. Nodes handed out before are no
+     * longer valid.
+     * Complexity: O(1)
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+        owner = new Owner();
+        if (occurrences != null) occurrences = new HashMap<>();
+    }
+
+    /**
+     * Links two roots, making the one that belongs lower the first child of the
+     * other. Ties keep first as the root.
+     * @return the root of the linked tree
+     */
+    private Node<T> link(Node<T> first, Node<T> second) {
+        if (comparator.compare(second.value, first.value) < 0) {
+            Node<T> temp = first;
+            first = second;
+            second = temp;
+        }
+        second.prev = first;
+        second.sibling = first.child;
+        if (first.child != null) first.child.prev = second;
+        first.child = second;
+        return first;
+    }
+
+    /**
+     * Links a list of sibling trees into one tree with the standard two pass
+     * pairing: adjacent pairs are linked left to right, then the pairs are
+     * linked right to left into the result. Iterative, so a long sibling list
+     * (a heap built by n inserts has n-1 children at the root) cannot overflow
+     * the stack.
+     * Complexity: O(k), k = number of siblings
+     * @param first the first sibling, may be null
+     * @return the root of the combined tree, or null if there were no siblings
+     */
+    private Node<T> combineSiblings(Node<T> first) {
+        Node<T> pairs = null; // the linked pairs, last pair first, chained by sibling
+        Node<T> node = first;
+        while (node != null) {
+            Node<T> second = node.sibling;
+            Node<T> next = second != null ? second.sibling : null;
+            node.sibling = null;
+            node.prev = null;
+            if (second != null) {
+                second.sibling = null;
+                second.prev = null;
+                node = link(node, second);
+            }
+            node.sibling = pairs;
+            pairs = node;
+            node = next;
+        }
+
+        Node<T> result = null;
+        while (pairs != null) {
+            Node<T> next = pairs.sibling;
+            pairs.sibling = null;
+            result = result == null ? pairs : link(pairs, result);
+            pairs = next;
+        }
+        return result;
+    }
+
+    /** Detaches a non root node, with its subtree, from its parent and siblings. */
+    private void cut(Node<T> node) {
+        if (node.prev.child == node) node.prev.child = node.sibling;
+        else node.prev.sibling = node.sibling;
+        if (node.sibling != null) node.sibling.prev = node.prev;
+        node.prev = null;
+        node.sibling = null;
+    }
+
+    /** Marks a node that has been unlinked from the tree as removed. */
+    private void release(Node<T> node) {
+        untrack(node);
+        node.inHeap = false;
+        node.child = null;
+        node.sibling = null;
+        node.prev = null;
+        size--;
+    }
+
+    /** Appends node to the occurrences of its element. */
+    private void track(Node<T> node) {
+        if (occurrences == null) return;
+        Occurrences<T> occ = occurrences.computeIfAbsent(node.value, k -> new Occurrences<>());
+        node.prevEqual = occ.last;
+        node.nextEqual = null;
+        if (occ.last != null) occ.last.nextEqual = node;
+        else occ.first = node;
+        occ.last = node;
+        occ.count++;
+    }
+
+    /** Removes node from the occurrences of its element. */
+    private void untrack(Node<T> node) {
+        if (occurrences == null) return;
+        Occurrences<T> occ = occurrences.get(node.value);
+        if (--occ.count == 0) {
+            occurrences.remove(node.value);
+        } else {
+            if (node.prevEqual != null) node.prevEqual.nextEqual = node.nextEqual;
+            else occ.first = node.nextEqual;
+            if (node.nextEqual != null) node.nextEqual.prevEqual = node.prevEqual;
+            else occ.last = node.prevEqual;
+        }
+        node.nextEqual = null;
+        node.prevEqual = null;
+    }
+
+    /** Tracks every node of the tree rooted at top. */
+    private void trackSubtree(Node<T> top) {
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            for (Node<T> node = stack.pop(); node != null; node = node.sibling) {
+                track(node);
+                if (node.child != null) stack.push(node.child);
+            }
+        }
+    }
+
+    /** Throws IllegalArgumentException if node does not hold an element of this heap. */
+    private void checkNode(Node<T> node) {
+        if (!node.inHeap || !owns(node)) throw new IllegalArgumentException("Node is not in the heap");
+    }
+
+    /**
+     * Returns true if node was inserted into this heap, or into a heap melded
+     * into it, since the last clear. Follows the melds from the node's owner
+     * and points the node at the owner found, so the walk is not repeated.
+     */
+    private boolean owns(Node<T> node) {
+        Owner nodeOwner = node.owner;
+        while (nodeOwner.meldedInto != null) {
+            nodeOwner = nodeOwner.meldedInto;
+        }
+        node.owner = nodeOwner;
+        return nodeOwner == owner;
+    }
+
+    /**
+     * Returns the occurrences index.
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    private Map<T, Occurrences<T>> trackedOccurrences() {
+        if (occurrences == null) {
+            throw new UnsupportedOperationException("Position tracking is disabled for this heap");
+        }
+        return occurrences;
+    }
+
+}
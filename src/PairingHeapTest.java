@@ -0,0 +1,286 @@
+/*
+ * A set of unit tests covering the pairing heap.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class PairingHeapTest {
+
+    @Test
+    public void testExtractRoot() {
+        for (Heap.Type type : Heap.Type.values()) {
+            PriorityHeap<Integer> testHeap = new PairingHeap<>(type);
+            List<Integer> input = new ArrayList<>();
+            Random gen = new Random();
+            for (int i = 0; i < 5000; i++) {
+                Integer x = gen.nextInt(1000);
+                input.add(x);
+                testHeap.insert(x);
+            }
+            input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            Assert.assertEquals(input.get(0), testHeap.getRoot());
+            for (Integer expected : input) {
+                Assert.assertEquals(expected, testHeap.extractRoot());
+            }
+            Assert.assertEquals(0, testHeap.size());
+        }
+    }
+
+    @Test
+    public void testDeleteAndCount() {
+        for (Heap.Type type : Heap.Type.values()) {
+            PriorityHeap<Integer> testHeap = new PairingHeap<>(type);
+            List<Integer> input = new ArrayList<>();
+            Random gen = new Random();
+            for (int i = 0; i < 2000; i++) {
+                Integer x = gen.nextInt(100);
+                input.add(x);
+                testHeap.insert(x);
+            }
+            for (int i = 0; i < 1000; i++) {
+                Integer victim = input.remove(gen.nextInt(input.size()));
+                testHeap.delete(victim);
+                Assert.assertEquals(Collections.frequency(input, victim), testHeap.elementCount(victim));
+            }
+            Integer common = input.get(0);
+            testHeap.deleteAll(common);
+            input.removeIf(common::equals);
+            Assert.assertFalse(testHeap.contains(common));
+
+            input.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            for (Integer expected : input) {
+                Assert.assertEquals(expected, testHeap.extractRoot());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteEarliestOccurrence() {
+        PairingHeap<String> testHeap = new PairingHeap<>(Heap.Type.MIN);
+        String first = new String("key");
+        String second = new String("key");
+        PairingHeap.Node<String> firstNode = testHeap.insertNode(first);
+        PairingHeap.Node<String> secondNode = testHeap.insertNode(second);
+        testHeap.delete("key");
+        Assert.assertFalse(testHeap.contains(firstNode));
+        Assert.assertTrue(testHeap.contains(secondNode));
+        Assert.assertSame(second, testHeap.extractRoot());
+    }
+
+    @Test
+    public void testDecreaseKey() {
+        for (Heap.Type type : Heap.Type.values()) {
+            PairingHeap<Integer> testHeap = new PairingHeap<>(type);
+            Random gen = new Random();
+            List<PairingHeap.Node<Integer>> nodes = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                nodes.add(testHeap.insertNode(gen.nextInt(100000)));
+            }
+            testHeap.extractRoot(); // builds a multi level tree
+            List<Integer> expected = new ArrayList<>();
+            for (PairingHeap.Node<Integer> node : nodes) {
+                if (!testHeap.contains(node)) continue;
+                int delta = gen.nextInt(1000);
+                int improved = type == Heap.Type.MIN ? node.getValue() - delta : node.getValue() + delta;
+                testHeap.decreaseKey(node, improved);
+                Assert.assertEquals(Integer.valueOf(improved), node.getValue());
+                expected.add(improved);
+            }
+            Assert.assertEquals(expected.size(), testHeap.size());
+            for (Integer x : expected) {
+                Assert.assertTrue(testHeap.contains(x));
+            }
+
+            expected.sort(type == Heap.Type.MIN ? Comparator.naturalOrder() : Comparator.reverseOrder());
+            for (Integer x : expected) {
+                Assert.assertEquals(x, testHeap.extractRoot());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreaseKeyWrongDirection() {
+        PairingHeap<Integer> testHeap = new PairingHeap<>(Heap.Type.MIN);
+        PairingHeap.Node<Integer> node = testHeap.insertNode(5);
+        testHeap.decreaseKey(node, 6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemovedNode() {
+        PairingHeap<Integer> testHeap = new PairingHeap<>(Heap.Type.MIN);
+        PairingHeap.Node<Integer> node = testHeap.insertNode(5);
+        testHeap.extractRoot();
+        testHeap.delete(node);
+    }
+
+    @Test
+    public void testDecreaseKeyKeepsOccurrenceOrder() {
+        Comparator<Task> byPriority = Comparator.comparingInt(t -> t.priority);
+        PairingHeap<Task> testHeap = new PairingHeap<>(byPriority);
+        PairingHeap.Node<Task> first = testHeap.insertNode(new Task("x", 5));
+        PairingHeap.Node<Task> second = testHeap.insertNode(new Task("x", 7));
+        testHeap.decreaseKey(first, new Task("x", 1));
+        testHeap.delete(new Task("x", 0)); // deletes the earliest inserted occurrence
+        Assert.assertFalse(testHeap.contains(first));
+        Assert.assertTrue(testHeap.contains(second));
+    }
+
+    @Test
+    public void testMeldOtherOrder() {
+        PairingHeap<Integer> testHeap = new PairingHeap<>(Heap.Type.MIN);
+        PairingHeap<Integer> other = new PairingHeap<>(Heap.Type.MAX);
+        testHeap.insert(2);
+        other.insert(1);
+        try {
+            testHeap.meld(other);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected, and nothing was moved
+        }
+        Assert.assertEquals(1, testHeap.size());
+        Assert.assertEquals(1, other.size());
+        testHeap.meld(new PairingHeap<>(Heap.Type.MIN));
+        Assert.assertEquals(Integer.valueOf(2), testHeap.extractRoot());
+    }
+
+    @Test
+    public void testStaleNode() {
+        PairingHeap<Integer> testHeap = new PairingHeap<>(Heap.Type.MIN);
+        PairingHeap.Node<Integer> cleared = testHeap.insertNode(5);
+        testHeap.clear();
+        testHeap.insert(7);
+        Assert.assertFalse(testHeap.contains(cleared));
+        try {
+            testHeap.decreaseKey(cleared, 1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected, the node was cleared
+        }
+
+        PairingHeap<Integer> other = new PairingHeap<>(Heap.Type.MIN);
+        PairingHeap.Node<Integer> melded = other.insertNode(3);
+        testHeap.meld(other);
+        Assert.assertFalse(other.contains(melded));
+        Assert.assertTrue(testHeap.contains(melded));
+        try {
+            other.delete(melded);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected, the node belongs to testHeap now
+        }
+        PairingHeap.Node<Integer> foreign = new PairingHeap<Integer>(Heap.Type.MIN).insertNode(0);
+        try {
+            testHeap.delete(foreign);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected, the node is in another heap
+        }
+        Assert.assertEquals(2, testHeap.size());
+        testHeap.delete(melded);
+        Assert.assertEquals(Integer.valueOf(7), testHeap.extractRoot());
+    }
+
+    @Test
+    public void testMeld() {
+        for (Heap.Option[] options : new Heap.Option[][] {{}, {Heap.Option.NO_POSITION_TRACKING}}) {
+            PairingHeap<Integer> testHeap = new PairingHeap<>(Heap.Type.MAX);
+            PairingHeap<Integer> other = new PairingHeap<>(Heap.Type.MAX, options);
+            List<Integer> input = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                testHeap.insert(i);
+                other.insert(i % 10);
+                input.add(i);
+                input.add(i % 10);
+            }
+            PairingHeap.Node<Integer> node = other.insertNode(-1);
+            input.add(-1);
+            testHeap.meld(other);
+            Assert.assertEquals(0, other.size());
+            Assert.assertEquals(input.size(), testHeap.size());
+            Assert.assertEquals(101, testHeap.elementCount(3));
+            testHeap.decreaseKey(node, 2000); // nodes of other are nodes of this heap now
+            input.set(input.size() - 1, 2000);
+
+            input.sort(Comparator.reverseOrder());
+            for (Integer expected : input) {
+                Assert.assertEquals(expected, testHeap.extractRoot());
+            }
+        }
+    }
+
+    @Test
+    public void testUntracked() {
+        PairingHeap<Integer> testHeap = new PairingHeap<>(Heap.Type.MIN, Heap.Option.NO_POSITION_TRACKING);
+        List<PairingHeap.Node<Integer>> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(testHeap.insertNode(i));
+        }
+        testHeap.delete(nodes.get(0));
+        testHeap.delete(nodes.get(50));
+        Assert.assertEquals(Integer.valueOf(1), testHeap.extractRoot());
+        try {
+            testHeap.contains(5);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedOption() {
+        new PairingHeap<Integer>(Heap.Type.MIN, Heap.Option.STABLE);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new PairingHeap<Integer>(Heap.Type.MIN).extractRoot();
+    }
+
+    @Test
+    public void testInterchangeableWithHeap() {
+        List<PriorityHeap<Integer>> heaps = Arrays.asList(
+                new Heap<>(Integer.class, Heap.Type.MIN), new PairingHeap<>(Heap.Type.MIN));
+        Random gen = new Random();
+        for (int i = 0; i < 3000; i++) {
+            int x = gen.nextInt(50);
+            int op = gen.nextInt(3);
+            for (PriorityHeap<Integer> heap : heaps) {
+                if (op < 2 || heap.size() == 0) heap.insert(x);
+                else if (heap.contains(x)) heap.delete(x);
+                else heap.extractRoot();
+            }
+            Assert.assertEquals(heaps.get(0).size(), heaps.get(1).size());
+            Assert.assertEquals(heaps.get(0).elementCount(x), heaps.get(1).elementCount(x));
+            if (heaps.get(0).size() > 0) Assert.assertEquals(heaps.get(0).getRoot(), heaps.get(1).getRoot());
+        }
+    }
+
+    /** A named task, equal to the tasks of the same name whatever their priority. */
+    private static final class Task {
+        private final String name;
+        private final int priority;
+
+        Task(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Task && ((Task) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+}
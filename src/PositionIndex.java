@@ -0,0 +1,357 @@
+/*
+ * Position index used by the heap.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+
+/**
+ * An open addressing multimap from elements to the heap array positions that
+ * hold an equal element. The object counterpart of LongPositionIndex: keys are
+ * compared with equals and hashed with hashCode, positions holding equal keys
+ * are chained in insertion order in an intrusive doubly linked list indexed
+ * by position, so the first position of a key holds its earliest inserted
+ * occurrence and moving an entry to another position is O(1) no matter how
+ * many duplicates a key has and nothing is boxed or allocated unless the table or position arrays grow.
+ *
+ * One position past the last trackable one is a parking slot: park moves the
+ * entry of a position there and unpark moves it back to any free position,
+ * so a sift can empty the slot of the element it is moving and fill it with
+ * the elements moving the other way. Nothing may be parked while the number
+ * of trackable positions changes.
+ * @author Spencer Little
+ */
+final class PositionIndex<T> {
+
+    /** Marks a table cell that has never held a key. */
+    private static final int EMPTY = -1;
+    /** Marks a table cell whose key has been removed. */
+    private static final int TOMBSTONE = -2;
+    /** Marks the end of a position list. */
+    private static final int NIL = -1;
+
+    /** The keys stored in the table. */
+    private Object[] keys;
+    /** The first position holding each key, or EMPTY/TOMBSTONE. */
+    private int[] heads;
+    /** The last position holding each key. */
+    private int[] tails;
+    /** The number of positions holding each key. */
+    private int[] counts;
+    /** The number of distinct keys in the table. */
+    private int size;
+    /** The number of tombstoned cells in the table. */
+    private int tombstones;
+    /** The next position in the same key's list, indexed by position. */
+    private int[] next;
+    /** The previous position in the same key's list, indexed by position. */
+    private int[] prev;
+    /** The table cell of the key held at each position. */
+    private int[] cellOf;
+
+    /**
+     * Creates an index able to track positions in [0, positions).
+     * @param positions the initial number of trackable positions
+     */
+    PositionIndex(int positions) {
+        int tableLength = tableSizeFor(positions);
+        keys = new Object[tableLength];
+        heads = new int[tableLength];
+        tails = new int[tableLength];
+        counts = new int[tableLength];
+        Arrays.fill(heads, EMPTY);
+        next = new int[positions + 1];
+        prev = new int[positions + 1];
+        cellOf = new int[positions + 1];
+    }
+
+    /**
+     * Grows the per position arrays so positions in [0, positions) can be tracked.
+     * @param positions the required number of trackable positions
+     */
+    void ensureCapacity(int positions) {
+        if (positions + 1 > next.length) {
+            next = Arrays.copyOf(next, positions + 1);
+            prev = Arrays.copyOf(prev, positions + 1);
+            cellOf = Arrays.copyOf(cellOf, positions + 1);
+        }
+    }
+
+    /**
+     * Shrinks the per position arrays to [0, positions) and, if the table is
+     * oversized for the keys it now holds, rebuilds it smaller. Positions at or
+     * beyond the new bound must no longer be tracked.
+     * Complexity: O(n), n = positions plus the current table length
+     * @param positions the new number of trackable positions
+     */
+    void trimTo(int positions) {
+        if (positions + 1 < next.length) {
+            next = Arrays.copyOf(next, positions + 1);
+            prev = Arrays.copyOf(prev, positions + 1);
+            cellOf = Arrays.copyOf(cellOf, positions + 1);
+        }
+        if (tableSizeFor(size << 1) < keys.length) rehash();
+    }
+
+    /**
+     * Returns the position holding the earliest added occurrence of key, or -1
+     * if no position holds it.
+     * @param key the key to search for
+     * @return a position holding key or -1
+     */
+    int first(T key) {
+        int cell = find(key, hash(key));
+        return cell < 0 ? -1 : heads[cell];
+    }
+
+    /**
+     * Returns the number of positions holding key.
+     * @param key the key to search for
+     * @return the number of positions holding key
+     */
+    int count(T key) {
+        int cell = find(key, hash(key));
+        return cell < 0 ? 0 : counts[cell];
+    }
+
+    /** Returns the number of distinct keys in the index. */
+    int distinctKeys() {
+        return size;
+    }
+
+    /**
+     * Returns the largest number of positions holding a single key, ignoring
+     * the positions of one key.
+     * Complexity: O(table length)
+     * @param ignored the key to ignore (compared by identity), or null
+     */
+    int maxCount(Object ignored) {
+        int max = 0;
+        for (int cell = 0; cell < heads.length; cell++) {
+            if (heads[cell] >= 0 && keys[cell] != ignored) max = Math.max(max, counts[cell]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns true if the tracked position pos holds key itself, compared by identity.
+     * Complexity: O(1)
+     */
+    boolean holds(int pos, Object key) {
+        return keys[cellOf[pos]] == key;
+    }
+
+    /**
+     * Records that pos now holds key. pos must not currently be tracked.
+     * @param key the key stored at pos
+     * @param pos the position in the heap array
+     */
+    void add(T key, int pos) {
+        add(key, hash(key), pos);
+    }
+
+    /**
+     * Records that positions [0, count) hold elements[0, count), like calling
+     * add for each position in the given order, so equal keys are listed in
+     * that order. With parallel set, the hash codes are computed on the common
+     * fork/join pool first, leaving only the table inserts sequential. No
+     * position below count may be tracked.
+     * Complexity: O(n), n = count
+     * @param elements the keys, indexed by position
+     * @param order the positions [0, count) in the order to add them
+     * @param count the number of positions to add
+     * @param parallel whether to hash the keys in parallel
+     */
+    void addAll(T[] elements, int[] order, int count, boolean parallel) {
+        if (!parallel) {
+            for (int i = 0; i < count; i++) {
+                add(elements[order[i]], order[i]);
+            }
+            return;
+        }
+        int[] hashes = new int[count];
+        Arrays.parallelSetAll(hashes, pos -> hash(elements[pos]));
+        for (int i = 0; i < count; i++) {
+            add(elements[order[i]], hashes[order[i]], order[i]);
+        }
+    }
+
+    /**
+     * Returns the tracked positions below count key by key, the positions of
+     * each key in list order, so equal keys come in the order they were added.
+     * Complexity: O(n + m), n = count, m = the table length
+     * @param count the number of tracked positions, all of [0, count)
+     * @return the positions [0, count)
+     */
+    int[] positionsByKey(int count) {
+        int[] order = new int[count];
+        int i = 0;
+        for (int cell = 0; cell < heads.length; cell++) {
+            for (int pos = heads[cell]; pos >= 0; pos = next[pos]) { // EMPTY and TOMBSTONE are negative too
+                order[i++] = pos;
+            }
+        }
+        return order;
+    }
+
+    /** Records that pos now holds key, whose spread hash code is keyHash. */
+    private void add(T key, int keyHash, int pos) {
+        int cell = find(key, keyHash);
+        if (cell < 0) {
+            if (size + tombstones + 1 > (keys.length >>> 1) + (keys.length >>> 2)) {
+                rehash();
+            }
+            cell = claim(key, keyHash);
+        }
+        int tail = tails[cell];
+        prev[pos] = tail;
+        next[pos] = NIL;
+        if (tail != NIL) next[tail] = pos;
+        else heads[cell] = pos;
+        tails[cell] = pos;
+        counts[cell]++;
+        cellOf[pos] = cell;
+    }
+
+    /**
+     * Stops tracking pos, removing its key from the table if this was the last
+     * position holding it.
+     * @param pos the position to remove
+     */
+    void remove(int pos) {
+        int cell = cellOf[pos];
+        unlink(cell, pos);
+        if (--counts[cell] == 0) {
+            heads[cell] = TOMBSTONE;
+            keys[cell] = null;
+            size--;
+            tombstones++;
+        }
+    }
+
+    /**
+     * Records that the key held at from has moved to the untracked position to.
+     * @param from the position the key is moving from
+     * @param to the position the key is moving to
+     */
+    void move(int from, int to) {
+        int cell = cellOf[from];
+        relink(cell, from, to);
+        next[to] = next[from];
+        prev[to] = prev[from];
+        cellOf[to] = cell;
+    }
+
+    /**
+     * Moves the entry of pos to the parking slot, leaving pos untracked.
+     * @param pos the position to park
+     */
+    void park(int pos) {
+        move(pos, next.length - 1);
+    }
+
+    /**
+     * Moves the parked entry to the untracked position to.
+     * @param to the position the parked key now occupies
+     */
+    void unpark(int to) {
+        move(next.length - 1, to);
+    }
+
+    /**
+     * Points the neighbours of pos (and the ends of the list if necessary) at
+     * newPos instead. Does not touch the entries of pos or newPos themselves.
+     */
+    private void relink(int cell, int pos, int newPos) {
+        if (prev[pos] != NIL) next[prev[pos]] = newPos;
+        else heads[cell] = newPos;
+        if (next[pos] != NIL) prev[next[pos]] = newPos;
+        else tails[cell] = newPos;
+    }
+
+    /** Unlinks pos from the list of positions for cell. */
+    private void unlink(int cell, int pos) {
+        if (prev[pos] != NIL) next[prev[pos]] = next[pos];
+        else heads[cell] = next[pos];
+        if (next[pos] != NIL) prev[next[pos]] = prev[pos];
+        else tails[cell] = prev[pos];
+    }
+
+    /** Returns the live cell holding key, whose spread hash code is keyHash, or -1 if there is none. */
+    private int find(T key, int keyHash) {
+        int mask = keys.length - 1;
+        int cell = keyHash & mask;
+        while (heads[cell] != EMPTY) {
+            if (heads[cell] != TOMBSTONE && key.equals(keys[cell])) return cell;
+            cell = (cell + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Claims a free cell for key, whose spread hash code is keyHash and which must not already be in the table. */
+    private int claim(Object key, int keyHash) {
+        int mask = keys.length - 1;
+        int cell = keyHash & mask;
+        while (heads[cell] >= 0) {
+            cell = (cell + 1) & mask;
+        }
+        if (heads[cell] == TOMBSTONE) tombstones--;
+        keys[cell] = key;
+        heads[cell] = NIL;
+        tails[cell] = NIL;
+        counts[cell] = 0;
+        size++;
+        return cell;
+    }
+
+    /**
+     * Rebuilds the table sized for the current number of distinct keys,
+     * dropping tombstones.
+     * Complexity: O(n), n = number of tracked positions
+     */
+    private void rehash() {
+        Object[] oldKeys = keys;
+        int[] oldHeads = heads;
+        int[] oldTails = tails;
+        int[] oldCounts = counts;
+        int tableLength = tableSizeFor(size << 1);
+        keys = new Object[tableLength];
+        heads = new int[tableLength];
+        tails = new int[tableLength];
+        counts = new int[tableLength];
+        Arrays.fill(heads, EMPTY);
+        size = 0;
+        tombstones = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] < 0) continue; // empty or tombstone
+            int cell = claim(oldKeys[i], hash(oldKeys[i]));
+            heads[cell] = oldHeads[i];
+            tails[cell] = oldTails[i];
+            counts[cell] = oldCounts[i];
+            for (int pos = heads[cell]; pos != NIL; pos = next[pos]) {
+                cellOf[pos] = cell;
+            }
+        }
+    }
+
+    /** Returns the power of two table length used for expected distinct keys. */
+    private static int tableSizeFor(int expected) {
+        int length = 16;
+        while (length < expected + (expected >>> 1)) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    /** Spreads the bits of key's hash code (the finalizer of MurmurHash3). */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Common interface of the heap implementations.
+ * Author: Spencer Little
+ */
+
+/**
+ * The operations shared by Heap and PairingHeap, so callers can switch
+ * between the array backed heap and the node based one. The root is the
+ * minimum or the maximum element, depending on the Heap.Type or Comparator
+ * the heap was created with. If the heap contains elements with duplicate
+ * keys, delete removes the earliest inserted occurrence first.
+ * @author Spencer Little
+ */
+public interface PriorityHeap<T> {
+
+    /** Returns the number of elements in the heap. */
+    int size();
+
+    /**
+     * Returns true if the heap contains the specified element.
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    boolean contains(T elem);
+
+    /**
+     * Returns the number of occurrences of elem in the heap.
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    int elementCount(T elem);
+
+    /**
+     * Inserts an element into the heap.
+     * @param toInsert element to insert
+     */
+    void insert(T toInsert);
+
+    /**
+     * Extracts and returns the next minimum/maximum value.
+     * @throws IllegalStateException if the heap is empty
+     */
+    T extractRoot();
+
+    /**
+     * Returns but does not extract the next minimum/maximum value.
+     * @throws IllegalStateException if the heap is empty
+     */
+    T getRoot();
+
+    /**
+     * Deletes one occurrence of an element from the heap.
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    void delete(T toDelete);
+
+    /**
+     * Deletes all occurrences of an element from the heap.
+     * @throws IllegalArgumentException if the heap does not contain the specified element
+     * @throws UnsupportedOperationException if position tracking is disabled
+     */
+    void deleteAll(T toDelete);
+}
@@ -0,0 +1,182 @@
+/*
+ * Implementation of a monotone radix heap.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+
+/**
+ * A min heap of long keys, each carrying a payload, for monotone workloads:
+ * no key may be inserted below the last extracted key, as in event
+ * simulation, timers or Dijkstra's algorithm with integer weights. int keys
+ * widen to long.
+ *
+ * Elements are kept in 65 buckets by the highest bit in which their key
+ * differs from the last extracted key: bucket 0 holds keys equal to it and
+ * bucket i keys that first differ in bit i-1. Insert appends to one bucket
+ * with no comparisons. When bucket 0 runs empty, extractRoot takes the lowest
+ * non empty bucket, makes its minimum the new last key and redistributes the
+ * bucket into strictly lower buckets. Each element can only move down, at
+ * most 64 times, so extractRoot is O(log(C)) amortized, where C is the span
+ * between the smallest and largest key in the heap. Keys and payloads live in
+ * parallel arrays per bucket, so nothing is boxed.
+ * @author Spencer Little
+ */
+public class RadixHeap<V> {
+
+    /** The number of buckets, one per possible highest differing bit plus one for equal keys. */
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    /** The keys of each bucket. */
+    private long[][] bucketKeys = new long[BUCKETS][];
+    /** The payloads of each bucket, parallel to bucketKeys. */
+    private Object[][] bucketValues = new Object[BUCKETS][];
+    /** The number of elements in each bucket. */
+    private int[] bucketSize = new int[BUCKETS];
+    /** The number of elements in the heap. */
+    private int size;
+    /** The last extracted key, the lower bound for inserts. */
+    private long lastKey = Long.MIN_VALUE;
+
+    /**
+     * Initializes an empty heap.
+     */
+    public RadixHeap() {
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketKeys[i] = new long[4];
+            bucketValues[i] = new Object[4];
+        }
+    }
+
+    /** Returns the number of elements in the heap. */
+    public int size() {return size;}
+    /** Returns the key of the last extracted element, or Long.MIN_VALUE before the first extraction. */
+    public long lastKey() {return lastKey;}
+
+    /********************************************************************
+     *                          Heap Operations                         *
+     ********************************************************************/
+
+    /**
+     * Inserts a payload with the given key.
+     * Complexity: O(1) amortized
+     * @throws IllegalArgumentException if key is less than the last extracted key
+     * @param key the priority of the payload
+     * @param payload the payload, may be null
+     */
+    public void insert(long key, V payload) {
+        if (key < lastKey) {
+            throw new IllegalArgumentException("Key " + key + " is below the last extracted key " + lastKey);
+        }
+        append(bucketOf(key), key, payload);
+        size++;
+    }
+
+    /**
+     * Extracts the minimum key and returns its payload. The key is available
+     * from lastKey afterwards. Elements with equal keys come out in no
+     * particular order.
+     * Complexity: O(log(C)) amortized, C = the span of the keys in the heap
+     * @throws IllegalStateException if the heap is empty
+     * @return the payload of the minimum key
+     */
+    @SuppressWarnings("unchecked")
+    public V extractRoot() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        if (bucketSize[0] == 0) redistribute();
+        int last = --bucketSize[0];
+        V payload = (V) bucketValues[0][last];
+        bucketValues[0][last] = null;
+        size--;
+        return payload;
+    }
+
+    /**
+     * Returns but does not extract the payload of the minimum key.
+     * Complexity: O(1) if the minimum key equals the last extracted key,
+     * otherwise O(k), k = the size of the lowest non empty bucket
+     * @throws IllegalStateException if the heap is empty
+     * @return the payload of the minimum key
+     */
+    @SuppressWarnings("unchecked")
+    public V getRoot() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        if (bucketSize[0] > 0) return (V) bucketValues[0][bucketSize[0] - 1];
+        int bucket = lowestNonEmptyBucket();
+        return (V) bucketValues[bucket][minIndex(bucket)];
+    }
+
+    /**
+     * Returns but does not extract the minimum key.
+     * Complexity: O(1) if the minimum key equals the last extracted key,
+     * otherwise O(k), k = the size of the lowest non empty bucket
+     * @throws IllegalStateException if the heap is empty
+     * @return the minimum key
+     */
+    public long getRootKey() {
+        if (size == 0) throw new IllegalStateException("Root does not exist, heap is empty.");
+        if (bucketSize[0] > 0) return lastKey;
+        int bucket = lowestNonEmptyBucket();
+        return bucketKeys[bucket][minIndex(bucket)];
+    }
+
+    /**
+     * Makes the minimum key of the lowest non empty bucket the last key and
+     * moves that bucket's elements into lower buckets, at least one of them
+     * (the minimum) into bucket 0. Call only when bucket 0 is empty.
+     * Complexity: O(k), k = the size of the lowest non empty bucket
+     */
+    private void redistribute() {
+        int bucket = lowestNonEmptyBucket();
+        long[] keys = bucketKeys[bucket];
+        Object[] values = bucketValues[bucket];
+        int count = bucketSize[bucket];
+        lastKey = keys[minIndex(bucket)];
+        bucketSize[bucket] = 0;
+        for (int i = 0; i < count; i++) {
+            append(bucketOf(keys[i]), keys[i], values[i]);
+            values[i] = null;
+        }
+    }
+
+    /** Appends a key and payload to a bucket, growing it if it is full. */
+    private void append(int bucket, long key, Object payload) {
+        int count = bucketSize[bucket];
+        if (count == bucketKeys[bucket].length) {
+            int newLength = count + (count>>>1) + 1;
+            bucketKeys[bucket] = Arrays.copyOf(bucketKeys[bucket], newLength);
+            bucketValues[bucket] = Arrays.copyOf(bucketValues[bucket], newLength);
+        }
+        bucketKeys[bucket][count] = key;
+        bucketValues[bucket][count] = payload;
+        bucketSize[bucket] = count + 1;
+    }
+
+    /**
+     * Returns the bucket of key: 0 if it equals the last key, otherwise one
+     * more than the highest bit in which they differ.
+     */
+    private int bucketOf(long key) {
+        return Long.SIZE - Long.numberOfLeadingZeros(key ^ lastKey);
+    }
+
+    /** Returns the lowest non empty bucket. The heap must not be empty. */
+    private int lowestNonEmptyBucket() {
+        int bucket = 0;
+        while (bucketSize[bucket] == 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /** Returns the index of the minimum key within a non empty bucket. */
+    private int minIndex(int bucket) {
+        long[] keys = bucketKeys[bucket];
+        int min = 0;
+        for (int i = 1; i < bucketSize[bucket]; i++) {
+            if (keys[i] < keys[min]) min = i;
+        }
+        return min;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * A set of unit tests covering the radix heap.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class RadixHeapTest {
+
+    @Test
+    public void testExtractRoot() {
+        RadixHeap<Long> testHeap = new RadixHeap<>();
+        List<Long> input = new ArrayList<>();
+        Random gen = new Random();
+        for (int i = 0; i < 10000; i++) {
+            long x = gen.nextLong();
+            input.add(x);
+            testHeap.insert(x, x);
+        }
+        Collections.sort(input);
+        Assert.assertEquals((long) input.get(0), testHeap.getRootKey());
+        for (Long expected : input) {
+            Assert.assertEquals(expected, testHeap.getRoot());
+            Assert.assertEquals(expected, testHeap.extractRoot());
+            Assert.assertEquals((long) expected, testHeap.lastKey());
+        }
+        Assert.assertEquals(0, testHeap.size());
+    }
+
+    @Test
+    public void testMonotoneInterleaved() {
+        RadixHeap<Integer> testHeap = new RadixHeap<>();
+        PriorityQueue<Long> reference = new PriorityQueue<>();
+        Random gen = new Random();
+        long now = -500;
+        for (int i = 0; i < 50000; i++) {
+            if (reference.isEmpty() || gen.nextInt(3) > 0) {
+                long key = now + gen.nextInt(gen.nextBoolean() ? 10 : 1_000_000);
+                reference.add(key);
+                testHeap.insert(key, (int) (key & 0xffff));
+            } else {
+                now = reference.poll();
+                Assert.assertEquals(now, testHeap.getRootKey());
+                Assert.assertEquals(Integer.valueOf((int) (now & 0xffff)), testHeap.extractRoot());
+                Assert.assertEquals(now, testHeap.lastKey());
+            }
+            Assert.assertEquals(reference.size(), testHeap.size());
+        }
+    }
+
+    @Test
+    public void testInsertAtLastKey() {
+        RadixHeap<String> testHeap = new RadixHeap<>();
+        testHeap.insert(10, "a");
+        testHeap.insert(20, "b");
+        Assert.assertEquals("a", testHeap.extractRoot());
+        testHeap.insert(10, "c"); // equal to the last extracted key is allowed
+        testHeap.insert(15, null);
+        Assert.assertEquals("c", testHeap.extractRoot());
+        Assert.assertNull(testHeap.extractRoot());
+        Assert.assertEquals(15, testHeap.lastKey());
+        Assert.assertEquals("b", testHeap.extractRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsKeyBelowLastKey() {
+        RadixHeap<String> testHeap = new RadixHeap<>();
+        testHeap.insert(10, "a");
+        testHeap.extractRoot();
+        testHeap.insert(9, "b");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExtractEmpty() {
+        new RadixHeap<String>().extractRoot();
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * A delayed task scheduler built on the heap.
+ * Author: Spencer Little
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs tasks once their delay has passed. The pending timers are kept in a
+ * Heap ordered by deadline, equal deadlines in scheduling order. A single
+ * scheduler thread sleeps until the earliest deadline, then extracts every
+ * timer that has expired by then in one batch under one lock acquisition
+ * and hands their tasks to the executor after releasing the lock, so a
+ * burst of expiries costs one wakeup instead of one per task and scheduling
+ * threads are never blocked behind task submission.
+ *
+ * cancel deletes a timer from the heap. The heap uses Option.LAZY_DELETE,
+ * so cancelling is O(1) amortized and cancelled timers are discarded when
+ * they reach the root or the heap compacts. Tasks run on the supplied
+ * executor; virtualThreadExecutor gives each task its own virtual thread
+ * on Java 21 and later. The scheduler measures time with System.nanoTime.
+ * @author Spencer Little
+ */
+public class TimerScheduler implements AutoCloseable {
+
+    /** A scheduled task, returned by schedule as a handle for cancel. */
+    public static final class Timer {
+        /** The task to run. */
+        private final Runnable task;
+        /** The System.nanoTime at or after which the task runs. */
+        private final long deadline;
+        /** True once the timer has left the heap, fired or cancelled. Guarded by the scheduler lock. */
+        private boolean done;
+
+        private Timer(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Returns the task of this timer. */
+        public Runnable getTask() {return task;}
+        /** Returns the System.nanoTime at or after which the task runs. */
+        public long getDeadline() {return deadline;}
+    }
+
+    /** Orders timers by deadline, comparing nanoTime values by their difference as System.nanoTime requires. */
+    private static final Comparator<Timer> BY_DEADLINE = (one, two) -> Long.signum(one.deadline - two.deadline);
+
+    /** Guards timers, closed and the done flags of the timers. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled when the earliest deadline moves forward or the scheduler closes. */
+    private final Condition wakeup = lock.newCondition();
+    /** The pending timers. */
+    private final Heap<Timer> timers = new Heap<>(Timer.class, BY_DEADLINE,
+            Heap.Option.STABLE, Heap.Option.LAZY_DELETE);
+    /** Runs the tasks of expired timers. */
+    private final Executor executor;
+    /** The scheduler thread. */
+    private final Thread thread;
+    /** True once close has been called. */
+    private boolean closed;
+    /** The number of batches drained so far. */
+    private long batches;
+    /** The timers of the batch being drained, reused across wakeups. Only touched by the scheduler thread. */
+    private Timer[] batch = new Timer[16];
+
+    /**
+     * Creates a scheduler running tasks on executor and starts its thread.
+     * The executor must not block the scheduler thread for long, expiries
+     * are not drained while it runs. Tasks the executor rejects are dropped.
+     * @param executor runs the tasks of expired timers
+     */
+    public TimerScheduler(Executor executor) {
+        this.executor = executor;
+        thread = new Thread(this::run, "timer-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns an executor running each task on a new virtual thread.
+     * @throws UnsupportedOperationException if the JVM has no virtual threads (before Java 21)
+     */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+        }
+    }
+
+    /**
+     * Schedules task to run once delay has passed.
+     * Complexity: O(log(n)), n = the number of pending timers
+     * @throws IllegalStateException if the scheduler is closed
+     * @param task the task to run
+     * @param delay the time from now until the task runs, may be zero or negative
+     * @param unit the unit of delay
+     * @return the timer of the task, for cancel
+     */
+    public Timer schedule(Runnable task, long delay, TimeUnit unit) {
+        Timer timer = new Timer(task, System.nanoTime() + unit.toNanos(delay));
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Scheduler is closed");
+            timers.insert(timer);
+            if (timers.getRoot() == timer) wakeup.signal();
+        } finally {
+            lock.unlock();
+        }
+        return timer;
+    }
+
+    /**
+     * Cancels a timer of this scheduler. Its task will not run unless it is
+     * already running or handed to the executor.
+     * Complexity: O(1) amortized
+     * @param timer a timer returned by schedule
+     * @return true if the timer was pending and is now cancelled, false if it
+     *         had already fired or been cancelled or the scheduler is closed
+     */
+    public boolean cancel(Timer timer) {
+        lock.lock();
+        try {
+            if (timer.done || closed) return false; // close discarded the pending timers
+            timers.delete(timer);
+            timer.done = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of pending timers. */
+    public int size() {
+        lock.lock();
+        try {
+            return timers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of batches of expired timers drained so far. */
+    public long batches() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the scheduler thread and discards the pending timers. Tasks
+     * already handed to the executor are unaffected, and the executor is
+     * not shut down.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            timers.clear();
+            wakeup.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() == thread) return; // closed by a task run on the scheduler thread
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The loop of the scheduler thread: wait for the earliest deadline, drain, submit. */
+    private void run() {
+        while (true) {
+            int count = 0;
+            lock.lock();
+            try {
+                while (!closed) {
+                    if (timers.size() == 0) {
+                        wakeup.await();
+                        continue;
+                    }
+                    long delay = timers.getRoot().deadline - System.nanoTime();
+                    if (delay <= 0) break;
+                    wakeup.awaitNanos(delay);
+                }
+                if (closed) return;
+                long now = System.nanoTime();
+                while (timers.size() > 0 && timers.getRoot().deadline - now <= 0) {
+                    Timer timer = timers.extractRoot();
+                    timer.done = true;
+                    if (count == batch.length) batch = Arrays.copyOf(batch, count*2);
+                    batch[count++] = timer;
+                }
+                batches++;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            for (int i = 0; i < count; i++) {
+                try {
+                    executor.execute(batch[i].task);
+                } catch (RejectedExecutionException e) {
+                    // dropped, like a task cancelled too late
+                }
+                batch[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * A set of unit tests covering the timer scheduler.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Spencer Little
+ */
+public class TimerSchedulerTest {
+
+    @Test
+    public void testRunsInDeadlineOrder() throws InterruptedException {
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(20);
+        try (TimerScheduler scheduler = new TimerScheduler(Runnable::run)) {
+            for (int i = 0; i < 20; i++) {
+                int id = i;
+                scheduler.schedule(() -> {
+                    ran.add(id);
+                    done.countDown();
+                }, 10 * (20 - i), TimeUnit.MILLISECONDS);
+            }
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(Integer.valueOf(19 - i), ran.get(i));
+        }
+    }
+
+    @Test
+    public void testDeadlineRespected() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        long[] ranAt = new long[1];
+        try (TimerScheduler scheduler = new TimerScheduler(Runnable::run)) {
+            TimerScheduler.Timer timer = scheduler.schedule(() -> {
+                ranAt[0] = System.nanoTime();
+                done.countDown();
+            }, 30, TimeUnit.MILLISECONDS);
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(ranAt[0] - timer.getDeadline() >= 0);
+        }
+    }
+
+    @Test
+    public void testBatchedDrain() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(10000);
+        try (TimerScheduler scheduler = new TimerScheduler(pool)) {
+            TimerScheduler.Timer blocker = scheduler.schedule(() -> {}, 1, TimeUnit.HOURS);
+            for (int i = 0; i < 10000; i++) {
+                scheduler.schedule(done::countDown, 50, TimeUnit.MILLISECONDS);
+            }
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(scheduler.batches() < 10000);
+            Assert.assertEquals(1, scheduler.size());
+            Assert.assertTrue(scheduler.cancel(blocker));
+            Assert.assertEquals(0, scheduler.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        try (TimerScheduler scheduler = new TimerScheduler(Runnable::run)) {
+            List<TimerScheduler.Timer> cancelled = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                cancelled.add(scheduler.schedule(() -> ran.add("cancelled"), 200, TimeUnit.MILLISECONDS));
+            }
+            TimerScheduler.Timer kept = scheduler.schedule(() -> {
+                ran.add("kept");
+                done.countDown();
+            }, 400, TimeUnit.MILLISECONDS);
+            for (TimerScheduler.Timer timer : cancelled) {
+                Assert.assertTrue(scheduler.cancel(timer));
+                Assert.assertFalse(scheduler.cancel(timer));
+            }
+            Assert.assertEquals(1, scheduler.size());
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertFalse(scheduler.cancel(kept));
+        }
+        Assert.assertEquals(Collections.singletonList("kept"), ran);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScheduleAfterClose() {
+        TimerScheduler scheduler = new TimerScheduler(Runnable::run);
+        scheduler.schedule(() -> {}, 1, TimeUnit.HOURS);
+        scheduler.close();
+        Assert.assertEquals(0, scheduler.size());
+        scheduler.schedule(() -> {}, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCancelAfterClose() {
+        TimerScheduler scheduler = new TimerScheduler(Runnable::run);
+        TimerScheduler.Timer pending = scheduler.schedule(() -> {}, 1, TimeUnit.HOURS);
+        scheduler.close();
+        Assert.assertFalse(scheduler.cancel(pending)); // discarded by close, not cancelled
+    }
+
+}
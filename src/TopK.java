@@ -0,0 +1,112 @@
+/*
+ * Bounded top-K selection built on the heap.
+ * Author: Spencer Little
+ */
+
+import java.lang.reflect.Array;
+import java.util.Comparator;
+
+/**
+ * Keeps the k best elements seen in a stream. For Type.MAX the k greatest
+ * elements are kept, for Type.MIN the k least, and for a Comparator the k
+ * least according to it.
+ *
+ * The elements are held in a heap of the opposite type without position
+ * tracking, so its root is the worst element kept. A candidate that cannot
+ * beat the root is rejected with a single comparison and no allocation, and
+ * an accepted candidate replaces the root in place with one sift down.
+ * @author Spencer Little
+ */
+public class TopK<T> {
+
+    /** The selected order, the best element compares least. */
+    private Comparator<? super T> order;
+    /** The maximum number of elements kept. */
+    private int k;
+    /** The kept elements, the worst of them at the root. */
+    private Heap<T> heap;
+    /** The element class, used to create the result array. */
+    private Class<T> elementClass;
+
+    /**
+     * Creates an empty selector.
+     * @param t the element class
+     * @param k the number of elements to keep
+     * @param type MAX to keep the k greatest elements, MIN to keep the k least
+     * @throws IllegalArgumentException if k is less than 1
+     */
+    public TopK(Class<T> t, int k, Heap.Type type) {
+        this(t, k, Heap.<T>naturalOrder(type));
+    }
+
+    /**
+     * Creates an empty selector that keeps the k least elements according to order.
+     * @param t the element class
+     * @param k the number of elements to keep
+     * @param order the selected order, use order.reversed() to keep the k greatest
+     * @throws IllegalArgumentException if k is less than 1
+     */
+    public TopK(Class<T> t, int k, Comparator<? super T> order) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1, got " + k);
+        this.k = k;
+        this.order = order;
+        elementClass = t;
+        heap = new Heap<T>(t, order.reversed(), Heap.Option.NO_POSITION_TRACKING);
+    }
+
+    /** Returns the number of elements currently kept, at most k. */
+    public int size() {return heap.size();}
+    /** Returns the maximum number of elements kept. */
+    public int capacity() {return k;}
+
+    /**
+     * Offers a candidate to the selector.
+     * Complexity: O(1) if rejected, O(log(k)) if accepted
+     * @param candidate the element to offer
+     * @return true if the candidate is now among the kept elements
+     */
+    public boolean offer(T candidate) {
+        if (heap.size() < k) {
+            heap.insert(candidate);
+            return true;
+        }
+        if (!beats(candidate, heap.getRoot())) return false;
+        heap.replaceRoot(candidate);
+        return true;
+    }
+
+    /**
+     * Returns the worst of the kept elements, the one a candidate has to beat
+     * once k elements are kept.
+     * Complexity: O(1)
+     * @throws IllegalStateException if no element is kept
+     * @return the worst kept element
+     */
+    public T threshold() {
+        return heap.getRoot();
+    }
+
+    /**
+     * Removes the kept elements and returns them best first (descending for
+     * Type.MAX, ascending for Type.MIN or a Comparator). The selector is empty afterwards.
+     * Complexity: O(k*log(k))
+     * @return the kept elements, best first
+     */
+    @SuppressWarnings("unchecked")
+    public T[] sortedResult() {
+        T[] result = (T[]) Array.newInstance(elementClass, heap.size());
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.extractRoot();
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if candidate belongs before kept in the selected order.
+     * Ties keep the element that arrived first.
+     */
+    private boolean beats(T candidate, T kept) {
+        return order.compare(candidate, kept) < 0;
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * A set of unit tests covering the top-K selector.
+ * Author: Spencer Little
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * @author Spencer Little
+ */
+public class TopKTest {
+
+    @Test
+    public void testTopK() {
+        for (Heap.Type type : Heap.Type.values()) {
+            for (int k : new int[] {1, 10, 100, 5000}) {
+                Random gen = new Random();
+                List<Integer> stream = new ArrayList<>();
+                TopK<Integer> topK = new TopK<>(Integer.class, k, type);
+                for (int i = 0; i < 2000; i++) {
+                    Integer x = gen.nextInt(1000);
+                    stream.add(x);
+                    topK.offer(x);
+                    Assert.assertTrue(topK.size() <= k);
+                }
+                stream.sort(type == Heap.Type.MAX ? Comparator.reverseOrder() : Comparator.naturalOrder());
+                List<Integer> expected = stream.subList(0, Math.min(k, stream.size()));
+                Assert.assertEquals(expected.get(expected.size() - 1), topK.threshold());
+                Assert.assertEquals(expected, Arrays.asList(topK.sortedResult()));
+                Assert.assertEquals(0, topK.size());
+            }
+        }
+    }
+
+    @Test
+    public void testOfferResult() {
+        TopK<Integer> topK = new TopK<>(Integer.class, 2, Heap.Type.MAX);
+        Assert.assertTrue(topK.offer(5));
+        Assert.assertTrue(topK.offer(3));
+        Assert.assertFalse(topK.offer(1));
+        Assert.assertFalse(topK.offer(3)); // ties keep the earlier element
+        Assert.assertTrue(topK.offer(4));
+        Assert.assertEquals(Integer.valueOf(4), topK.threshold());
+    }
+
+    @Test
+    public void testComparator() {
+        TopK<String> topK = new TopK<>(String.class, 3, Comparator.comparingInt(String::length));
+        for (String word : "the quick brown fox jumps over a lazy dog".split(" ")) {
+            topK.offer(word);
+        }
+        String[] result = topK.sortedResult();
+        Assert.assertEquals("a", result[0]);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("the", "fox")), new HashSet<>(Arrays.asList(result[1], result[2])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidK() {
+        new TopK<>(Integer.class, 0, Heap.Type.MAX);
+    }
+
+}